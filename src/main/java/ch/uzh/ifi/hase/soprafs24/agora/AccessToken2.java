@@ -1,5 +1,8 @@
 package ch.uzh.ifi.hase.soprafs24.agora;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
 import java.util.Map;
 import java.util.TreeMap;
 import javax.crypto.Mac;
@@ -72,6 +75,23 @@ public class AccessToken2 {
   // }
 
   private static final String VERSION = "007";
+  private static final String HMAC_SHA256 = "HmacSHA256";
+
+  // looking up a Mac is expensive and a Mac is not thread-safe, so every thread keeps its own
+  private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+    try {
+      return Mac.getInstance(HMAC_SHA256);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(HMAC_SHA256 + " not available", e);
+    }
+  });
+
+  // the first stage of the signing key only depends on the certificate and the issue timestamp
+  // (seconds), so the tokens issued in the same second share it
+  private static volatile IssueKey lastIssueKey;
+
+  // the buffers of build() are reused by the next token of the same thread
+  private static final ThreadLocal<PackBuffers> BUFFERS = ThreadLocal.withInitial(PackBuffers::new);
   public static final short SERVICE_TYPE_RTC = 1;
   public static final short SERVICE_TYPE_RTM = 2;
   public static final short SERVICE_TYPE_FPA = 4;
@@ -104,7 +124,8 @@ public class AccessToken2 {
       return "";
     }
 
-    ByteBuf buf = new ByteBuf()
+    PackBuffers buffers = BUFFERS.get();
+    ByteBuf buf = buffers.content.reset()
                       .put(this.appId)
                       .put(this.issueTs)
                       .put(this.expire)
@@ -114,15 +135,14 @@ public class AccessToken2 {
 
     this.services.forEach((k, v) -> { v.pack(buf); });
 
-    Mac mac = Mac.getInstance("HmacSHA256");
-    mac.init(new SecretKeySpec(signing, "HmacSHA256"));
-    byte[] signature = mac.doFinal(buf.asBytes());
+    byte[] signature = hmacSha256(signing, buf.array(), buf.length());
 
-    ByteBuf bufferContent = new ByteBuf();
-    bufferContent.put(signature);
-    bufferContent.buffer.put(buf.asBytes());
+    ByteBuf bufferContent = buffers.signed.reset().put(signature).append(buf);
 
-    return getVersion() + Utils.base64Encode(Utils.compress(bufferContent.asBytes()));
+    ByteBuf compressed = buffers.compressed.reset();
+    Utils.compress(bufferContent.array(), 0, bufferContent.length(), compressed);
+
+    return getVersion() + Utils.base64Encode(compressed.array(), 0, compressed.length());
   }
 
   public Service getService(short serviceType) {
@@ -145,11 +165,47 @@ public class AccessToken2 {
   }
 
   public byte[] getSign() throws Exception {
-    Mac mac = Mac.getInstance("HmacSHA256");
-    mac.init(new SecretKeySpec(new ByteBuf().put(this.issueTs).asBytes(), "HmacSHA256"));
-    byte[] signing = mac.doFinal(this.appCert.getBytes());
-    mac.init(new SecretKeySpec(new ByteBuf().put(this.salt).asBytes(), "HmacSHA256"));
-    return mac.doFinal(signing);
+    IssueKey issueKey = lastIssueKey;
+    if (issueKey == null || issueKey.issueTs != this.issueTs
+        || !issueKey.appCert.equals(this.appCert)) {
+      byte[] key = hmacSha256(new ByteBuf(Integer.BYTES).put(this.issueTs).asBytes(),
+          this.appCert.getBytes(StandardCharsets.UTF_8));
+      issueKey = new IssueKey(this.appCert, this.issueTs, key);
+      lastIssueKey = issueKey;
+    }
+    return hmacSha256(new ByteBuf(Integer.BYTES).put(this.salt).asBytes(), issueKey.key);
+  }
+
+  private static byte[] hmacSha256(byte[] key, byte[] data) throws InvalidKeyException {
+    return hmacSha256(key, data, data.length);
+  }
+
+  private static byte[] hmacSha256(byte[] key, byte[] data, int length)
+      throws InvalidKeyException {
+    Mac mac = MAC.get();
+    mac.init(new SecretKeySpec(key, HMAC_SHA256));
+    mac.update(data, 0, length);
+    return mac.doFinal();
+  }
+
+  /* first stage of the signing key (HMAC of the certificate with the issue timestamp) */
+  private static final class IssueKey {
+    private final String appCert;
+    private final int issueTs;
+    private final byte[] key;
+
+    private IssueKey(String appCert, int issueTs, byte[] key) {
+      this.appCert = appCert;
+      this.issueTs = issueTs;
+      this.key = key;
+    }
+  }
+
+  /* reusable buffers of build(): packed content, signature with content and compressed token */
+  private static final class PackBuffers {
+    private final ByteBuf content = new ByteBuf();
+    private final ByteBuf signed = new ByteBuf();
+    private final ByteBuf compressed = new ByteBuf();
   }
 
   public static String getUidStr(int uid) {
@@ -2,51 +2,109 @@ package ch.uzh.ifi.hase.soprafs24.agora;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.TreeMap;
 
 /**
  * Created by Li on 10/1/2016.
+ *
+ * The buffer starts small and grows when needed, and it can be reused with reset(). The written
+ * bytes can be read without a copy with array() and length().
  */
 public class ByteBuf {
-  ByteBuffer buffer = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+  private static final int DEFAULT_CAPACITY = 256;
 
-  public ByteBuf() {}
+  ByteBuffer buffer;
+
+  public ByteBuf() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public ByteBuf(int capacity) {
+    this.buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+  }
 
   public ByteBuf(byte[] bytes) {
     this.buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
   }
 
   public byte[] asBytes() {
-    byte[] out = new byte[buffer.position()];
-    buffer.rewind();
-    buffer.get(out, 0, out.length);
-    return out;
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  /**
+   * @return the backing array, only the first length() bytes are written
+   */
+  public byte[] array() {
+    return buffer.array();
+  }
+
+  /**
+   * @return number of written bytes
+   */
+  public int length() {
+    return buffer.position();
+  }
+
+  /**
+   * Discards the written bytes, the capacity is kept for the next use.
+   */
+  public ByteBuf reset() {
+    buffer.clear();
+    return this;
+  }
+
+  /**
+   * Makes room for at least the given number of bytes, the capacity is at least doubled.
+   */
+  void ensureCapacity(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return;
+    }
+    int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+    ByteBuffer grown = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.flip();
+    grown.put(buffer);
+    buffer = grown;
   }
 
   // packUint16
   public ByteBuf put(short v) {
+    ensureCapacity(Short.BYTES);
     buffer.putShort(v);
     return this;
   }
 
   public ByteBuf put(byte[] v) {
     put((short) v.length);
+    ensureCapacity(v.length);
     buffer.put(v);
     return this;
   }
 
   // packUint32
   public ByteBuf put(int v) {
+    ensureCapacity(Integer.BYTES);
     buffer.putInt(v);
     return this;
   }
 
   public ByteBuf put(long v) {
+    ensureCapacity(Long.BYTES);
     buffer.putLong(v);
     return this;
   }
 
+  /**
+   * Appends the written bytes of another buffer, without length prefix.
+   */
+  public ByteBuf append(ByteBuf other) {
+    ensureCapacity(other.length());
+    buffer.put(other.array(), 0, other.length());
+    return this;
+  }
+
   public ByteBuf put(String v) {
     return put(v.getBytes());
   }
@@ -3,11 +3,15 @@ package ch.uzh.ifi.hase.soprafs24.agora;
 import ch.uzh.ifi.hase.soprafs24.service.UserService;
 import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 import java.util.zip.Inflater;
@@ -24,6 +28,12 @@ public class Utils {
   public static final int VERSION_LENGTH = 3;
   public static final int APP_ID_LENGTH = 32;
 
+  // a Deflater/Inflater holds native memory until end() is called, so a few instances are kept for
+  // reuse and every other instance is ended right after its use
+  private static final int ZLIB_POOL_SIZE = 8;
+  private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(ZLIB_POOL_SIZE);
+  private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(ZLIB_POOL_SIZE);
+
   // public static byte[] hmacSign(String keyString, byte[] msg)
   //     throws InvalidKeyException, NoSuchAlgorithmException {
   //   SecretKeySpec keySpec = new SecretKeySpec(keyString.getBytes(), "HmacSHA256");
@@ -48,6 +58,15 @@ public class Utils {
     return new String(encodedBytes);
   }
 
+  /**
+   * Encodes a range of an array (e.g. the written bytes of a ByteBuf) without copying it first.
+   */
+  public static String base64Encode(byte[] data, int offset, int length) {
+    ByteBuffer encoded =
+        java.util.Base64.getEncoder().encode(ByteBuffer.wrap(data, offset, length));
+    return new String(encoded.array(), 0, encoded.remaining(), StandardCharsets.US_ASCII);
+  }
+
   public static byte[] base64Decode(String data) {
     return Base64.decodeBase64(data.getBytes());
   }
@@ -81,35 +100,52 @@ public class Utils {
   }
 
   public static byte[] compress(byte[] data) {
-    byte[] output;
-    Deflater deflater = new Deflater();
-    ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length);
+    ByteBuf output = new ByteBuf(data.length);
+    compress(data, 0, data.length, output);
+    return output.asBytes();
+  }
+
+  /**
+   * Compresses a range of an array and appends the result to the output buffer. If the
+   * compression fails, the data is appended uncompressed.
+   */
+  public static void compress(byte[] data, int offset, int length, ByteBuf output) {
+    Deflater deflater = DEFLATERS.poll();
+    if (deflater == null) {
+      deflater = new Deflater();
+    }
+    int start = output.length();
+    boolean reusable = false;
 
     try {
-      deflater.reset();
-      deflater.setInput(data);
+      deflater.setInput(data, offset, length);
       deflater.finish();
 
-      byte[] buf = new byte[data.length];
       while (!deflater.finished()) {
-        int i = deflater.deflate(buf);
-        bos.write(buf, 0, i);
+        output.ensureCapacity(64);
+        ByteBuffer buffer = output.buffer;
+        int written = deflater.deflate(buffer.array(), buffer.position(), buffer.remaining());
+        buffer.position(buffer.position() + written);
       }
-      output = bos.toByteArray();
+      reusable = true;
     } catch (Exception e) {
-      output = data;
+      output.buffer.position(start);
+      output.ensureCapacity(length);
+      output.buffer.put(data, offset, length);
       log.error("Error while compressing data: " + e.getMessage());
       // e.printStackTrace();
     } finally {
-      deflater.end();
+      release(deflater, reusable);
     }
-
-    return output;
   }
 
   public static byte[] decompress(byte[] data) {
-    Inflater inflater = new Inflater();
+    Inflater inflater = INFLATERS.poll();
+    if (inflater == null) {
+      inflater = new Inflater();
+    }
     ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length);
+    boolean reusable = false;
 
     try {
       inflater.setInput(data);
@@ -119,16 +155,37 @@ public class Utils {
       while ((len = inflater.inflate(buf)) > 0) {
         bos.write(buf, 0, len);
       }
+      reusable = true;
     } catch (Exception e) {
       // e.printStackTrace();
       log.error("Error while decompressing data: " + e.getMessage());
     } finally {
-      inflater.end();
+      release(inflater, reusable);
     }
 
     return bos.toByteArray();
   }
 
+  private static void release(Deflater deflater, boolean reusable) {
+    if (reusable) {
+      deflater.reset();
+      if (DEFLATERS.offer(deflater)) {
+        return;
+      }
+    }
+    deflater.end();
+  }
+
+  private static void release(Inflater inflater, boolean reusable) {
+    if (reusable) {
+      inflater.reset();
+      if (INFLATERS.offer(inflater)) {
+        return;
+      }
+    }
+    inflater.end();
+  }
+
   // public static String md5(String plainText) {
   //   byte[] secretBytes = null;
   //   try {
@@ -0,0 +1,146 @@
+package ch.uzh.ifi.hase.soprafs24.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Small thread-safe in-memory cache with a time-to-live per entry and an upper bound on the number
+ * of entries. If the bound is reached, the least recently used entry is evicted.
+ *
+ * The cache counts hits and misses, so that the callers can monitor how much work (e.g. database
+ * round trips) it saves.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the cached values
+ */
+public class ExpiringCache<K, V> {
+  private final long ttlMillis;
+  private final LongSupplier clock;
+  private final Map<K, Entry<V>> entries;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param maxSize maximum number of entries, the least recently used entry is evicted first
+   * @param ttl time after which an entry is not returned anymore
+   */
+  public ExpiringCache(int maxSize, Duration ttl) {
+    this(maxSize, ttl, System::currentTimeMillis);
+  }
+
+  /**
+   * Constructor with a custom clock (in milliseconds), used for testing the expiration.
+   */
+  ExpiringCache(int maxSize, Duration ttl, LongSupplier clock) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("maxSize must be positive");
+    }
+    this.ttlMillis = ttl.toMillis();
+    this.clock = clock;
+    // access order -> iteration starts with the least recently used entry
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the cached value of a key.
+   *
+   * @param key key to look up
+   * @return the value, null if the key is not cached or the entry expired
+   */
+  public V get(K key) {
+    synchronized (entries) {
+      Entry<V> entry = entries.get(key);
+      if (entry != null && entry.expiresAt > clock.getAsLong()) {
+        hits.incrementAndGet();
+        return entry.value;
+      }
+      if (entry != null) {
+        entries.remove(key);
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Cache a value with the default time-to-live. Replaces an existing value of the key.
+   */
+  public void put(K key, V value) {
+    put(key, value, ttlMillis);
+  }
+
+  /**
+   * Cache a value with a custom time-to-live. Replaces an existing value of the key.
+   *
+   * @param ttlMillis time-to-live of this entry in milliseconds
+   */
+  public void put(K key, V value, long ttlMillis) {
+    synchronized (entries) {
+      entries.put(key, new Entry<>(value, clock.getAsLong() + ttlMillis));
+    }
+  }
+
+  /**
+   * Remove a key from the cache (if present).
+   */
+  public void invalidate(K key) {
+    synchronized (entries) {
+      entries.remove(key);
+    }
+  }
+
+  /**
+   * Remove all keys that match the given predicate.
+   */
+  public void invalidateIf(Predicate<? super K> predicate) {
+    synchronized (entries) {
+      entries.keySet().removeIf(predicate);
+    }
+  }
+
+  /**
+   * Remove all entries. The hit and miss counters are not reset.
+   */
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+    }
+  }
+
+  /**
+   * @return number of entries, including expired entries that were not yet removed
+   */
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final long expiresAt;
+
+    private Entry(V value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
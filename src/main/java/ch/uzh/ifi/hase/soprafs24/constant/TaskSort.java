@@ -0,0 +1,39 @@
+package ch.uzh.ifi.hase.soprafs24.constant;
+
+/**
+ * Sort orders of the paged task listing, the task id is always the last sort key so that the
+ * order is total.
+ * CREATION_DATE: newest first; TITLE: by title (case-insensitive); STATUS: by status (in the order
+ * of TaskStatus), then by title.
+ */
+public enum TaskSort {
+  CREATION_DATE("creationDate"),
+  TITLE("title"),
+  STATUS("status");
+
+  private final String param;
+
+  TaskSort(String param) {
+    this.param = param;
+  }
+
+  /**
+   * @return the value of the sort request parameter
+   */
+  public String getParam() {
+    return param;
+  }
+
+  /**
+   * @param param the value of the sort request parameter
+   * @return the sort order, null if there is none with this value
+   */
+  public static TaskSort fromParam(String param) {
+    for (TaskSort sort : values()) {
+      if (sort.param.equals(param)) {
+        return sort;
+      }
+    }
+    return null;
+  }
+}
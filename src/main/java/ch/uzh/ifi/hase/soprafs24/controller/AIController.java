@@ -7,13 +7,17 @@ import ch.uzh.ifi.hase.soprafs24.rest.dto.AIPromptTeamDescriptionPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs24.service.AIService;
 import ch.uzh.ifi.hase.soprafs24.service.AuthorizationService;
-import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @RestController
 @RequestMapping("/api/v1/ai")
@@ -27,8 +31,15 @@ public class AIController {
     this.authorizationService = authorizationService;
   }
 
+  /**
+   * Generates a short poem about a team. The request thread is released while the AI service
+   * answers, the response is written once the description is available.
+   *
+   * @return the prompt with the answer, 503 if too many requests wait for the AI service, 504 if
+   *     the AI service did not answer in time and 502 if it failed
+   */
   @PostMapping("/gpt-3.5-turbo-instruct")
-  public ResponseEntity<AIPromptGetDTO> callGpt35Instruct(
+  public Mono<ResponseEntity<AIPromptGetDTO>> callGpt35Instruct(
       @RequestBody AIPromptTeamDescriptionPostDTO requestBody,
       @RequestHeader("Authorization") String token) {
     // check if user is authorized (valid token)
@@ -36,23 +47,79 @@ public class AIController {
     // Get the prompt parameter from the request body
     AIPrompt aiPrompt =
         DTOMapper.INSTANCE.convertAIPromptTeamDescriptionPostDTOtoEntity(requestBody);
-    String promptParameter = aiPrompt.getPrompt();
-
-    try {
-      String prompt = "Please write a very short poem about a team named" + aiPrompt.getPrompt();
-      // Call the AI service to generate a description
-      Optional<String> description = aiService.generateDescription(prompt);
-      if (!description.isPresent()) {
-        throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "AI Service failed");
-      }
-      log.info("The description has been generated: {}", description.get());
-      aiPrompt.setAnswer(description.get());
-      return new ResponseEntity<>(
-          DTOMapper.INSTANCE.convertEntityToAIPromptGetDTO(aiPrompt), HttpStatus.OK);
-    } catch (Exception e) {
-      // Log the error message and return a 502 Bad Gateway response
-      System.err.println(e.getMessage());
-      throw new ResponseStatusException(HttpStatus.BAD_GATEWAY, "AI Service failed");
+
+    String prompt = "Please write a very short poem about a team named" + aiPrompt.getPrompt();
+    // Call the AI service to generate a description
+    return aiService.generateDescription(prompt)
+        .switchIfEmpty(
+            Mono.error(new ResponseStatusException(HttpStatus.BAD_GATEWAY, "AI Service failed")))
+        .map(description -> {
+          log.info("The description has been generated: {}", description);
+          aiPrompt.setAnswer(description);
+          return new ResponseEntity<>(
+              DTOMapper.INSTANCE.convertEntityToAIPromptGetDTO(aiPrompt), HttpStatus.OK);
+        })
+        .onErrorMap(e -> !isRejectedOrTimedOut(e), e -> {
+          // Log the error message and return a 502 Bad Gateway response
+          log.error("AI Service failed: {}", e.getMessage());
+          return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "AI Service failed");
+        });
+  }
+
+  /**
+   * Streams a short poem about a team as server-sent events, so that the first words are shown
+   * while the AI service still generates the rest.
+   *
+   * Events: one unnamed event per piece of text (data: the piece as answer, to be appended), then
+   * "done" (data: [DONE]) or "error" (data: status code and reason) if the AI service failed.
+   *
+   * @return the events; errors before the first event are the status of the response (e.g. 503 if
+   *     too many requests wait for the AI service), like in callGpt35Instruct()
+   */
+  @PostMapping(
+      value = "/gpt-3.5-turbo-instruct/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public Flux<ServerSentEvent<Object>> streamGpt35Instruct(
+      @RequestBody AIPromptTeamDescriptionPostDTO requestBody,
+      @RequestHeader("Authorization") String token) {
+    // check if user is authorized (valid token), 401 before the stream is started
+    authorizationService.isAuthorized(token);
+    AIPrompt aiPrompt =
+        DTOMapper.INSTANCE.convertAIPromptTeamDescriptionPostDTOtoEntity(requestBody);
+
+    String prompt = "Please write a very short poem about a team named" + aiPrompt.getPrompt();
+    // the status of the response is sent with the first event
+    AtomicBoolean started = new AtomicBoolean();
+    return aiService.streamDescription(prompt)
+        .map(text -> {
+          // as JSON, because the data of an event loses its leading space
+          AIPrompt piece = new AIPrompt();
+          piece.setAnswer(text);
+          AIPromptGetDTO pieceDTO = DTOMapper.INSTANCE.convertEntityToAIPromptGetDTO(piece);
+          return ServerSentEvent.<Object>builder(pieceDTO).build();
+        })
+        .concatWith(Mono.just(ServerSentEvent.<Object>builder("[DONE]").event("done").build()))
+        .doOnNext(event -> started.set(true))
+        .onErrorMap(e -> !started.get() && !(e instanceof ResponseStatusException), e -> {
+          log.error("AI Service failed: {}", e.getMessage());
+          return new ResponseStatusException(HttpStatus.BAD_GATEWAY, "AI Service failed");
+        })
+        .onErrorResume(e -> started.get(), e -> {
+          // the status of the response is already sent, so the error is sent as event
+          log.error("AI Service failed while streaming: {}", e.getMessage());
+          String data = e instanceof ResponseStatusException
+              ? ((ResponseStatusException) e).getStatus().value() + " "
+                  + ((ResponseStatusException) e).getReason()
+              : HttpStatus.BAD_GATEWAY.value() + " AI Service failed";
+          return Mono.just(ServerSentEvent.<Object>builder(data).event("error").build());
+        });
+  }
+
+  /* the limiter (503) and the timeout (504) are passed on, so that the client can retry later */
+  private static boolean isRejectedOrTimedOut(Throwable e) {
+    if (!(e instanceof ResponseStatusException)) {
+      return false;
     }
+    HttpStatus status = ((ResponseStatusException) e).getStatus();
+    return status == HttpStatus.SERVICE_UNAVAILABLE || status == HttpStatus.GATEWAY_TIMEOUT;
   }
 }
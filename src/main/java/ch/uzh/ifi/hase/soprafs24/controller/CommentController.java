@@ -3,28 +3,31 @@ package ch.uzh.ifi.hase.soprafs24.controller;
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPageGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPostDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs24.service.*;
 import ch.uzh.ifi.hase.soprafs24.service.AuthorizationService;
 import ch.uzh.ifi.hase.soprafs24.service.CommentService;
+import ch.uzh.ifi.hase.soprafs24.service.TeamService;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 @RestController
 @RequestMapping("api/v1")
 public class CommentController {
   private final CommentService commentService;
   private final AuthorizationService authorizationService;
-  private final PusherService pusherService;
+  private final TeamService teamService;
 
   CommentController(CommentService commentService, AuthorizationService authorizationService,
-      PusherService pusherService) {
+      TeamService teamService) {
     this.commentService = commentService;
     this.authorizationService = authorizationService;
-    this.pusherService = pusherService;
+    this.teamService = teamService;
   }
 
   @PostMapping("/teams/{teamId}/tasks/{taskId}/comments")
@@ -39,12 +42,9 @@ public class CommentController {
     User authorizedUser = authorizationService.isAuthorizedAndBelongsToTeam(
         token, commentPostDTO.getUserId(), teamId);
 
-    // Create comment
+    // Create comment (the team is notified by the service)
     Comment createdComment = commentService.createComment(commentInput, taskId);
 
-    // Push new task
-    pusherService.updateComments(teamId.toString());
-
     // Convert internal representation of comment back to API
     return DTOMapper.INSTANCE.convertEntityToCommentGetDTO(createdComment);
   }
@@ -66,6 +66,41 @@ public class CommentController {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Get a page of the comments of a task, newest first. The next (older) page is requested with
+   * the nextCursor of the previous page, which is null on the last page. With since (the
+   * latestCursor of the last response), only the comments added since then are returned.
+   *
+   * @param teamId the team of the task
+   * @param taskId the task of the comments
+   * @param limit the maximum number of comments of the page
+   * @param cursor the nextCursor of the previous page, omitted for the first page
+   * @param since the latestCursor of the last response, omitted for all comments
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the task is not a task of the team; with status 400 if the limit or a cursor is invalid
+   * @return the page of comments and the cursors for the next requests, or 304 (empty) if the ETag
+   *     of the client is still valid
+   */
+  @GetMapping(value = "/teams/{teamId}/tasks/{taskId}/comments", params = "limit")
+  @ResponseBody
+  public CommentPageGetDTO getCommentsPage(@PathVariable Long teamId, @PathVariable Long taskId,
+      @RequestParam("limit") int limit,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "since", required = false) String since,
+      @RequestHeader("Authorization") String token, WebRequest request) {
+    // Get the user for that user token in header and check if that token is in team
+    authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+
+    // 304 if the comments did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
+    // Get the page of comments (400 if limit or cursor invalid)
+    return commentService.getCommentPage(teamId, taskId, limit, cursor, since);
+  }
+
   @DeleteMapping("/teams/{teamId}/tasks/{taskId}/comments/{commentId}")
   @ResponseStatus(HttpStatus.OK)
   public void deleteComment(@PathVariable Long teamId, @PathVariable Long taskId,
@@ -73,10 +108,7 @@ public class CommentController {
     // Check if user is authorized to delete comment
     authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
-    // Delete comment
+    // Delete comment (the team is notified by the service)
     commentService.deleteCommentById(commentId);
-
-    // pusher call
-    pusherService.updateComments(teamId.toString());
   }
 }
@@ -5,10 +5,11 @@ import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
 import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs24.service.*;
-import java.util.ArrayList;
 import java.util.List;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 /*
@@ -21,13 +22,13 @@ import org.springframework.web.server.ResponseStatusException;
 public class SessionController {
   private final AuthorizationService authorizationService;
   private final SessionService sessionService;
-  private final PusherService pusherService;
+  private final TeamService teamService;
 
   SessionController(AuthorizationService authorizationService, SessionService sessionService,
-      PusherService pusherService) {
+      TeamService teamService) {
     this.authorizationService = authorizationService;
     this.sessionService = sessionService;
-    this.pusherService = pusherService;
+    this.teamService = teamService;
   }
 
   /**
@@ -51,12 +52,9 @@ public class SessionController {
     // convert API session to internal representation to get the time goal
     Session sessionInput = DTOMapper.INSTANCE.convertSessionPostDTOtoEntity(sessionPostDTO);
 
-    // create session (409 if active session)
+    // create session (409 if active session), the team is notified by the service
     Session createdSession = sessionService.createSession(teamId, sessionInput.getGoalMinutes());
 
-    // todo pusher call -> also exception handling
-    pusherService.startSession(teamId.toString());
-
     // convert internal representation of session back to API
     return DTOMapper.INSTANCE.convertEntityToSessionGetDTO(createdSession);
   }
@@ -67,25 +65,67 @@ public class SessionController {
    * @param teamId the team id of the team to get the sessions for
    * @param token the token of the user
    * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
-   * @return the list of sessions
+   * @return the list of sessions, or 304 (empty) if the ETag of the client is still valid
    */
   @GetMapping("/teams/{ID}/sessions")
-  @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public List<SessionGetDTO> getSessionsOfTeam(
-      @PathVariable("ID") Long teamId, @RequestHeader("Authorization") String token) {
+  public List<SessionGetDTO> getSessionsOfTeam(@PathVariable("ID") Long teamId,
+      @RequestHeader("Authorization") String token, WebRequest request) {
     // check if user is authorized (valid token) and if the user exists
     User authorizedUser = authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
+    // 304 if the sessions did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
     // get all sessions of the team
     List<Session> sessions = sessionService.getSessionsByTeamId(teamId);
 
     // convert internal representation of sessions back to API
-    List<SessionGetDTO> sessionGetDTOs = new ArrayList<>();
-    for (Session session : sessions) {
-      sessionGetDTOs.add(DTOMapper.INSTANCE.convertEntityToSessionGetDTO(session));
+    return DTOMapper.INSTANCE.convertEntityListToSessionGetDTOList(sessions);
+  }
+
+  /**
+   * Get one page of the sessions of a team by descending start date. The next page is requested
+   * with the nextCursor of the previous page, which is null on the last page.
+   *
+   * @param teamId the team id of the team to get the sessions for
+   * @param limit the maximum number of sessions of the page
+   * @param cursor the nextCursor of the previous page, omitted for the first page
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the team does not exist; with status 400 if the limit or the cursor is invalid
+   * @return the page of sessions and the cursor of the next page, or 304 (empty) if the ETag of the
+   *     client is still valid
+   */
+  @GetMapping(value = "/teams/{ID}/sessions", params = "limit")
+  @ResponseBody
+  public SessionPageGetDTO getSessionsOfTeamPage(@PathVariable("ID") Long teamId,
+      @RequestParam("limit") int limit,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestHeader("Authorization") String token, WebRequest request) {
+    // check if user is authorized (valid token) and if the user exists
+    User authorizedUser = authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+
+    // 304 if the sessions did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
+    // get the page of sessions (400 if limit or cursor invalid)
+    Slice<Session> sessions = sessionService.getSessionsByTeamId(teamId, limit, cursor);
+
+    // convert internal representation of sessions back to API
+    SessionPageGetDTO sessionPageGetDTO = new SessionPageGetDTO();
+    sessionPageGetDTO.setSessions(
+        DTOMapper.INSTANCE.convertEntityListToSessionGetDTOList(sessions.getContent()));
+    if (sessions.hasNext()) {
+      Session last = sessions.getContent().get(sessions.getNumberOfElements() - 1);
+      sessionPageGetDTO.setNextCursor(
+          new KeysetCursor(last.getStartDateTime(), last.getSessionId()).encode());
     }
-    return sessionGetDTOs;
+    return sessionPageGetDTO;
   }
 
   /**
@@ -105,12 +145,9 @@ public class SessionController {
     // check if user is authorized (valid token) and if the user exists
     User authorizedUser = authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
-    // end session (410 if no active session)
+    // end session (410 if no active session), the team is notified by the service
     Session endedSession = sessionService.endSession(teamId);
 
-    // pusher call with exception handling
-    pusherService.stopSession(teamId.toString());
-
     // convert internal representation of session back to API
     return DTOMapper.INSTANCE.convertEntityToSessionGetDTO(endedSession);
   }
@@ -122,6 +159,7 @@ public class SessionController {
   @GetMapping("/cron/end-expired-sessions")
   @ResponseStatus(HttpStatus.OK)
   public void endExpiredSessions() {
+    // the teams of the ended sessions are notified by the service
     sessionService.endExpiredSessions();
   }
 }
@@ -1,5 +1,6 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
+import ch.uzh.ifi.hase.soprafs24.constant.TaskSort;
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
@@ -13,6 +14,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 /*
@@ -28,14 +30,17 @@ public class TeamController {
   private final TeamUserService teamUserService;
   private final TaskService taskService;
   private final MailService mailService;
+  private final TaskArchiveService taskArchiveService;
 
   TeamController(TeamService teamService, AuthorizationService authorizationService,
-      TeamUserService teamUserService, TaskService taskService, MailService mailService) {
+      TeamUserService teamUserService, TaskService taskService, MailService mailService,
+      TaskArchiveService taskArchiveService) {
     this.teamService = teamService;
     this.authorizationService = authorizationService;
     this.teamUserService = teamUserService;
     this.taskService = taskService;
     this.mailService = mailService;
+    this.taskArchiveService = taskArchiveService;
   }
 
   @PostMapping("/teams")
@@ -79,13 +84,17 @@ public class TeamController {
   }
 
   @GetMapping("/teams/{teamId}/users")
-  @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public List<UserGetDTO> getUsersOfTeam(
-      @PathVariable Long teamId, @RequestHeader("Authorization") String token) {
+  public List<UserGetDTO> getUsersOfTeam(@PathVariable Long teamId,
+      @RequestHeader("Authorization") String token, WebRequest request) {
     // check if user is authorized (valid token) also throws 404 if teamId not found
     User authorizedUser = authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
+    // 304 if the members did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
     // get users of team
     List<User> users = teamUserService.getUsersOfTeam(teamId);
 
@@ -156,50 +165,178 @@ public class TeamController {
 
   @GetMapping("/teams/{ID}/tasks")
   @ResponseBody
-  public List<TaskGetDTO> getTasks(
-      @PathVariable("ID") Long teamId, @RequestHeader("Authorization") String token) {
+  public List<TaskGetDTO> getTasks(@PathVariable("ID") Long teamId,
+      @RequestHeader("Authorization") String token, WebRequest request) {
     // check if user is authorized (valid token)
     authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
-    // get tasks
-    List<Task> tasks = taskService.getTasksByTeamId(teamId);
+    // 304 if the tasks did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
 
-    // convert internal representation of tasks back to API
-    return tasks.stream()
-        .map(DTOMapper.INSTANCE::convertEntityToTaskGetDTO)
-        .collect(Collectors.toList());
+    // get tasks (already in the API representation)
+    return taskService.getTasksByTeamId(teamId);
   }
 
   /*
-   * GET method which uses getTasksByTeamIdAndStatus method from TaskService to get tasks by status
+   * GET method which uses getTasksByTeamIdAndStatus method from TaskService to get tasks by status.
+   * Like all task, session and member listings of a team, it answers with 304 if the ETag sent in
+   * If-None-Match is still the revision of the team.
    */
-  @GetMapping(value = "/teams/{ID}/tasks", params = {"status"})
+  @GetMapping(value = "/teams/{ID}/tasks", params = {"status", "!limit"})
   @ResponseBody
   public List<TaskGetDTO> getTasksByStatus(@PathVariable("ID") Long teamId,
-      @RequestHeader("Authorization") String token, @RequestParam("status") List<String> status) {
+      @RequestHeader("Authorization") String token, @RequestParam("status") List<String> status,
+      WebRequest request) {
+    // auth user
+    authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+
+    // convert status to TaskStatus (400 if invalid)
+    List<TaskStatus> taskStatusList = toTaskStatusList(status);
+
+    // 304 if the tasks did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
+    // get tasks (already in the API representation)
+    return taskService.getTasksByTeamIdAndStatus(teamId, taskStatusList);
+  }
+
+  /**
+   * Get a page of the tasks of the team. The first page is requested without cursor, the next
+   * pages with the nextCursor of the previous page, which is null on the last page. The tasks can
+   * be filtered by status (default: all except the deleted ones) and sorted by creationDate
+   * (default, newest first), title or status.
+   *
+   * @param teamId the team id of the team to get the tasks for
+   * @param limit the maximum number of tasks of the page
+   * @param cursor the nextCursor of the previous page, omitted for the first page
+   * @param sort creationDate, title or status
+   * @param status the statuses of the tasks, omitted for all except the deleted ones
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the team does not exist; with status 400 if the limit, the cursor, the sort or the
+   *     status is invalid
+   * @return the page of tasks and the cursor of the next page, or 304 (empty) if the ETag of the
+   *     client is still valid
+   */
+  @GetMapping(value = "/teams/{ID}/tasks", params = "limit")
+  @ResponseBody
+  public TaskPageGetDTO getTasksPage(@PathVariable("ID") Long teamId,
+      @RequestParam("limit") int limit,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "sort", defaultValue = "creationDate") String sort,
+      @RequestParam(value = "status", required = false) List<String> status,
+      @RequestHeader("Authorization") String token, WebRequest request) {
     // auth user
     authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
 
-    // convert status to TaskStatus
-    List<TaskStatus> taskStatusList;
+    // convert sort and status (400 if invalid)
+    TaskSort taskSort = TaskSort.fromParam(sort);
+    if (taskSort == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid sort.");
+    }
+    List<TaskStatus> taskStatusList = status == null ? null : toTaskStatusList(status);
+
+    // 304 if the tasks did not change since the last request of the client
+    if (request.checkNotModified(teamService.getTeamETag(teamId))) {
+      return null;
+    }
+
+    // get the page of tasks (already in the API representation)
+    return taskService.getTaskPage(teamId, taskStatusList, taskSort, limit, cursor);
+  }
+
+  private static List<TaskStatus> toTaskStatusList(List<String> status) {
     try {
-      taskStatusList = status.stream().map(TaskStatus::valueOf).collect(Collectors.toList());
+      return status.stream().map(TaskStatus::valueOf).collect(Collectors.toList());
     } catch (IllegalArgumentException ex) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid task status.", ex);
     }
+  }
 
-    // get tasks
-    List<Task> tasks = taskService.getTasksByTeamIdAndStatus(teamId, taskStatusList);
+  /**
+   * Get the archived tasks of the team (deleted tasks that were moved to the archive).
+   *
+   * @param teamId the team id of the team to get the archived tasks for
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the team does not exist
+   * @return the archived tasks, newest archival first
+   */
+  @GetMapping("/teams/{teamId}/archived-tasks")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<TaskGetDTO> getArchivedTasks(
+      @PathVariable Long teamId, @RequestHeader("Authorization") String token) {
+    authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+    return taskArchiveService.getArchivedTasks(teamId);
+  }
 
-    // if tasks list is empty, return empty list
-    if (tasks.isEmpty()) {
-      return new ArrayList<>();
-    }
+  /**
+   * Restore an archived task, it is moved back to the tasks of the team with status TODO.
+   *
+   * @param teamId the team id of the team of the archived task
+   * @param taskId the id of the archived task
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the team or the archived task does not exist
+   * @return the restored task
+   */
+  @PostMapping("/teams/{teamId}/archived-tasks/{taskId}/restore")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public TaskGetDTO restoreTask(@PathVariable Long teamId, @PathVariable Long taskId,
+      @RequestHeader("Authorization") String token) {
+    authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+
+    Task restoredTask = taskArchiveService.restoreTask(teamId, taskId);
+
+    // convert internal representation of task back to API
+    return DTOMapper.INSTANCE.convertEntityToTaskGetDTO(restoredTask);
+  }
+
+  /**
+   * Archive deleted tasks cronjob endpoint
+   * @see "cron.yaml"
+   */
+  @GetMapping("/cron/archive-deleted-tasks")
+  @ResponseStatus(HttpStatus.OK)
+  public void archiveDeletedTasks() {
+    taskArchiveService.archiveDeletedTasks();
+  }
+
+  /**
+   * Update several tasks of the team at once (e.g. cards moved across columns). The tasks are
+   * updated in one transaction, either all or none, and the team gets a single notification.
+   *
+   * @param teamId the team id of the team of the tasks
+   * @param taskPutDTOs the tasks to update, each with its taskId
+   * @param token the token of the user
+   * @throws ResponseStatusException with status 401 if the user is not authorized; with status 404
+   *     if the team does not exist or a task does not belong to the team; with status 400 if the
+   *     list is empty or too long or a task is invalid; with status 409 if a task was changed since
+   *     the client loaded it (version)
+   * @return the updated tasks
+   */
+  @PutMapping("/teams/{teamId}/tasks")
+  @ResponseStatus(HttpStatus.OK)
+  @ResponseBody
+  public List<TaskGetDTO> updateTasks(@PathVariable Long teamId,
+      @RequestBody List<TaskPutDTO> taskPutDTOs, @RequestHeader("Authorization") String token) {
+    // check if user is authorized (valid token) and if the user exists
+    authorizationService.isAuthorizedAndBelongsToTeam(token, teamId);
+
+    // convert API tasks to internal representation
+    List<Task> taskInputs = DTOMapper.INSTANCE.convertTaskPutDTOListToEntityList(taskPutDTOs);
+
+    // update tasks (ownership is checked with the tasks)
+    List<Task> updatedTasks = taskService.updateTasks(taskInputs, teamId);
 
     // convert internal representation of tasks back to API
-    return tasks.stream()
-        .map(DTOMapper.INSTANCE::convertEntityToTaskGetDTO)
-        .collect(Collectors.toList());
+    return DTOMapper.INSTANCE.convertEntityListToTaskGetDTOList(updatedTasks);
   }
 
   @PutMapping("/teams/{teamId}/tasks/{taskId}")
@@ -17,6 +17,7 @@ import java.util.List;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 
 /**
@@ -93,15 +94,19 @@ public class UserController {
     userService.deleteUser(id);
   }
 
-  // Get teams of user
+  // Get teams of user (304 if the ETag sent in If-None-Match is still valid)
   @GetMapping("/users/{userId}/teams")
-  @ResponseStatus(HttpStatus.OK)
   @ResponseBody
-  public List<TeamGetDTO> getTeamsOfUser(
-      @PathVariable Long userId, @RequestHeader(HttpHeaders.AUTHORIZATION) String token) {
+  public List<TeamGetDTO> getTeamsOfUser(@PathVariable Long userId,
+      @RequestHeader(HttpHeaders.AUTHORIZATION) String token, WebRequest request) {
     // check if user is authorized
     User user = authorizationService.isExistingAndAuthorized(token, userId);
 
+    // 304 if the teams did not change since the last request of the client
+    if (request.checkNotModified(teamUserService.getTeamsOfUserETag(userId))) {
+      return null;
+    }
+
     // get teams of user
     List<Team> teams = teamUserService.getTeamsOfUser(userId);
 
@@ -0,0 +1,69 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * Archived Comment Representation
+ * Comment of an archived task, moved from COMMENT together with its task. The task and the user
+ * are only referenced by their ids.
+ *
+ * @see ArchivedTask
+ */
+@Entity
+@Table(name = "ARCHIVED_COMMENT")
+public class ArchivedComment implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  // id of the comment in COMMENT (not generated)
+  @Id private Long commentId;
+
+  @Column(length = 1000, nullable = false) private String text;
+
+  @Column(nullable = false) private LocalDateTime creationDate;
+
+  @Column(nullable = false) private Long taskId;
+
+  @Column(nullable = false) private Long userId;
+
+  public Long getCommentId() {
+    return commentId;
+  }
+
+  public void setCommentId(Long commentId) {
+    this.commentId = commentId;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public void setText(String text) {
+    this.text = text;
+  }
+
+  public LocalDateTime getCreationDate() {
+    return creationDate;
+  }
+
+  public void setCreationDate(LocalDateTime creationDate) {
+    this.creationDate = creationDate;
+  }
+
+  public Long getTaskId() {
+    return taskId;
+  }
+
+  public void setTaskId(Long taskId) {
+    this.taskId = taskId;
+  }
+
+  public Long getUserId() {
+    return userId;
+  }
+
+  public void setUserId(Long userId) {
+    this.userId = userId;
+  }
+}
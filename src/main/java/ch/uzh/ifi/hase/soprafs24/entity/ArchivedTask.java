@@ -0,0 +1,111 @@
+package ch.uzh.ifi.hase.soprafs24.entity;
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * Archived Task Representation
+ * Deleted tasks are moved from TASK to ARCHIVED_TASK after some time, so that the task table only
+ * holds the live tasks. The task keeps its id, so it can be restored. The team is only referenced
+ * by its id (no join, no foreign key), the archive is only read when a task is restored.
+ *
+ * @see ch.uzh.ifi.hase.soprafs24.service.TaskArchiveService
+ */
+@Entity
+@Table(name = "ARCHIVED_TASK")
+public class ArchivedTask implements Serializable {
+  public static final long serialVersionUID = 1L;
+
+  // id of the task in TASK (not generated)
+  @Id private Long taskId;
+
+  @Column(length = 100, nullable = false) private String title;
+
+  @Column(length = 1000, nullable = false) private String description;
+
+  private LocalDateTime creationDate;
+
+  private LocalDateTime modificationDate;
+
+  @Column(nullable = false) private TaskStatus status;
+
+  // version of the task (optimistic locking), see Task
+  @Column(columnDefinition = "bigint default 0 not null") private Long version;
+
+  @Column(nullable = false) private Long teamId;
+
+  @Column(nullable = false) private LocalDateTime archiveDate;
+
+  public Long getTaskId() {
+    return taskId;
+  }
+
+  public void setTaskId(Long taskId) {
+    this.taskId = taskId;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public void setTitle(String title) {
+    this.title = title;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public void setDescription(String description) {
+    this.description = description;
+  }
+
+  public LocalDateTime getCreationDate() {
+    return creationDate;
+  }
+
+  public void setCreationDate(LocalDateTime creationDate) {
+    this.creationDate = creationDate;
+  }
+
+  public LocalDateTime getModificationDate() {
+    return modificationDate;
+  }
+
+  public void setModificationDate(LocalDateTime modificationDate) {
+    this.modificationDate = modificationDate;
+  }
+
+  public TaskStatus getStatus() {
+    return status;
+  }
+
+  public void setStatus(TaskStatus status) {
+    this.status = status;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
+  public Long getTeamId() {
+    return teamId;
+  }
+
+  public void setTeamId(Long teamId) {
+    this.teamId = teamId;
+  }
+
+  public LocalDateTime getArchiveDate() {
+    return archiveDate;
+  }
+
+  public void setArchiveDate(LocalDateTime archiveDate) {
+    this.archiveDate = archiveDate;
+  }
+}
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.time.LocalDateTime;
 import javax.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 /**
  * Internal Task Representation
@@ -26,6 +27,14 @@ public class Task implements Serializable {
   // timestamp, not null
   @CreationTimestamp private LocalDateTime creationDate;
 
+  // timestamp of the last change (e.g. when the task was deleted), used for the archival of the
+  // deleted tasks; null for tasks that were not changed since the column exists
+  @UpdateTimestamp private LocalDateTime modificationDate;
+
+  // optimistic locking: incremented with every update, an update with an outdated version fails
+  // (existing rows start with 0)
+  @Version @Column(columnDefinition = "bigint default 0 not null") private Long version;
+
   // string, not null
   @Column(nullable = false) private TaskStatus status;
 
@@ -65,6 +74,22 @@ public class Task implements Serializable {
     this.creationDate = creationDate;
   }
 
+  public LocalDateTime getModificationDate() {
+    return modificationDate;
+  }
+
+  public void setModificationDate(LocalDateTime modificationDate) {
+    this.modificationDate = modificationDate;
+  }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
   public TaskStatus getStatus() {
     return status;
   }
@@ -20,6 +20,11 @@ public class Team implements Serializable {
 
   @Column(nullable = false, unique = true) private String teamUUID;
 
+  // version of the team data (team, members, tasks, comments) for the clients, incremented with
+  // TeamRepository#incrementRevision only (never written by an insert or update of the entity)
+  @Column(insertable = false, updatable = false, columnDefinition = "bigint default 0 not null")
+  private Long revision;
+
   public Long getTeamId() {
     return teamId;
   }
@@ -51,4 +56,12 @@ public class Team implements Serializable {
   public void setTeamUUID(String teamUUID) {
     this.teamUUID = teamUUID;
   }
+
+  public Long getRevision() {
+    return revision;
+  }
+
+  public void setRevision(Long revision) {
+    this.revision = revision;
+  }
 }
@@ -2,7 +2,6 @@ package ch.uzh.ifi.hase.soprafs24.entity;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
-import java.util.List;
 import javax.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -33,8 +32,6 @@ public class User implements Serializable {
 
   @Column(nullable = false, unique = true) private String token;
 
-  @OneToMany(mappedBy = "user", cascade = CascadeType.ALL) private List<Comment> comments;
-
   @CreationTimestamp private LocalDateTime createdDate;
 
   @UpdateTimestamp private LocalDateTime modifiedDate;
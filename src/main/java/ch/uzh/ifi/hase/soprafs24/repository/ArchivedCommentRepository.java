@@ -0,0 +1,56 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.ArchivedComment;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository("archivedCommentRepository")
+public interface ArchivedCommentRepository extends JpaRepository<ArchivedComment, Long> {
+  /**
+   * Copies all comments of the tasks from COMMENT to ARCHIVED_COMMENT with a single INSERT ...
+   * SELECT. The comments are not deleted from COMMENT, see CommentRepository#deleteByTaskIds.
+   *
+   * @param taskIds ids of the tasks that are archived
+   * @return the number of archived comments
+   */
+  @Modifying
+  @Query(value = "INSERT INTO archived_comment (comment_id, text, creation_date, task_id, user_id)"
+          + " SELECT comment_id, text, creation_date, task_id, user_id FROM comment"
+          + " WHERE task_id IN (:taskIds)",
+      nativeQuery = true)
+  int
+  archiveComments(@Param("taskIds") Collection<Long> taskIds);
+
+  /**
+   * Copies the archived comments of a task back to COMMENT with their original ids. Comments of
+   * users that were deleted in the meantime are not restored (their comments were deleted with the
+   * user).
+   *
+   * @param taskId id of the restored task
+   * @return the number of restored comments
+   */
+  @Modifying
+  @Query(value = "INSERT INTO comment (comment_id, text, creation_date, task_id, user_id)"
+          + " SELECT ac.comment_id, ac.text, ac.creation_date, ac.task_id, ac.user_id"
+          + " FROM archived_comment ac WHERE ac.task_id = :taskId"
+          + " AND EXISTS (SELECT 1 FROM users u WHERE u.user_id = ac.user_id)",
+      nativeQuery = true)
+  int
+  restoreComments(@Param("taskId") Long taskId);
+
+  @Modifying
+  @Query("DELETE FROM ArchivedComment c WHERE c.taskId = :taskId")
+  int deleteByTaskId(@Param("taskId") Long taskId);
+
+  @Modifying
+  @Query("DELETE FROM ArchivedComment c WHERE c.userId = :userId")
+  int deleteByUserId(@Param("userId") Long userId);
+
+  /* just for verifying the archival in tests */
+  List<ArchivedComment> findByTaskId(Long taskId);
+}
@@ -0,0 +1,71 @@
+package ch.uzh.ifi.hase.soprafs24.repository;
+
+import ch.uzh.ifi.hase.soprafs24.entity.ArchivedTask;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository("archivedTaskRepository")
+public interface ArchivedTaskRepository extends JpaRepository<ArchivedTask, Long> {
+  /**
+   * Copies tasks from TASK to ARCHIVED_TASK with a single INSERT ... SELECT, none of the tasks is
+   * loaded. The tasks are not deleted from TASK, see TaskRepository#deleteByTaskIds.
+   *
+   * Not annotated with @Modifying, because the statement returns rows (RETURNING).
+   *
+   * @param taskIds ids of the tasks to archive
+   * @param archiveDate timestamp of the archival
+   * @return the team id of every archived task
+   */
+  @Transactional
+  @Query(value = "INSERT INTO archived_task (task_id, title, description, creation_date,"
+          + " modification_date, status, version, team_id, archive_date)"
+          + " SELECT task_id, title, description, creation_date, modification_date, status,"
+          + " version, team_id, :archiveDate FROM task WHERE task_id IN (:taskIds)"
+          + " RETURNING team_id",
+      nativeQuery = true)
+  List<Number>
+  archiveTasks(@Param("taskIds") Collection<Long> taskIds,
+      @Param("archiveDate") LocalDateTime archiveDate);
+
+  /**
+   * Copies an archived task back to TASK with its original id (INSERT ... SELECT) and the next
+   * version. The archived task is not deleted, see {@link #deleteByTaskId(Long)}.
+   *
+   * @param taskId id of the archived task
+   * @param status ordinal of the status of the restored task
+   * @param modificationDate timestamp of the restore
+   * @return the number of restored tasks (0 or 1)
+   */
+  @Modifying
+  @Query(value = "INSERT INTO task (task_id, title, description, creation_date,"
+          + " modification_date, status, version, team_id)"
+          + " SELECT task_id, title, description, creation_date, :modificationDate, :status,"
+          + " version + 1, team_id FROM archived_task WHERE task_id = :taskId",
+      nativeQuery = true)
+  int
+  restoreTask(@Param("taskId") Long taskId, @Param("status") int status,
+      @Param("modificationDate") LocalDateTime modificationDate);
+
+  @Modifying
+  @Query("DELETE FROM ArchivedTask a WHERE a.taskId = :taskId")
+  int deleteByTaskId(@Param("taskId") Long taskId);
+
+  boolean existsByTaskIdAndTeamId(Long taskId, Long teamId);
+
+  /**
+   * Archived tasks of a team (newest archival first), read directly into the DTO.
+   */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "a.taskId, a.title, a.description, a.creationDate, a.status, a.version)"
+      + " FROM ArchivedTask a WHERE a.teamId = :teamId ORDER BY a.archiveDate DESC, a.taskId DESC")
+  List<TaskGetDTO>
+  findTaskGetDTOsByTeamId(@Param("teamId") Long teamId);
+}
@@ -3,8 +3,16 @@ package ch.uzh.ifi.hase.soprafs24.repository;
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository("commentRepository")
@@ -16,6 +24,44 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
    */
   List<Comment> findByTaskOrderByCreationDateDesc(Task task);
 
+  // Paged comment thread with keyset pagination on (creationDate, commentId): a page starts right
+  // after the position of a cursor, so the database seeks to it with the index on (task_id,
+  // creation_date DESC, comment_id DESC) (see db/indexes.sql) instead of reading the whole
+  // thread. The comments are read directly into the DTO, the author is joined for the name only.
+  // Only the page size of the pageable is used.
+
+  /** First page of the thread of a task, newest first. */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO("
+      + "c.commentId, u.userId, u.username, c.text, c.creationDate)"
+      + " FROM Comment c JOIN c.user u WHERE c.task.taskId = :taskId"
+      + " ORDER BY c.creationDate DESC, c.commentId DESC")
+  Slice<CommentGetDTO> findPageByTaskId(@Param("taskId") Long taskId, Pageable pageable);
+
+  /** Next page of the thread, the comments older than (creationDate, commentId), newest first. */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO("
+      + "c.commentId, u.userId, u.username, c.text, c.creationDate)"
+      + " FROM Comment c JOIN c.user u WHERE c.task.taskId = :taskId"
+      + " AND (c.creationDate < :creationDate"
+      + " OR (c.creationDate = :creationDate AND c.commentId < :commentId))"
+      + " ORDER BY c.creationDate DESC, c.commentId DESC")
+  Slice<CommentGetDTO> findPageByTaskIdBefore(@Param("taskId") Long taskId,
+      @Param("creationDate") LocalDateTime creationDate, @Param("commentId") Long commentId,
+      Pageable pageable);
+
+  /**
+   * Comments newer than (creationDate, commentId), i.e. the comments since the last refresh of a
+   * client, oldest first.
+   */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO("
+      + "c.commentId, u.userId, u.username, c.text, c.creationDate)"
+      + " FROM Comment c JOIN c.user u WHERE c.task.taskId = :taskId"
+      + " AND (c.creationDate > :creationDate"
+      + " OR (c.creationDate = :creationDate AND c.commentId > :commentId))"
+      + " ORDER BY c.creationDate ASC, c.commentId ASC")
+  Slice<CommentGetDTO> findPageByTaskIdAfter(@Param("taskId") Long taskId,
+      @Param("creationDate") LocalDateTime creationDate, @Param("commentId") Long commentId,
+      Pageable pageable);
+
   /**
    * Finds a comment by its commentId.
    * @param commentId
@@ -50,4 +96,52 @@ public interface CommentRepository extends JpaRepository<Comment, Long> {
    * @return A list of comments created by the given user.
    */
   List<Comment> findByUser(User user);
+
+  /**
+   * Counts the comments of the tasks with a single grouped query (comment counts of a task
+   * listing), no comment is loaded. Tasks without comments are not in the result.
+   *
+   * Usage:
+   * <pre>{@code
+   * for (Object[] row : commentRepository.countByTaskIds(taskIds)) {
+   *   Long taskId = (Long) row[0];
+   *   Long count = (Long) row[1];
+   * }
+   * }</pre>
+   *
+   * @param taskIds ids of the tasks whose comments are counted
+   * @return pairs of task id and number of comments
+   */
+  @Query("SELECT c.task.taskId, COUNT(c) FROM Comment c WHERE c.task.taskId IN :taskIds"
+      + " GROUP BY c.task.taskId")
+  List<Object[]> countByTaskIds(@Param("taskIds") Collection<Long> taskIds);
+
+  /**
+   * Retrieves the ids of the teams of the tasks a user commented on, without loading the comments.
+   *
+   * @param userId id of the author
+   * @return ids of the teams
+   */
+  @Query("SELECT DISTINCT c.task.team.teamId FROM Comment c WHERE c.user.userId = :userId")
+  List<Long> findTeamIdsByUserId(@Param("userId") Long userId);
+
+  /**
+   * Deletes all comments of a user with a single statement, no comment is loaded.
+   *
+   * @param userId id of the author
+   * @return number of deleted comments
+   */
+  @Modifying
+  @Query("DELETE FROM Comment c WHERE c.user.userId = :userId")
+  int deleteByUserId(@Param("userId") Long userId);
+
+  /**
+   * Deletes all comments of the tasks with a single statement, no comment is loaded.
+   *
+   * @param taskIds ids of the tasks whose comments are deleted
+   * @return number of deleted comments
+   */
+  @Modifying
+  @Query("DELETE FROM Comment c WHERE c.task.taskId IN :taskIds")
+  int deleteByTaskIds(@Param("taskIds") Collection<Long> taskIds);
 }
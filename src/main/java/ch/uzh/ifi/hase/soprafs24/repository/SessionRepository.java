@@ -2,17 +2,82 @@ package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Session;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository("sessionRepository")
 public interface SessionRepository extends JpaRepository<Session, Long> {
   List<Session> findByTeamOrderByStartDateTimeDesc(Team team);
 
+  /**
+   * Get the first page of the sessions of a team (more recent first). The session id breaks ties
+   * of sessions with the same start date, so the order is stable for the keyset pagination.
+   *
+   * @param team the team to get the sessions for
+   * @param pageable only the page size is used, the sort is given by the method name
+   * @return the sessions of the page, hasNext() tells if there are more sessions
+   */
+  Slice<Session> findByTeamOrderByStartDateTimeDescSessionIdDesc(Team team, Pageable pageable);
+
+  /**
+   * Get the next page of the sessions of a team, i.e. the sessions after the (startDateTime,
+   * sessionId) position of the last session of the previous page. Uses the index on (team_id,
+   * start_date_time DESC, session_id DESC), so the cost does not depend on how far the client
+   * paged.
+   *
+   * @param team the team to get the sessions for
+   * @param startDateTime start date of the last session of the previous page
+   * @param sessionId id of the last session of the previous page
+   * @param pageable only the page size is used
+   * @return the sessions of the page, hasNext() tells if there are more sessions
+   */
+  @Query("SELECT s FROM Session s WHERE s.team = :team AND (s.startDateTime < :startDateTime"
+      + " OR (s.startDateTime = :startDateTime AND s.sessionId < :sessionId))"
+      + " ORDER BY s.startDateTime DESC, s.sessionId DESC")
+  Slice<Session> findByTeamAfterCursor(@Param("team") Team team,
+      @Param("startDateTime") LocalDateTime startDateTime, @Param("sessionId") Long sessionId,
+      Pageable pageable);
+
   /* just for verifying ascending order in tests */
   List<Session> findByTeamOrderByStartDateTimeAsc(Team team);
 
+  /**
+   * Get the active session (no end date) of a team. Returns at most one row and uses the partial
+   * index on the active sessions (see db/indexes.sql), so the cost does not grow with the session
+   * history of the team.
+   *
+   * @param team the team to get the active session for
+   * @return the most recent active session, empty if the team has no active session
+   */
+  Optional<Session> findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(Team team);
+
   /* New method to find all sessions with null end date */
   List<Session> findByEndDateTimeIsNull();
+
+  /**
+   * Ends all active sessions that started before the given time with a single update. The end date
+   * is set to 24 hours after the start date (the maximum duration of a session).
+   *
+   * This is not a @Modifying query on purpose: the update returns the team ids of the ended
+   * sessions (Postgres RETURNING), so it is executed as a query. The ids are returned as Number,
+   * because Hibernate maps bigint columns of native queries to BigInteger.
+   *
+   * @param startedBefore sessions that started before this time are expired
+   * @return the team ids of the ended sessions (one per ended session)
+   */
+  @Transactional
+  @Query(value = "UPDATE session SET end_date_time = start_date_time + INTERVAL '24 hours'"
+          + " WHERE end_date_time IS NULL AND start_date_time < :startedBefore"
+          + " RETURNING team_id",
+      nativeQuery = true)
+  List<Number>
+  endSessionsStartedBefore(@Param("startedBefore") LocalDateTime startedBefore);
 }
@@ -3,8 +3,14 @@ package ch.uzh.ifi.hase.soprafs24.repository;
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,12 +24,135 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
 
   List<Task> findByTeam(Team team);
 
-  /** Select * from TASK where team = team and status <> status */
-  List<Task> findByTeamAndStatusNot(Team team, TaskStatus status);
+  /**
+   * Checks if a task belongs to a team with a single existence query, without loading the task.
+   */
+  boolean existsByTaskIdAndTeamTeamId(Long taskId, Long teamId);
 
-  @Query(
-      "SELECT t FROM Task t WHERE t.team = :team AND t.status IN :statuses ORDER BY LOWER(t.title) ASC")
+  /**
+   * Task listing of a team without the tasks with the given status, read directly into the DTO
+   * with one statement. Neither the tasks nor the team are loaded as entities (the team id is the
+   * foreign key column, no join).
+   */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status <> :status")
+  List<TaskGetDTO>
+  findTaskGetDTOsByTeamIdAndStatusNot(
+      @Param("teamId") Long teamId, @Param("status") TaskStatus status);
+
+  /**
+   * Task listing of a team with the given statuses ordered by title (case-insensitive), read
+   * directly into the DTO with one statement.
+   */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " ORDER BY LOWER(t.title) ASC, t.taskId ASC")
+  List<TaskGetDTO>
+  findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+      @Param("teamId") Long teamId, @Param("statuses") List<TaskStatus> statuses);
+
+  // Paged task listing with keyset pagination: the next page starts after the sort keys of the
+  // last task of the previous page, so the database seeks to it with an index instead of skipping
+  // the previous rows (see db/indexes.sql). The task id is the last sort key, so the order is
+  // total. The title of the cursor is the title as stored, it is lowercased by the database like
+  // the titles it is compared with. Only the page size of the pageable is used.
+
+  /** First page, newest first. */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " ORDER BY t.creationDate DESC, t.taskId DESC")
+  Slice<TaskGetDTO> findPageOrderByCreationDate(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses, Pageable pageable);
+
+  /** Next page after (creationDate, taskId), newest first. */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " AND (t.creationDate < :creationDate"
+      + " OR (t.creationDate = :creationDate AND t.taskId < :taskId))"
+      + " ORDER BY t.creationDate DESC, t.taskId DESC")
+  Slice<TaskGetDTO> findPageOrderByCreationDateAfter(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses,
+      @Param("creationDate") LocalDateTime creationDate, @Param("taskId") Long taskId,
+      Pageable pageable);
+
+  /** First page, ordered by title (case-insensitive). */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " ORDER BY LOWER(t.title) ASC, t.taskId ASC")
+  Slice<TaskGetDTO> findPageOrderByTitle(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses, Pageable pageable);
+
+  /** Next page after (LOWER(title), taskId), ordered by title (case-insensitive). */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " AND (LOWER(t.title) > LOWER(:title)"
+      + " OR (LOWER(t.title) = LOWER(:title) AND t.taskId > :taskId))"
+      + " ORDER BY LOWER(t.title) ASC, t.taskId ASC")
+  Slice<TaskGetDTO> findPageOrderByTitleAfter(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses, @Param("title") String title,
+      @Param("taskId") Long taskId, Pageable pageable);
+
+  /** First page, ordered by status, then by title (case-insensitive). */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " ORDER BY t.status ASC, LOWER(t.title) ASC, t.taskId ASC")
+  Slice<TaskGetDTO> findPageOrderByStatus(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses, Pageable pageable);
+
+  /** Next page after (status, LOWER(title), taskId), ordered by status, then by title. */
+  @Query("SELECT new ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO("
+      + "t.taskId, t.title, t.description, t.creationDate, t.status, t.version)"
+      + " FROM Task t WHERE t.team.teamId = :teamId AND t.status IN :statuses"
+      + " AND (t.status > :status OR (t.status = :status AND (LOWER(t.title) > LOWER(:title)"
+      + " OR (LOWER(t.title) = LOWER(:title) AND t.taskId > :taskId))))"
+      + " ORDER BY t.status ASC, LOWER(t.title) ASC, t.taskId ASC")
+  Slice<TaskGetDTO> findPageOrderByStatusAfter(@Param("teamId") Long teamId,
+      @Param("statuses") List<TaskStatus> statuses, @Param("status") TaskStatus status,
+      @Param("title") String title, @Param("taskId") Long taskId, Pageable pageable);
+
+  /**
+   * Ids of the tasks with the given status that were not changed since the given time (tasks
+   * without modification date: not created since then), e.g. the deleted tasks to archive.
+   *
+   * @param status status of the tasks
+   * @param before the tasks were last changed before this time
+   * @param pageable only the page size (maximum number of ids) is used
+   * @return the task ids
+   */
+  @Query("SELECT t.taskId FROM Task t WHERE t.status = :status"
+      + " AND COALESCE(t.modificationDate, t.creationDate) < :before")
+  List<Long>
+  findIdsByStatusModifiedBefore(@Param("status") TaskStatus status,
+      @Param("before") LocalDateTime before, Pageable pageable);
+
+  /**
+   * Deletes the tasks with a single statement, no task is loaded. The comments of the tasks must
+   * be deleted before (foreign key).
+   *
+   * @param taskIds ids of the tasks to delete
+   * @return number of deleted tasks
+   */
+  @Modifying
+  @Query("DELETE FROM Task t WHERE t.taskId IN :taskIds")
+  int deleteByTaskIds(@Param("taskIds") Collection<Long> taskIds);
+
+  /**
+   * Loads the tasks with the given ids that belong to the team, with their team, in one query. A
+   * requested task that is missing in the result does not exist or belongs to another team.
+   *
+   * @param teamId id of the team
+   * @param taskIds ids of the tasks
+   * @return the found tasks of the team
+   */
+  @Query("SELECT t FROM Task t JOIN FETCH t.team WHERE t.team.teamId = :teamId"
+      + " AND t.taskId IN :taskIds")
   List<Task>
-  findByTeamAndStatusInOrderByTitleAsc(
-      @Param("team") Team team, @Param("statuses") List<TaskStatus> statuses);
+  findByTeamIdAndTaskIdIn(@Param("teamId") Long teamId, @Param("taskIds") Collection<Long> taskIds);
 }
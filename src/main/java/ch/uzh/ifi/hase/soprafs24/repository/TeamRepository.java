@@ -1,10 +1,70 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface TeamRepository extends JpaRepository<Team, Long> {
   // all basic crud operations are already implemented
 
   Team findByTeamUUID(String teamUUID);
+
+  /**
+   * Increments the revision of a team and returns the new revision in one statement. The row lock
+   * of the update is held until the end of the transaction, so concurrent changes of the same team
+   * get their revisions in commit order.
+   *
+   * Not a @Modifying query, because the update returns the new revision (Postgres RETURNING).
+   *
+   * @param teamId id of the team
+   * @return the new revision, null if the team does not exist
+   */
+  @Transactional
+  @Query(value = "UPDATE team SET revision = revision + 1 WHERE team_id = :teamId"
+          + " RETURNING revision",
+      nativeQuery = true)
+  Number
+  incrementRevision(@Param("teamId") Long teamId);
+
+  /**
+   * Increments the revisions of several teams in one statement, e.g. after their expired sessions
+   * were ended.
+   *
+   * @param teamIds ids of the teams (must not be empty)
+   * @return pairs of team id and new revision of the updated teams
+   */
+  @Transactional
+  @Query(value = "UPDATE team SET revision = revision + 1 WHERE team_id IN (:teamIds)"
+          + " RETURNING team_id, revision",
+      nativeQuery = true)
+  List<Object[]>
+  incrementRevisions(@Param("teamIds") Collection<Long> teamIds);
+
+  /**
+   * Increments the revisions of all teams of a user, e.g. after the name of the user changed,
+   * which is part of the member list of the teams.
+   *
+   * @param userId id of the user
+   * @return number of updated teams
+   */
+  @Modifying
+  @Query(value = "UPDATE team SET revision = revision + 1"
+          + " WHERE team_id IN (SELECT team_id FROM team_user WHERE user_id = :userId)",
+      nativeQuery = true)
+  int
+  incrementRevisionsOfUser(@Param("userId") Long userId);
+
+  /**
+   * Reads only the revision of a team (used as ETag), without loading the team.
+   *
+   * @param teamId id of the team
+   * @return the revision, null if the team does not exist
+   */
+  @Query("SELECT t.revision FROM Team t WHERE t.teamId = :teamId")
+  Long findRevisionByTeamId(@Param("teamId") Long teamId);
 }
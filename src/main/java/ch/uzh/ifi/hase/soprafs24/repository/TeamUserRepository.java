@@ -6,6 +6,9 @@ import ch.uzh.ifi.hase.soprafs24.entity.TeamUserId;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository("teamUserRepository")
@@ -43,4 +46,46 @@ public interface TeamUserRepository extends JpaRepository<TeamUser, TeamUserId>
    * Get by team and user
    */
   TeamUser findByTeamAndUser(Team team, User user);
+
+  /**
+   * Checks if a user is in a team with a single existence query on the composite key, without
+   * loading the team, the user or the other members of the team.
+   *
+   * Usage:
+   * boolean isMember = teamUserRepository.existsByTeamUserId(new TeamUserId(teamId, userId));
+   *
+   * @param teamUserId composite key of team id and user id
+   * @return true if the link exists
+   */
+  boolean existsByTeamUserId(TeamUserId teamUserId);
+
+  /**
+   * Retrieves the ids and revisions of all teams of a user (used as ETag of the teams of the user),
+   * without loading the teams.
+   *
+   * @param userId id of the user
+   * @return pairs of team id and revision, ordered by team id
+   */
+  @Query("SELECT tu.team.teamId, tu.team.revision FROM TeamUser tu"
+      + " WHERE tu.user.userId = :userId ORDER BY tu.team.teamId")
+  List<Object[]> findTeamRevisionsByUserId(@Param("userId") Long userId);
+
+  /**
+   * Retrieves the ids of all teams of a user, without loading the teams.
+   *
+   * @param userId id of the user
+   * @return ids of the teams
+   */
+  @Query("SELECT tu.team.teamId FROM TeamUser tu WHERE tu.user.userId = :userId")
+  List<Long> findTeamIdsByUserId(@Param("userId") Long userId);
+
+  /**
+   * Removes a user from all teams with a single statement, no link is loaded.
+   *
+   * @param userId id of the user
+   * @return number of deleted links
+   */
+  @Modifying
+  @Query("DELETE FROM TeamUser tu WHERE tu.user.userId = :userId")
+  int deleteByUserId(@Param("userId") Long userId);
 }
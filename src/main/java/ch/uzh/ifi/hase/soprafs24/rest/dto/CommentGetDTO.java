@@ -9,6 +9,23 @@ public class CommentGetDTO {
   private String text;
   private LocalDateTime creationDate;
 
+  public CommentGetDTO() {}
+
+  /**
+   * Used by the constructor expressions of the comment thread queries, so that the comments are
+   * read without loading the comment and user entities.
+   *
+   * @see ch.uzh.ifi.hase.soprafs24.repository.CommentRepository
+   */
+  public CommentGetDTO(
+      Long commentId, Long authorId, String authorName, String text, LocalDateTime creationDate) {
+    this.commentId = commentId;
+    this.authorId = authorId;
+    this.authorName = authorName;
+    this.text = text;
+    this.creationDate = creationDate;
+  }
+
   public Long getCommentId() {
     return commentId;
   }
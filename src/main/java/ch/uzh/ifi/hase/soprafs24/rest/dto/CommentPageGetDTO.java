@@ -0,0 +1,33 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.List;
+
+public class CommentPageGetDTO {
+  private List<CommentGetDTO> comments;
+  private String nextCursor;
+  private String latestCursor;
+
+  public List<CommentGetDTO> getComments() {
+    return comments;
+  }
+
+  public void setComments(List<CommentGetDTO> comments) {
+    this.comments = comments;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  public String getLatestCursor() {
+    return latestCursor;
+  }
+
+  public void setLatestCursor(String latestCursor) {
+    this.latestCursor = latestCursor;
+  }
+}
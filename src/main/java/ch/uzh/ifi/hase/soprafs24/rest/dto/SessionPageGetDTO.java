@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.List;
+
+public class SessionPageGetDTO {
+  private List<SessionGetDTO> sessions;
+  private String nextCursor;
+
+  public List<SessionGetDTO> getSessions() {
+    return sessions;
+  }
+
+  public void setSessions(List<SessionGetDTO> sessions) {
+    this.sessions = sessions;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+}
@@ -1,6 +1,9 @@
 package ch.uzh.ifi.hase.soprafs24.rest.dto;
 
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Date;
 
 // GET DTO
@@ -11,6 +14,31 @@ public class TaskGetDTO {
   private Date creationDate;
   private TaskStatus status;
   private Long taskId;
+  private Long version;
+  // only set in the task listings, null in the responses and events of a single task
+  private Long commentCount;
+  // exact creation date of the listing queries (not sent), the key of the task page cursor
+  private LocalDateTime listingCreationDate;
+
+  public TaskGetDTO() {}
+
+  /**
+   * Used by the constructor expressions of the task listing queries, so that the tasks are read
+   * without loading the task entities. The creation date is converted like in the DTOMapper.
+   *
+   * @see ch.uzh.ifi.hase.soprafs24.repository.TaskRepository
+   */
+  public TaskGetDTO(Long taskId, String title, String description, LocalDateTime creationDate,
+      TaskStatus status, Long version) {
+    this.taskId = taskId;
+    this.title = title;
+    this.description = description;
+    this.creationDate =
+        creationDate == null ? null : Date.from(creationDate.toInstant(ZoneOffset.UTC));
+    this.listingCreationDate = creationDate;
+    this.status = status;
+    this.version = version;
+  }
 
   public Long getTaskId() {
     return taskId;
@@ -44,6 +72,18 @@ public class TaskGetDTO {
     this.creationDate = creationDate;
   }
 
+  /**
+   * @return the creation date as read by the listing queries, without the precision loss of the
+   *     conversion to {@link Date}; the creation date of the {@link Date} otherwise
+   */
+  @JsonIgnore
+  public LocalDateTime getListingCreationDate() {
+    if (listingCreationDate == null && creationDate != null) {
+      return LocalDateTime.ofInstant(creationDate.toInstant(), ZoneOffset.UTC);
+    }
+    return listingCreationDate;
+  }
+
   public TaskStatus getStatus() {
     return status;
   }
@@ -51,4 +91,20 @@ public class TaskGetDTO {
   public void setStatus(TaskStatus status) {
     this.status = status;
   }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
+
+  public Long getCommentCount() {
+    return commentCount;
+  }
+
+  public void setCommentCount(Long commentCount) {
+    this.commentCount = commentCount;
+  }
 }
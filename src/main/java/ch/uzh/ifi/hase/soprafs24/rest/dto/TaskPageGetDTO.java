@@ -0,0 +1,24 @@
+package ch.uzh.ifi.hase.soprafs24.rest.dto;
+
+import java.util.List;
+
+public class TaskPageGetDTO {
+  private List<TaskGetDTO> tasks;
+  private String nextCursor;
+
+  public List<TaskGetDTO> getTasks() {
+    return tasks;
+  }
+
+  public void setTasks(List<TaskGetDTO> tasks) {
+    this.tasks = tasks;
+  }
+
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+  public void setNextCursor(String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+}
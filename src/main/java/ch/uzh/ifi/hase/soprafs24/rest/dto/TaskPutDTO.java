@@ -7,6 +7,8 @@ public class TaskPutDTO {
   private String title;
   private String description;
   private TaskStatus status;
+  // version of the task that was edited, required (409 if the task was changed in the meantime)
+  private Long version;
 
   public Long getTaskId() {
     return taskId;
@@ -39,4 +41,12 @@ public class TaskPutDTO {
   public void setStatus(TaskStatus status) {
     this.status = status;
   }
+
+  public Long getVersion() {
+    return version;
+  }
+
+  public void setVersion(Long version) {
+    this.version = version;
+  }
 }
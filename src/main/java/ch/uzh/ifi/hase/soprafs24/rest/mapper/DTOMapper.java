@@ -4,6 +4,7 @@ import ch.uzh.ifi.hase.soprafs24.entity.*;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import org.mapstruct.*;
 import org.mapstruct.factory.Mappers;
 
@@ -67,12 +68,17 @@ public interface DTOMapper {
   @Mapping(target = "status", source = "status")
   Task convertTaskPutDTOtoEntity(TaskPutDTO taskPutDTO);
 
+  List<Task> convertTaskPutDTOListToEntityList(List<TaskPutDTO> taskPutDTOs);
+
   @Mapping(source = "title", target = "title")
   @Mapping(source = "description", target = "description")
   @Mapping(source = "creationDate", target = "creationDate")
   @Mapping(source = "status", target = "status")
+  @Mapping(target = "commentCount", ignore = true)
   TaskGetDTO convertEntityToTaskGetDTO(Task task);
 
+  List<TaskGetDTO> convertEntityListToTaskGetDTOList(List<Task> tasks);
+
   @Mapping(source = "text", target = "text")
   @Mapping(source = "userId", target = "user.userId")
   Comment convertCommentPostDTOtoEntity(CommentPostDTO commentPostDTO);
@@ -94,6 +100,8 @@ public interface DTOMapper {
   SessionGetDTO
   convertEntityToSessionGetDTO(Session session);
 
+  List<SessionGetDTO> convertEntityListToSessionGetDTOList(List<Session> sessions);
+
   @Mapping(source = "userId", target = "userId")
   @Mapping(source = "teamId", target = "teamId")
   @Mapping(source = "channelName", target = "channelName")
@@ -1,92 +1,280 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import ch.uzh.ifi.hase.soprafs24.cache.ExpiringCache;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.util.Optional;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Service
 public class AIService {
+  private static final String MODEL = "gpt-3.5-turbo-instruct";
+  private static final int MAX_TOKENS = 50;
+
+  // in stream mode the AI service sends the completion as server-sent events, the last one is
+  // "[DONE]"
+  private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT_TYPE =
+      new ParameterizedTypeReference<>() {};
+  private static final String STREAM_DONE = "[DONE]";
+
   private final WebClient webClient;
   private final ObjectMapper objectMapper;
+  private final ObjectWriter requestWriter;
+  private final Duration timeout;
+
+  // limits the requests that wait for the AI service at the same time, further requests are
+  // rejected right away instead of queueing up behind a slow AI service
+  private final Semaphore permits;
+
+  // the same prompts (e.g. the same team name) are asked again and again, every answer costs time
+  // and money, so the answers are cached by model and normalized prompt
+  private static final int DESCRIPTION_CACHE_SIZE = 1000;
+  private static final Duration DESCRIPTION_CACHE_TTL = Duration.ofHours(24);
+  private final ExpiringCache<String, String> descriptionCache =
+      new ExpiringCache<>(DESCRIPTION_CACHE_SIZE, DESCRIPTION_CACHE_TTL);
+
+  // requests of the same prompt that arrive while it is asked share the pending answer
+  private final Map<String, Mono<String>> pendingDescriptions = new ConcurrentHashMap<>();
+  private final Map<String, Flux<String>> pendingStreams = new ConcurrentHashMap<>();
 
   @Value("${OPENAI_API_KEY}") private String openAiApiKey;
 
   // Constructor for the service with WebClient and ObjectMapper
-  public AIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
+  @Autowired
+  public AIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper,
+      @Value("${ai.timeout-seconds:20}") long timeoutSeconds,
+      @Value("${ai.max-concurrent-requests:8}") int maxConcurrentRequests) {
     this.webClient = webClientBuilder.baseUrl("https://api.openai.com/v1").build();
     this.objectMapper = objectMapper;
+    // the writer of the request model is resolved once, not for every request
+    this.requestWriter = objectMapper.writerFor(CompletionRequest.class);
+    this.timeout = Duration.ofSeconds(timeoutSeconds);
+    this.permits = new Semaphore(maxConcurrentRequests);
   }
 
   /**
-   * Method to generate a description from a provided prompt
+   * Method to generate a description from a provided prompt. Nothing is sent before the result is
+   * subscribed, and no thread waits for the response of the AI service.
+   *
+   * A cached answer of the same prompt is returned right away. Concurrent requests of the same
+   * prompt share one request to the AI service (also its error), a failed request is not cached.
    *
    * @param prompt The input text that needs a description
-   * @return A description generated by the AI
-   * @throws Exception If the prompt is invalid or there is a failure in the AI service
+   * @return A description generated by the AI, or an error: 400 if the prompt is invalid, 503 if
+   *     too many requests are waiting for the AI service, 504 if the AI service did not answer in
+   *     time and 502 if the AI service failed
    */
-  public Optional<String> generateDescription(String prompt) throws Exception {
-    String requestBody;
-    try {
-      requestBody = createRequestBody(prompt);
-    } catch (Exception e) {
-      // throw 400 if there was an error in the prompt building
-      throw new ResponseStatusException(
-          HttpStatus.BAD_REQUEST, "Some fields are invalid. Could not build prompt to ask AI.");
-    }
+  public Mono<String> generateDescription(String prompt) {
+    return Mono.defer(() -> {
+      String cacheKey = getCacheKey(prompt);
+      String cachedDescription = descriptionCache.get(cacheKey);
+      if (cachedDescription != null) {
+        return Mono.just(cachedDescription);
+      }
+
+      // cache() -> the request is sent once and its answer is replayed to every subscriber, a
+      // cancelled subscriber does not cancel the request of the others
+      return pendingDescriptions.computeIfAbsent(cacheKey,
+          key
+          -> requestDescription(prompt)
+                 .doOnNext(description -> descriptionCache.put(key, description))
+                 .doFinally(signal -> pendingDescriptions.remove(key))
+                 .cache());
+    });
+  }
 
-    // send requests (may throw 400 or 502
-    String responseBody = sendPostRequest(requestBody);
-    String description = parseResponseBody(responseBody);
-    return Optional.of(description);
+  private Mono<String> requestDescription(String prompt) {
+    return Mono.defer(() -> {
+      byte[] requestBody;
+      try {
+        requestBody = createRequestBody(prompt);
+      } catch (Exception e) {
+        // 400 if there was an error in the prompt building
+        return Mono.error(new ResponseStatusException(
+            HttpStatus.BAD_REQUEST, "Some fields are invalid. Could not build prompt to ask AI."));
+      }
+
+      if (!permits.tryAcquire()) {
+        return Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+            "Too many requests to the AI Service, try again later"));
+      }
+
+      // the permit is released once the request completed, failed, timed out or was cancelled
+      return sendPostRequest(requestBody)
+          .flatMap(responseBody -> Mono.fromCallable(() -> parseResponseBody(responseBody)))
+          .doFinally(signal -> permits.release());
+    });
+  }
+
+  /**
+   * Method to stream a description from a provided prompt. The text is emitted in the pieces in
+   * which the AI service generates it, so the first words arrive long before the whole description
+   * would. The response is never buffered as a whole; a cached answer of the same prompt is
+   * emitted as one piece.
+   *
+   * Concurrent requests of the same prompt share one stream of the AI service, a request that
+   * joins a running stream gets the pieces sent so far first. The whole description is cached like
+   * the one of generateDescription() once the stream completed, a failed stream is not cached.
+   *
+   * @param prompt The input text that needs a description
+   * @return Pieces of the description, or the same errors as generateDescription(); the timeout
+   *     applies to the first piece and to the gap between two pieces
+   */
+  public Flux<String> streamDescription(String prompt) {
+    return Flux.defer(() -> {
+      String cacheKey = getCacheKey(prompt);
+      String cachedDescription = descriptionCache.get(cacheKey);
+      if (cachedDescription != null) {
+        return Flux.just(cachedDescription);
+      }
+
+      // cache() -> the stream is requested once and its pieces are replayed to every subscriber,
+      // a cancelled subscriber does not cancel the stream of the others
+      return pendingStreams.computeIfAbsent(cacheKey,
+          key
+          -> requestStream(key, prompt)
+                 .doFinally(signal -> pendingStreams.remove(key))
+                 .cache());
+    });
+  }
+
+  private Flux<String> requestStream(String cacheKey, String prompt) {
+    return Flux.defer(() -> {
+      byte[] requestBody;
+      try {
+        requestBody = createRequestBody(prompt, true);
+      } catch (Exception e) {
+        // 400 if there was an error in the prompt building
+        return Flux.error(new ResponseStatusException(
+            HttpStatus.BAD_REQUEST, "Some fields are invalid. Could not build prompt to ask AI."));
+      }
+
+      if (!permits.tryAcquire()) {
+        return Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+            "Too many requests to the AI Service, try again later"));
+      }
+
+      // the pieces are collected, so the description can be cached once the stream completed
+      StringBuilder description = new StringBuilder();
+      // the permit is released once the stream completed, failed, timed out or was cancelled
+      return sendStreamRequest(requestBody)
+          .concatMap(chunk -> Mono.fromCallable(() -> parseStreamChunk(chunk)))
+          .filter(text -> !text.isEmpty())
+          .doOnNext(description::append)
+          .doOnComplete(() -> descriptionCache.put(cacheKey, description.toString().trim()))
+          .doFinally(signal -> permits.release());
+    });
+  }
+
+  /**
+   * The key of a prompt, the model and the prompt with trimmed and collapsed whitespace. The case
+   * is kept, because the team name is part of the answer.
+   */
+  private static String getCacheKey(String prompt) {
+    return MODEL + ":" + (prompt == null ? "" : prompt.trim().replaceAll("\\s+", " "));
   }
 
   /**
    * Method to create a request body for the POST request
    * @param prompt The input text that needs a description
-   * @return A string formatted as a JSON object to be sent as the body of the POST request
+   * @return The request as JSON (UTF-8) to be sent as the body of the POST request, the prompt is
+   *     escaped (e.g. quotes in a team name)
    */
-  private String createRequestBody(String prompt) {
-    return String.format(
-        "{\"model\": \"gpt-3.5-turbo-instruct\", \"prompt\":\"%s\", \"max_tokens\": 50}", prompt);
+  private byte[] createRequestBody(String prompt) throws JsonProcessingException {
+    return createRequestBody(prompt, false);
+  }
+
+  /**
+   * @param stream true to get the completion as server-sent events (stream mode)
+   */
+  private byte[] createRequestBody(String prompt, boolean stream)
+      throws JsonProcessingException {
+    return requestWriter.writeValueAsBytes(new CompletionRequest(prompt, stream));
   }
 
   /**
    * Method to send the POST request to the OpenAI API
    * @param requestBody The body of the POST request, formatted as a JSON object
-   * @return The response body from the AI service as a string
-   * @throws Exception If there is a client error (400), server error (500), or if the AI service
-   *     fails
+   * @return The response body from the AI service as a string, or an error if there is a client
+   *     error (400), server error (502), no response in time (504) or if the AI service fails (502)
+   */
+  private Mono<String> sendPostRequest(byte[] requestBody) {
+    return retrieve(completionRequest(), requestBody)
+        .bodyToMono(String.class)
+        // the timeout cancels the request to the AI service
+        .timeout(timeout)
+        .onErrorMap(AIService::toResponseStatusException);
+  }
+
+  /**
+   * Method to send the POST request in stream mode to the OpenAI API
+   * @param requestBody The body of the POST request, with "stream": true
+   * @return The data of the server-sent events up to "[DONE]" (JSON chunks of the completion), or
+   *     the same errors as sendPostRequest()
    */
-  private String sendPostRequest(String requestBody) {
-    Mono<String> response =
-        webClient.post()
-            .uri("/completions")
-            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-            .header(HttpHeaders.AUTHORIZATION, "Bearer " + openAiApiKey)
-            .body(BodyInserters.fromValue(requestBody))
-            .retrieve()
-            .onStatus(HttpStatus::is4xxClientError,
-                clientResponse
-                -> Mono.error(new ResponseStatusException(
-                    HttpStatus.BAD_REQUEST, "External AI Service could not understand the prompt")))
-            .onStatus(HttpStatus::is5xxServerError,
-                clientResponse
-                -> Mono.error(new ResponseStatusException(
-                    HttpStatus.BAD_GATEWAY, "External AI Service failed")))
-            .bodyToMono(String.class);
-    try {
-      return response.block();
-    } catch (Exception e) {
-      throw new ResponseStatusException(
-          HttpStatus.BAD_GATEWAY, "AI Service failed, Could not understand what it was saying.");
+  private Flux<String> sendStreamRequest(byte[] requestBody) {
+    return retrieve(completionRequest().accept(MediaType.TEXT_EVENT_STREAM), requestBody)
+        .bodyToFlux(EVENT_TYPE)
+        .map(event -> event.data() == null ? "" : event.data())
+        .takeWhile(data -> !STREAM_DONE.equals(data))
+        .filter(data -> !data.isEmpty())
+        // the timeout cancels the request to the AI service if it stops sending
+        .timeout(timeout)
+        .onErrorMap(AIService::toResponseStatusException);
+  }
+
+  private WebClient.RequestBodySpec completionRequest() {
+    return webClient.post()
+        .uri("/completions")
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .header(HttpHeaders.AUTHORIZATION, "Bearer " + openAiApiKey);
+  }
+
+  private WebClient.ResponseSpec retrieve(WebClient.RequestBodySpec request, byte[] requestBody) {
+    return request.body(BodyInserters.fromValue(requestBody))
+        .retrieve()
+        .onStatus(HttpStatus::is4xxClientError,
+            clientResponse
+            -> Mono.error(new ResponseStatusException(
+                HttpStatus.BAD_REQUEST, "External AI Service could not understand the prompt")))
+        .onStatus(HttpStatus::is5xxServerError,
+            clientResponse
+            -> Mono.error(new ResponseStatusException(
+                HttpStatus.BAD_GATEWAY, "External AI Service failed")));
+  }
+
+  /* 504 if the AI service did not answer in time, 502 for any other failure without a status */
+  private static Throwable toResponseStatusException(Throwable e) {
+    if (e instanceof ResponseStatusException) {
+      return e;
+    }
+    if (e instanceof TimeoutException) {
+      return new ResponseStatusException(
+          HttpStatus.GATEWAY_TIMEOUT, "AI Service did not answer in time");
     }
+    return new ResponseStatusException(
+        HttpStatus.BAD_GATEWAY, "AI Service failed, Could not understand what it was saying.");
   }
 
   /**
@@ -96,11 +284,94 @@ public class AIService {
    * @throws Exception If there is an error parsing the response body
    */
   private String parseResponseBody(String responseBody) throws Exception {
-    JsonNode rootNode = objectMapper.readTree(responseBody);
-    JsonNode textNode = rootNode.path("choices").get(0).path("text");
-    if (textNode.isMissingNode()) {
+    String text = readFirstChoiceText(responseBody);
+    if (text == null) {
       throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid response from AI Service");
     }
-    return textNode.asText().trim();
+    return text.trim();
+  }
+
+  /**
+   * Method to parse one chunk of the stream from the AI Service
+   * @param chunk The data of one server-sent event, a JSON object with the next piece of text
+   * @return The piece of text (not trimmed, the spaces separate the words), empty if the chunk has
+   *     no text
+   * @throws Exception If there is an error parsing the chunk
+   */
+  private String parseStreamChunk(String chunk) throws Exception {
+    String text = readFirstChoiceText(chunk);
+    return text == null ? "" : text;
+  }
+
+  /**
+   * Reads choices[0].text of a completion with a streaming parser. The parser stops at the text,
+   * all other fields are skipped without building a tree.
+   *
+   * @param json completion (or chunk of a completion) as JSON
+   * @return the text, null if the completion has no text
+   * @throws IOException if the JSON is invalid
+   */
+  private String readFirstChoiceText(String json) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return null;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+          // only the first choice is read
+          return parser.nextToken() == JsonToken.START_OBJECT ? readText(parser) : null;
+        }
+        parser.skipChildren();
+      }
+      return null;
+    }
+  }
+
+  /* reads the text field of the object the parser is in */
+  private static String readText(JsonParser parser) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if ("text".equals(field)) {
+        return value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getText() : null;
+      }
+      parser.skipChildren();
+    }
+    return null;
+  }
+
+  /**
+   * Request of a completion, written as JSON body of the POST request.
+   */
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  @JsonPropertyOrder({"model", "prompt", "max_tokens", "stream"})
+  static final class CompletionRequest {
+    private final String prompt;
+    // only sent in stream mode
+    private final Boolean stream;
+
+    CompletionRequest(String prompt, boolean stream) {
+      this.prompt = prompt;
+      this.stream = stream ? Boolean.TRUE : null;
+    }
+
+    public String getModel() {
+      return MODEL;
+    }
+
+    public String getPrompt() {
+      return prompt;
+    }
+
+    @JsonProperty("max_tokens")
+    public int getMaxTokens() {
+      return MAX_TOKENS;
+    }
+
+    public Boolean getStream() {
+      return stream;
+    }
   }
 }
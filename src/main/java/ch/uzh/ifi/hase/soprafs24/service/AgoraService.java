@@ -2,7 +2,9 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import ch.uzh.ifi.hase.soprafs24.agora.RtcTokenBuilder2;
 import ch.uzh.ifi.hase.soprafs24.agora.RtmTokenBuilder2;
+import ch.uzh.ifi.hase.soprafs24.cache.ExpiringCache;
 import ch.uzh.ifi.hase.soprafs24.config.AgoraCredentials;
+import java.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -23,6 +25,14 @@ public class AgoraService {
   private int tokenExpirationTs = 3600;
   private int privilegeExpiredTs = 3600;
 
+  // reconnecting clients ask for the same tokens again and again, so a token is reused until
+  // shortly before it expires; a returned token is always valid for at least the refresh threshold
+  private static final int TOKEN_CACHE_SIZE = 10000;
+  private static final int TOKEN_REFRESH_THRESHOLD_SECONDS = 600;
+  private final ExpiringCache<String, String> tokenCache = new ExpiringCache<>(TOKEN_CACHE_SIZE,
+      Duration.ofSeconds(Math.min(tokenExpirationTs, privilegeExpiredTs)
+          - TOKEN_REFRESH_THRESHOLD_SECONDS));
+
   public AgoraService(AgoraCredentials agoraCredentials, RtcTokenBuilder2 rtcTokenBuilder2,
       RtmTokenBuilder2 rtmTokenBuilder2) {
     this.agoraCredentials = agoraCredentials;
@@ -46,14 +56,24 @@ public class AgoraService {
     checkCredentialVariable(agoraCredentials.getAppId(), "AGORA_APP_ID");
     checkCredentialVariable(agoraCredentials.getAppCertificate(), "AGORA_APP_CERTIFICATE");
 
+    // reuse the token of the user for this channel if it is still valid long enough
+    RtcTokenBuilder2.Role role = RtcTokenBuilder2.Role.ROLE_PUBLISHER;
+    String cacheKey = "rtc:" + role + ":" + existingUserId + ":" + channelName;
+    String cachedToken = tokenCache.get(cacheKey);
+    if (cachedToken != null) {
+      return cachedToken;
+    }
+
     // generate token or throw 503 error if external service not available
     try {
       log.info("Generating Agora token for user with id {} and channelName {}", existingUserId,
           channelName);
 
-      return rtcTokenBuilder2.buildTokenWithUserAccount(agoraCredentials.getAppId(),
-          agoraCredentials.getAppCertificate(), channelName, String.valueOf(existingUserId),
-          RtcTokenBuilder2.Role.ROLE_PUBLISHER, tokenExpirationTs, privilegeExpiredTs);
+      String token = rtcTokenBuilder2.buildTokenWithUserAccount(agoraCredentials.getAppId(),
+          agoraCredentials.getAppCertificate(), channelName, String.valueOf(existingUserId), role,
+          tokenExpirationTs, privilegeExpiredTs);
+      cacheToken(cacheKey, token);
+      return token;
     } catch (Exception e) {
       String errMsg = "Error while generating Agora RTC token: " + e.getMessage();
       log.error(errMsg);
@@ -73,12 +93,21 @@ public class AgoraService {
     checkCredentialVariable(agoraCredentials.getAppId(), "AGORA_APP_ID");
     checkCredentialVariable(agoraCredentials.getAppCertificate(), "AGORA_APP_CERTIFICATE");
 
+    // reuse the token of the user if it is still valid long enough
+    String cacheKey = "rtm:" + existingUserId;
+    String cachedToken = tokenCache.get(cacheKey);
+    if (cachedToken != null) {
+      return cachedToken;
+    }
+
     // generate token or throw 503 error if external service not available
     try {
       log.info("Generating Agora RTM token for user with id {}", existingUserId);
 
-      return rtmTokenBuilder2.buildToken(agoraCredentials.getAppId(),
+      String token = rtmTokenBuilder2.buildToken(agoraCredentials.getAppId(),
           agoraCredentials.getAppCertificate(), String.valueOf(existingUserId), tokenExpirationTs);
+      cacheToken(cacheKey, token);
+      return token;
     } catch (Exception e) {
       String errMsg = "Error while generating Agora RTM token: " + e.getMessage();
       log.error(errMsg);
@@ -86,6 +115,13 @@ public class AgoraService {
     }
   }
 
+  /* an empty token (e.g. invalid credentials) is not cached */
+  private void cacheToken(String cacheKey, String token) {
+    if (token != null && !token.isEmpty()) {
+      tokenCache.put(cacheKey, token);
+    }
+  }
+
   private void checkCredentialVariable(String variable, String variableName) {
     if (variable == null || variable.isEmpty()) {
       String errMsg = "Need to set environment variable " + variableName + "\n";
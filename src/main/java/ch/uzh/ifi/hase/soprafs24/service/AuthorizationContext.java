@@ -0,0 +1,62 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.entity.TeamUserId;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Authorization Context
+ * Remembers the caller (user of a token) and the checked team memberships for the duration of one
+ * HTTP request, so that repeated authorization checks in the same request do not query the
+ * database again.
+ *
+ * The context is stored as request attribute. Outside of a request (e.g. scheduled jobs or tests
+ * that call the services directly) every call gets a new, empty context and nothing is remembered.
+ *
+ * @see AuthorizationService
+ */
+class AuthorizationContext {
+  private static final String ATTRIBUTE_NAME = AuthorizationContext.class.getName();
+
+  private final Map<String, User> usersByToken = new HashMap<>();
+  private final Set<TeamUserId> memberships = new HashSet<>();
+
+  /**
+   * @return the context of the current request, or an empty context outside of a request
+   */
+  static AuthorizationContext current() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return new AuthorizationContext();
+    }
+
+    AuthorizationContext context = (AuthorizationContext) attributes.getAttribute(
+        ATTRIBUTE_NAME, RequestAttributes.SCOPE_REQUEST);
+    if (context == null) {
+      context = new AuthorizationContext();
+      attributes.setAttribute(ATTRIBUTE_NAME, context, RequestAttributes.SCOPE_REQUEST);
+    }
+    return context;
+  }
+
+  User getUser(String token) {
+    return usersByToken.get(token);
+  }
+
+  void putUser(String token, User user) {
+    usersByToken.put(token, user);
+  }
+
+  boolean isMember(Long teamId, Long userId) {
+    return memberships.contains(new TeamUserId(teamId, userId));
+  }
+
+  void putMember(Long teamId, Long userId) {
+    memberships.add(new TeamUserId(teamId, userId));
+  }
+}
@@ -5,7 +5,6 @@ import ch.uzh.ifi.hase.soprafs24.entity.TeamUser;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import java.util.List;
-import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -26,11 +25,14 @@ public class AuthorizationService {
 
   private final TeamUserService teamUserService;
 
+  private final UserTokenCache userTokenCache;
+
   @Autowired
-  public AuthorizationService(
-      @Qualifier("userRepository") UserRepository userRepository, TeamUserService teamUserService) {
+  public AuthorizationService(@Qualifier("userRepository") UserRepository userRepository,
+      TeamUserService teamUserService, UserTokenCache userTokenCache) {
     this.userRepository = userRepository;
     this.teamUserService = teamUserService;
+    this.userTokenCache = userTokenCache;
   }
 
   /**
@@ -47,7 +49,8 @@ public class AuthorizationService {
   }
 
   /**
-   * Checks if the token is valid
+   * Checks if the token is valid. The user of the token is remembered for the current request and
+   * cached for a short time.
    *
    * @param token the token to be checked
    * @return the user of the token
@@ -56,7 +59,7 @@ public class AuthorizationService {
   public User isAuthorized(String token) {
     log.info("Checking authorization for token '{}'", token); // monitor authorization attempts
 
-    User foundUser = this.userRepository.findByToken(token);
+    User foundUser = findUserByToken(token);
     if (foundUser == null) {
       throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
     }
@@ -75,20 +78,21 @@ public class AuthorizationService {
     log.info(
         "Checking authorization for user '{}' which should have the token '{}'", userId, token);
 
-    Optional<User> foundUser = userRepository.findById(userId);
+    // resolve the caller by the token (no query if already resolved in this request)
+    User foundUser = findUserByToken(token);
+    if (foundUser != null && foundUser.getUserId().equals(userId)) {
+      return foundUser;
+    }
 
-    // user not found
-    if (foundUser.isEmpty()) {
+    // user not found (only checked on failure)
+    if (!userRepository.existsById(userId)) {
       log.info("User '{}' not in DB", userId);
       throw new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found");
     }
 
     // token not corresponding to user token
-    if (!foundUser.get().getToken().equals(token)) {
-      log.info("User '{}' does not have token '{}'", userId, token);
-      throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
-    }
-    return foundUser.get();
+    log.info("User '{}' does not have token '{}'", userId, token);
+    throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid token");
   }
 
   /**
@@ -107,22 +111,28 @@ public class AuthorizationService {
     // check if user is authorized
     User foundUser = isAuthorized(token);
 
-    // check if user is in team
-    if (teamUserService.getUsersOfTeam(teamId).stream().noneMatch(
-            user -> user.getUserId().equals(foundUser.getUserId()))) {
+    // check if user is in team (single lookup on the team/user key, 404 if the team does not exist)
+    AuthorizationContext context = AuthorizationContext.current();
+    if (context.isMember(teamId, foundUser.getUserId())) {
+      return foundUser;
+    }
+    if (!teamUserService.isUserInTeam(teamId, foundUser.getUserId())) {
       throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User is not in team");
     }
+    context.putMember(teamId, foundUser.getUserId());
 
     return foundUser;
   }
   /**
-   * Checks if the token exists and the user is in the team
+   * Checks if the token exists and the user is in the team. The caller is only resolved once per
+   * request, the second check reuses it without querying the database.
    *
    * @param token the token to be checked
+   * @param userId the userId to be checked
    * @param teamId to be checked
    * @return the user of the token/username
-   * @throws ResponseStatusException 404 if the team is not found; 401 if the token is invalid the
-   *     user does not belong to the team
+   * @throws ResponseStatusException 404 if the team or user is not found; 401 if the token is
+   *     invalid the user does not belong to the team
    */
   public User isAuthorizedAndBelongsToTeam(String token, Long userId, Long teamId) {
     log.info("Checking authorization for token '{}' with userId '{} and teamId '{}'", token, userId,
@@ -135,6 +145,33 @@ public class AuthorizationService {
     return foundUser;
   }
 
+  /**
+   * Resolves the user of a token: first from the current request, then from the token cache and
+   * only then from the database.
+   *
+   * @param token the token of the user
+   * @return the user, null if no user has this token
+   */
+  private User findUserByToken(String token) {
+    AuthorizationContext context = AuthorizationContext.current();
+    User foundUser = context.getUser(token);
+    if (foundUser != null) {
+      return foundUser;
+    }
+
+    foundUser = userTokenCache.get(token);
+    if (foundUser == null) {
+      foundUser = this.userRepository.findByToken(token);
+      if (foundUser == null) {
+        return null;
+      }
+      userTokenCache.put(foundUser);
+    }
+
+    context.putUser(token, foundUser);
+    return foundUser;
+  }
+
   // Deprecated
   // /**
   //  * Checks if the token belongs to the user with the given userId
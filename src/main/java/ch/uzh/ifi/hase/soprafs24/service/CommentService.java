@@ -3,13 +3,20 @@ package ch.uzh.ifi.hase.soprafs24.service;
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedCommentRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPageGetDTO;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,15 +25,25 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 @Transactional
 public class CommentService {
+  public static final int MAX_PAGE_SIZE = 100;
+
   private final Logger log = LoggerFactory.getLogger(CommentService.class);
   private final CommentRepository commentRepository;
+  private final ArchivedCommentRepository archivedCommentRepository;
   private final TaskService taskService;
+  private final TeamService teamService;
+  private final PusherService pusherService;
 
   @Autowired
   public CommentService(@Qualifier("commentRepository") CommentRepository commentRepository,
-      TaskService taskService) {
+      @Qualifier("archivedCommentRepository") ArchivedCommentRepository archivedCommentRepository,
+      TaskService taskService, @Qualifier("teamService") TeamService teamService,
+      PusherService pusherService) {
     this.commentRepository = commentRepository;
+    this.archivedCommentRepository = archivedCommentRepository;
     this.taskService = taskService;
+    this.teamService = teamService;
+    this.pusherService = pusherService;
   }
 
   public Comment createComment(Comment newComment, Long taskId) {
@@ -48,6 +65,10 @@ public class CommentService {
           HttpStatus.BAD_REQUEST, "Failed to create comment: " + e.getMessage());
     }
 
+    // notify the team of the task
+    Long teamId = newComment.getTask().getTeam().getTeamId();
+    pusherService.createComment(teamId, newComment, teamService.nextRevision(teamId));
+
     log.debug("Successfully created comment: {}", newComment);
     return newComment;
   }
@@ -68,6 +89,101 @@ public class CommentService {
     return comments;
   }
 
+  /**
+   * Get a page of the comment thread of a task with keyset pagination on (creationDate, commentId).
+   * The comments are read directly as DTOs, so neither the comments nor their authors are loaded
+   * as entities.
+   *
+   * Without since, the page contains the newest comments (or, with a cursor, the comments older
+   * than the cursor), newest first. nextCursor is the cursor of the next (older) page, null on the
+   * last page. latestCursor is only set on the first page and marks the newest comment.
+   *
+   * With since (the latestCursor of the last request), the page contains only the comments newer
+   * than since, newest first, so a client can refresh a thread without reading it again. If there
+   * are more new comments than the limit, the oldest of them are returned, and the client requests
+   * again with the new latestCursor.
+   *
+   * @param teamId the team of the task
+   * @param taskId the task of the comments
+   * @param limit the maximum number of comments of the page (1 to {@value #MAX_PAGE_SIZE})
+   * @param cursor the nextCursor of the previous page, null for the first page
+   * @param since the latestCursor of the last request, null for all comments
+   * @return the comments of the page and the cursors for the next requests
+   * @throws ResponseStatusException 404 if the task is not a task of the team; 400 if the limit or
+   *     a cursor is invalid, or both cursor and since are given
+   */
+  public CommentPageGetDTO getCommentPage(
+      Long teamId, Long taskId, int limit, String cursor, String since) {
+    log.debug("Get comments for task with taskId '{}', limit {}, cursor '{}', since '{}'", taskId,
+        limit, cursor, since);
+
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    if (cursor != null && since != null) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "cursor and since cannot be combined");
+    }
+    // parse the cursors first (400 if invalid)
+    KeysetCursor before = cursor == null ? null : KeysetCursor.decode(cursor);
+    KeysetCursor after = since == null ? null : KeysetCursor.decode(since);
+
+    // check that the task belongs to the team (404 if not)
+    taskService.checkTaskExists(taskId, teamId);
+
+    PageRequest page = PageRequest.of(0, limit);
+    CommentPageGetDTO commentPageGetDTO = new CommentPageGetDTO();
+
+    if (after != null) {
+      // new comments since the last request (oldest first), returned newest first
+      Slice<CommentGetDTO> newComments = commentRepository.findPageByTaskIdAfter(
+          taskId, after.getTimestamp(), after.getId(), page);
+      List<CommentGetDTO> comments = new ArrayList<>(newComments.getContent());
+      Collections.reverse(comments);
+      commentPageGetDTO.setComments(comments);
+      commentPageGetDTO.setLatestCursor(comments.isEmpty() ? since : encodeCursor(comments.get(0)));
+      return commentPageGetDTO;
+    }
+
+    Slice<CommentGetDTO> comments = before == null
+        ? commentRepository.findPageByTaskId(taskId, page)
+        : commentRepository.findPageByTaskIdBefore(
+            taskId, before.getTimestamp(), before.getId(), page);
+    commentPageGetDTO.setComments(comments.getContent());
+    if (comments.hasNext()) {
+      CommentGetDTO last = comments.getContent().get(comments.getNumberOfElements() - 1);
+      commentPageGetDTO.setNextCursor(encodeCursor(last));
+    }
+    if (before == null && comments.hasContent()) {
+      commentPageGetDTO.setLatestCursor(encodeCursor(comments.getContent().get(0)));
+    }
+    return commentPageGetDTO;
+  }
+
+  private static String encodeCursor(CommentGetDTO comment) {
+    return new KeysetCursor(comment.getCreationDate(), comment.getCommentId()).encode();
+  }
+
+  /**
+   * Deletes all comments of a user (the user is deleted), also the comments of archived tasks. The
+   * comments are deleted with one statement each, so the time does not grow with the number of
+   * comments. The teams are not notified here, the caller increments their revisions together with
+   * the other changes.
+   *
+   * @param userId the author of the comments
+   * @return ids of the teams whose comments were deleted
+   */
+  public List<Long> deleteCommentsOfUser(Long userId) {
+    List<Long> teamIds = commentRepository.findTeamIdsByUserId(userId);
+    int deleted = commentRepository.deleteByUserId(userId);
+    int deletedArchived = archivedCommentRepository.deleteByUserId(userId);
+
+    log.debug("Deleted {} comments and {} archived comments of user {}", deleted, deletedArchived,
+        userId);
+    return teamIds;
+  }
+
   /**
    * Deletes a comment by its id
    * @param commentId the id of the comment to delete
@@ -85,6 +201,10 @@ public class CommentService {
     commentRepository.delete(comment);
     commentRepository.flush();
 
+    // notify the team of the task
+    Long teamId = comment.getTask().getTeam().getTeamId();
+    pusherService.deleteComment(teamId, comment, teamService.nextRevision(teamId));
+
     log.debug("Successfully deleted comment: {}", comment);
     return comment;
   }
@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Keyset Cursor
+ * Position in a list that is sorted by a timestamp and an id, e.g. the sessions of a team or the
+ * comments of a task. The next page starts right after this position, so the database can seek to
+ * it with an index instead of skipping all previous rows with an offset.
+ *
+ * The cursor is handed to the client as an opaque string (URL-safe base64 of "timestamp|id").
+ */
+public class KeysetCursor {
+  private static final String SEPARATOR = "|";
+
+  private final LocalDateTime timestamp;
+  private final Long id;
+
+  public KeysetCursor(LocalDateTime timestamp, Long id) {
+    this.timestamp = timestamp;
+    this.id = id;
+  }
+
+  public LocalDateTime getTimestamp() {
+    return timestamp;
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  /**
+   * @return the cursor as opaque string for the client
+   */
+  public String encode() {
+    String raw = timestamp.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+        raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a cursor that was created by {@link #encode()}.
+   *
+   * @param cursor the cursor string of the client
+   * @return the position of the cursor
+   * @throws ResponseStatusException with status 400 if the cursor is invalid
+   */
+  public static KeysetCursor decode(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      int separator = raw.lastIndexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new IllegalArgumentException("Missing separator");
+      }
+      return new KeysetCursor(
+          LocalDateTime.parse(raw.substring(0, separator), DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+          Long.parseLong(raw.substring(separator + 1)));
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+  }
+}
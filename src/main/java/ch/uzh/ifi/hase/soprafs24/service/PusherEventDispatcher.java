@@ -0,0 +1,307 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import com.pusher.rest.Pusher;
+import com.pusher.rest.data.Event;
+import com.pusher.rest.data.Result;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pusher Event Dispatcher
+ * Sends the Pusher events in the background, so that no request (and no transaction) waits for the
+ * HTTP call to Pusher. The events are kept in bounded queues and sent by a small pool of workers
+ * with the batch API of Pusher, which takes up to {@value #MAX_BATCH_SIZE} events per request.
+ * Each worker has its own queue, and all events of a channel go to the same queue (by the hash of
+ * the channel), so the events of a channel are sent in the order they were dispatched.
+ *
+ * Events dispatched inside a transaction are only queued after the commit, so the clients are not
+ * notified about changes that were rolled back. If the queue of the channel is full, new events
+ * are dropped.
+ * Batches that fail with a temporary error (e.g. server or network error) are retried a few times.
+ *
+ * A worker collects the events of a batch for a short window after the first event. Task events of
+ * a channel that arrive within the window are merged into one event (see
+ * {@link PusherEventMerger}), so a burst of task changes makes the clients apply one event only.
+ * An event is only merged with the latest event of its channel in the batch, so the order of the
+ * events of a channel is kept.
+ *
+ * @see PusherService
+ */
+@Component
+public class PusherEventDispatcher {
+  /** Maximum number of events per batch request of the Pusher HTTP API. */
+  static final int MAX_BATCH_SIZE = 10;
+
+  private final Logger log = LoggerFactory.getLogger(PusherEventDispatcher.class);
+
+  private final Pusher pusher;
+  /** One queue per worker (a single queue without workers). */
+  private final List<BlockingQueue<Event>> queues;
+  private final int maxRetries;
+  private final long mergeWindowMillis;
+  private final long retryBackoffMillis;
+  private final ExecutorService workers;
+  private volatile boolean running = true;
+
+  private final AtomicLong sentCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+  private final AtomicLong failedCount = new AtomicLong();
+  private final AtomicLong mergedCount = new AtomicLong();
+
+  @Autowired
+  public PusherEventDispatcher(Pusher pusher,
+      @Value("${pusher.dispatcher.queue-capacity:1000}") int queueCapacity,
+      @Value("${pusher.dispatcher.workers:2}") int workerCount,
+      @Value("${pusher.dispatcher.max-retries:2}") int maxRetries,
+      @Value("${pusher.dispatcher.merge-window-ms:100}") long mergeWindowMillis) {
+    this(pusher, queueCapacity, workerCount, maxRetries, mergeWindowMillis, 200);
+  }
+
+  /**
+   * Constructor with a custom retry backoff, used for testing. With 0 workers, nothing is sent in
+   * the background and the batches are sent with {@link #sendNextBatch()}, which does not wait for
+   * the merge window.
+   *
+   * @param queueCapacity capacity of all queues together
+   */
+  PusherEventDispatcher(Pusher pusher, int queueCapacity, int workerCount, int maxRetries,
+      long mergeWindowMillis, long retryBackoffMillis) {
+    this.pusher = pusher;
+    this.maxRetries = maxRetries;
+    this.mergeWindowMillis = mergeWindowMillis;
+    this.retryBackoffMillis = retryBackoffMillis;
+
+    int queueCount = Math.max(1, workerCount);
+    List<BlockingQueue<Event>> workerQueues = new ArrayList<>(queueCount);
+    for (int i = 0; i < queueCount; i++) {
+      workerQueues.add(new ArrayBlockingQueue<>(Math.max(1, queueCapacity / queueCount)));
+    }
+    this.queues = List.copyOf(workerQueues);
+
+    if (workerCount > 0) {
+      this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+        Thread thread = new Thread(runnable, "pusher-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+      });
+      for (BlockingQueue<Event> queue : queues) {
+        workers.execute(() -> work(queue));
+      }
+    } else {
+      this.workers = null;
+    }
+  }
+
+  /**
+   * Sends the event in the background. Inside a transaction, the event is queued after the commit
+   * (and dropped on rollback).
+   *
+   * @param event the event to send
+   */
+  public void dispatch(Event event) {
+    ServiceHelpers.runAfterCommit(() -> enqueue(event));
+  }
+
+  /**
+   * @return the queue of the channel of the event, always the same for a channel
+   */
+  private BlockingQueue<Event> queueOf(Event event) {
+    return queues.get(Math.floorMod(event.getChannel().hashCode(), queues.size()));
+  }
+
+  private void enqueue(Event event) {
+    if (!queueOf(event).offer(event)) {
+      droppedCount.incrementAndGet();
+      log.warn("Pusher event queue is full, dropped event '{}' on channel '{}'", event.getName(),
+          event.getChannel());
+    }
+  }
+
+  private void work(BlockingQueue<Event> queue) {
+    while (running) {
+      try {
+        Event first = queue.poll(1, TimeUnit.SECONDS);
+        if (first != null) {
+          sendBatch(queue, first, mergeWindowMillis);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sends the next batch of queued events in the calling thread.
+   *
+   * @return number of queued events that were taken for the batch (merged events included), 0 if
+   *     the queue is empty
+   */
+  int sendNextBatch() {
+    for (BlockingQueue<Event> queue : queues) {
+      Event first = queue.poll();
+      if (first != null) {
+        return sendBatch(queue, first, 0);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Collects the batch of the first event within the window (without waiting if 0) and sends it.
+   * Events that can be merged into the latest event of their channel in the batch are merged.
+   */
+  private int sendBatch(BlockingQueue<Event> queue, Event first, long windowMillis) {
+    List<Event> batch = new ArrayList<>(MAX_BATCH_SIZE);
+    batch.add(first);
+    Map<String, Integer> latestIndexByChannel = new HashMap<>();
+    latestIndexByChannel.put(first.getChannel(), 0);
+    int taken = 1;
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    while (batch.size() < MAX_BATCH_SIZE) {
+      Event next;
+      try {
+        next = windowMillis > 0 ? queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                                : queue.poll();
+      } catch (InterruptedException e) {
+        // the events taken so far are still sent, the worker stops afterwards
+        Thread.currentThread().interrupt();
+        next = null;
+      }
+      if (next == null) {
+        break;
+      }
+      taken++;
+
+      Integer latestIndex = latestIndexByChannel.get(next.getChannel());
+      Event merged =
+          latestIndex == null ? null : PusherEventMerger.merge(batch.get(latestIndex), next);
+      if (merged != null) {
+        batch.set(latestIndex, merged);
+        mergedCount.incrementAndGet();
+      } else {
+        latestIndexByChannel.put(next.getChannel(), batch.size());
+        batch.add(next);
+      }
+    }
+    send(batch);
+    return taken;
+  }
+
+  private void send(List<Event> batch) {
+    for (int attempt = 0;; attempt++) {
+      String error;
+      boolean retry;
+      try {
+        Result result = pusher.trigger(batch);
+        // the mocked pusher of the tests does not return a result
+        if (result == null || result.getStatus() == Result.Status.SUCCESS) {
+          sentCount.addAndGet(batch.size());
+          return;
+        }
+        error = result.getStatus() + " " + result.getMessage();
+        retry = result.getStatus().shouldRetry();
+      } catch (Exception e) {
+        // not a temporary error of pusher (these are returned as result), e.g. invalid data
+        error = e.getMessage();
+        retry = false;
+      }
+
+      if (!retry || attempt >= maxRetries || !sleepBeforeRetry(attempt)) {
+        failedCount.addAndGet(batch.size());
+        log.error("Error while sending batch of {} pusher events: {}", batch.size(), error);
+        return;
+      }
+      retryCount.incrementAndGet();
+    }
+  }
+
+  private boolean sleepBeforeRetry(int attempt) {
+    try {
+      Thread.sleep(retryBackoffMillis * (attempt + 1));
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * Stops the workers and sends the events that are still queued.
+   */
+  @PreDestroy
+  public void shutdown() {
+    running = false;
+    if (workers != null) {
+      workers.shutdown();
+      try {
+        // the workers finish their current batch first, so the order of the events is kept
+        workers.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    while (sendNextBatch() > 0) {
+      // send remaining events
+    }
+  }
+
+  public int getQueueDepth() {
+    int depth = 0;
+    for (BlockingQueue<Event> queue : queues) {
+      depth += queue.size();
+    }
+    return depth;
+  }
+
+  public long getSentCount() {
+    return sentCount.get();
+  }
+
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  public long getRetryCount() {
+    return retryCount.get();
+  }
+
+  public long getFailedCount() {
+    return failedCount.get();
+  }
+
+  /**
+   * @return number of events that were merged into an earlier event of the same channel
+   */
+  public long getMergedCount() {
+    return mergedCount.get();
+  }
+
+  /**
+   * Logs the counters, dropped or failed events were not received by the clients.
+   */
+  @Scheduled(fixedRateString = "${pusher.dispatcher.stats-interval-ms:600000}")
+  public void logStats() {
+    log.info(
+        "Pusher dispatcher: {} queued, {} sent, {} merged, {} dropped, {} retries, {} failed",
+        getQueueDepth(), getSentCount(), getMergedCount(), getDroppedCount(), getRetryCount(),
+        getFailedCount());
+  }
+}
@@ -0,0 +1,104 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pusher.rest.data.Event;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pusher Event Merger
+ * Folds two task events of a team that wait to be sent into one event, so that a burst of task
+ * changes is sent (and applied by the clients) as one event instead of one event per change.
+ *
+ * The merged event has the changed tasks of both events, the newer task if both changed the same
+ * task, and the revisions of both: "fromRevision" is the revision of the first merged change (a
+ * client at the revision before it can apply the event), "revision" the highest revision. If one
+ * of the events has no tasks (the clients reload the tasks), or the tasks do not fit into one event
+ * anymore, the merged event has no tasks either.
+ *
+ * @see PusherService#tasksModification
+ */
+final class PusherEventMerger {
+  // only measures the size of the changed tasks, they are already converted to JSON values
+  private static final ObjectMapper SIZE_MAPPER = new ObjectMapper();
+
+  private PusherEventMerger() {}
+
+  /**
+   * @param older event that waits to be sent
+   * @param newer next event of the same channel, dispatched after the older one
+   * @return the merged event, null if the events cannot be merged
+   */
+  static Event merge(Event older, Event newer) {
+    if (!older.getChannel().equals(newer.getChannel())
+        || !"task-update".equals(older.getName()) || !"task-update".equals(newer.getName())
+        || !isTaskDelta(older.getData()) || !isTaskDelta(newer.getData())) {
+      return null;
+    }
+    Map<?, ?> olderData = (Map<?, ?>) older.getData();
+    Map<?, ?> newerData = (Map<?, ?>) newer.getData();
+
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("tasks", "updated");
+    data.put("fromRevision", olderData.containsKey("fromRevision") ? olderData.get("fromRevision")
+                                                                    : olderData.get("revision"));
+    data.put("revision", Math.max(revision(olderData), revision(newerData)));
+
+    List<Object> changedTasks = mergeChangedTasks(changedTasks(olderData), changedTasks(newerData));
+    if (changedTasks != null) {
+      data.put("changedTasks", changedTasks);
+    }
+    return new Event(newer.getChannel(), newer.getName(), data);
+  }
+
+  /* a delta event of the tasks, see PusherService#delta */
+  private static boolean isTaskDelta(Object data) {
+    return data instanceof Map && "updated".equals(((Map<?, ?>) data).get("tasks"))
+        && ((Map<?, ?>) data).get("revision") instanceof Number;
+  }
+
+  private static long revision(Map<?, ?> data) {
+    return ((Number) data.get("revision")).longValue();
+  }
+
+  /* the changed tasks of an event, null if the clients reload the tasks */
+  private static List<?> changedTasks(Map<?, ?> data) {
+    if (data.get("task") != null) {
+      return List.of(data.get("task"));
+    }
+    return (List<?>) data.get("changedTasks");
+  }
+
+  /**
+   * Union of the tasks by id in the order of their first change, the newer task replaces the older
+   * one of the same id.
+   *
+   * @return the tasks, null if the clients reload the tasks or the tasks exceed
+   *     {@value PusherService#MAX_CHANGED_TASKS_BYTES} bytes
+   */
+  private static List<Object> mergeChangedTasks(List<?> olderTasks, List<?> newerTasks) {
+    if (olderTasks == null || newerTasks == null) {
+      return null;
+    }
+    Map<Object, Object> tasksById = new LinkedHashMap<>();
+    for (List<?> tasks : List.of(olderTasks, newerTasks)) {
+      for (Object task : tasks) {
+        tasksById.put(((Map<?, ?>) task).get("taskId"), task);
+      }
+    }
+
+    List<Object> changedTasks = new ArrayList<>(tasksById.values());
+    try {
+      if (SIZE_MAPPER.writeValueAsBytes(changedTasks).length
+          > PusherService.MAX_CHANGED_TASKS_BYTES) {
+        return null;
+      }
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+    return changedTasks;
+  }
+}
@@ -1,53 +1,179 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
-import com.pusher.rest.Pusher;
-import java.util.Collections;
-import java.util.HashMap;
+import ch.uzh.ifi.hase.soprafs24.entity.Comment;
+import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pusher.rest.data.Event;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+/**
+ * Pusher Service
+ * Notifies the clients of a team about changes. The events are sent in the background by the
+ * {@link PusherEventDispatcher}, inside a transaction only after the commit.
+ *
+ * The task, team and comment events contain the changed object (same format as the REST API) and
+ * the new revision of the team, so the clients can apply the change without reloading the data.
+ * The session events contain the new revision as well, since every change of the team data
+ * increments it (it is also the ETag of the data of the team).
+ * The old "updated" key is still part of the events for clients that reload on every event.
+ * The dispatcher sends the events of a team (one channel) in the order of their dispatch, so the
+ * revisions arrive in ascending order; a client that sees a gap in the revisions missed an event
+ * and reloads the data. Task events of a team that are sent together are merged into one event
+ * with all changed tasks, which covers the revisions from "fromRevision" to "revision" (see
+ * {@link PusherEventMerger}).
+ */
 @Service
 public class PusherService {
-  private final Logger log = LoggerFactory.getLogger(SessionService.class);
+  // pusher limits the data of an event to 10 kB, the headroom is for the other keys of the event
+  // and the escaping of the pusher client (it serializes the data again)
+  static final int MAX_CHANGED_TASKS_BYTES = 10 * 1024 - 2 * 1024;
+  private static final TypeReference<Map<String, Object>> MAP_TYPE =
+      new TypeReference<Map<String, Object>>() {};
 
-  private final Pusher pusher;
+  private final PusherEventDispatcher dispatcher;
+  private final ObjectMapper objectMapper;
 
-  public PusherService(Pusher pusher) {
-    // add the pusher object of the config.PusherConfig via dependency injection (inversion of
-    // control)
-    this.pusher = pusher;
+  public PusherService(PusherEventDispatcher dispatcher, ObjectMapper objectMapper) {
+    this.dispatcher = dispatcher;
+    this.objectMapper = objectMapper;
   }
 
   private void triggerEvent(String channel, String event, Object data) {
-    try {
-      pusher.trigger(channel, event, data);
-    } catch (Exception e) {
-      log.error("Error while sending pusher event: {}", e.getMessage());
-    }
+    dispatcher.dispatch(new Event(channel, event, data));
+  }
+
+  /**
+   * Creates the data of a delta event: the old "updated" key and the new revision of the team.
+   */
+  private Map<String, Object> delta(String updatedKey, long revision) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put(updatedKey, "updated");
+    data.put("revision", revision);
+    return data;
+  }
+
+  /**
+   * Converts a DTO to a map with the JSON representation of the REST API (e.g. the date format),
+   * which is then serialized by the pusher client.
+   */
+  private Map<String, Object> toJson(Object dto) {
+    return objectMapper.convertValue(dto, MAP_TYPE);
+  }
+
+  public void startSession(Long teamId, long revision) {
+    triggerEvent("team-" + teamId, "session-update", sessionStatus("on", revision));
+  }
+
+  public void stopSession(Long teamId, long revision) {
+    triggerEvent("team-" + teamId, "session-update", sessionStatus("off", revision));
   }
 
-  public void startSession(String teamId) {
-    triggerEvent("team-" + teamId, "session-update", Collections.singletonMap("status", "on"));
+  /* notify several teams at once, e.g. after the expired sessions were ended */
+  public void stopSessions(Map<Long, Long> revisionsByTeamId) {
+    // the dispatcher sends the events in batches
+    revisionsByTeamId.forEach(this::stopSession);
   }
 
-  public void stopSession(String teamId) {
-    triggerEvent("team-" + teamId, "session-update", Collections.singletonMap("status", "off"));
+  private Map<String, Object> sessionStatus(String status, long revision) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("status", status);
+    data.put("revision", revision);
+    return data;
   }
 
   /* pusher service when creating or modifying a task */
-  public void taskModification(String teamId) {
-    triggerEvent("team-" + teamId, "task-update", Collections.singletonMap("tasks", "updated"));
+  public void taskModification(Task task, long revision) {
+    Map<String, Object> data = delta("tasks", revision);
+    data.put("task", toJson(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task)));
+    triggerEvent("team-" + task.getTeam().getTeamId(), "task-update", data);
+  }
+
+  /*
+   * several tasks were modified at once (batch update): a single event, with the changed tasks if
+   * they fit into one event (pusher limits the data of an event to 10 kB, and a task with 1100
+   * characters of title and description has up to 3.3 kB in UTF-8), otherwise the clients reload
+   * the tasks
+   */
+  public void tasksModification(Long teamId, List<Task> tasks, long revision) {
+    Map<String, Object> data = delta("tasks", revision);
+    List<Map<String, Object>> changedTasks = changedTasksWithinLimit(tasks);
+    if (changedTasks != null) {
+      data.put("changedTasks", changedTasks);
+    }
+    triggerEvent("team-" + teamId, "task-update", data);
+  }
+
+  /**
+   * @return the JSON of the tasks, null if their serialized size exceeds
+   *     {@value #MAX_CHANGED_TASKS_BYTES} bytes
+   */
+  private List<Map<String, Object>> changedTasksWithinLimit(List<Task> tasks) {
+    List<Map<String, Object>> changedTasks = new ArrayList<>();
+    // brackets of the list, then each task and its separator
+    int size = 2;
+    for (Task task : tasks) {
+      Map<String, Object> changedTask = toJson(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task));
+      try {
+        size += objectMapper.writeValueAsBytes(changedTask).length + 1;
+      } catch (JsonProcessingException e) {
+        return null;
+      }
+      if (size > MAX_CHANGED_TASKS_BYTES) {
+        return null;
+      }
+      changedTasks.add(changedTask);
+    }
+    return changedTasks;
+  }
+
+  /* name or description of the team changed */
+  public void updateTeam(Team team, long revision) {
+    Map<String, Object> data = delta("team", revision);
+    data.put("details", toJson(DTOMapper.INSTANCE.convertEntityToTeamGetDTO(team)));
+    triggerEvent("team-" + team.getTeamId(), "team-update", data);
+  }
+
+  /* a user joined (or left) the team */
+  public void updateTeamMembers(Long teamId, User user, boolean joined, long revision) {
+    Map<String, Object> data = delta("team", revision);
+    data.put(joined ? "joinedUser" : "leftUser",
+        toJson(DTOMapper.INSTANCE.convertEntityToUserGetDTO(user)));
+    triggerEvent("team-" + teamId, "team-update", data);
+  }
+
+  /* a user left several teams at once (the user was deleted) */
+  public void leaveTeams(User user, Map<Long, Long> revisionsByTeamId) {
+    // the dispatcher sends the events in batches
+    revisionsByTeamId.forEach(
+        (teamId, revision) -> updateTeamMembers(teamId, user, false, revision));
+  }
+
+  /* several comments of the teams were deleted at once, the clients reload the comments */
+  public void reloadComments(Map<Long, Long> revisionsByTeamId) {
+    revisionsByTeamId.forEach((teamId, revision)
+        -> triggerEvent("team-" + teamId, "comment-update", delta("comments", revision)));
   }
 
-  public void updateTeam(String teamId) {
-    triggerEvent("team-" + teamId, "team-update", Collections.singletonMap("team", "updated"));
+  public void createComment(Long teamId, Comment comment, long revision) {
+    Map<String, Object> data = delta("comments", revision);
+    data.put("taskId", comment.getTask().getTaskId());
+    data.put("comment", toJson(DTOMapper.INSTANCE.convertEntityToCommentGetDTO(comment)));
+    triggerEvent("team-" + teamId, "comment-update", data);
   }
 
-  public void updateComments(String teamId) {
-    triggerEvent(
-        "team-" + teamId, "comment-update", Collections.singletonMap("comments", "updated"));
+  public void deleteComment(Long teamId, Comment comment, long revision) {
+    Map<String, Object> data = delta("comments", revision);
+    data.put("taskId", comment.getTask().getTaskId());
+    data.put("deletedCommentId", comment.getCommentId());
+    triggerEvent("team-" + teamId, "comment-update", data);
   }
 }
@@ -1,6 +1,8 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 public class ServiceHelpers {
@@ -29,4 +31,23 @@ public class ServiceHelpers {
           HttpStatus.BAD_REQUEST, field + " cannot be empty or only whitespace!");
     }
   }
+
+  /**
+   * Runs an action after the commit of the current transaction, e.g. a cache update or a
+   * notification that must not see changes that are rolled back. Without an active transaction,
+   * the action runs right away.
+   * @param action action to run, not run at all if the transaction is rolled back
+   */
+  static void runAfterCommit(Runnable action) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      action.run();
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        action.run();
+      }
+    });
+  }
 }
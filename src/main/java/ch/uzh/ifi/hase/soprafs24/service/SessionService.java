@@ -5,9 +5,13 @@ import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.repository.SessionRepository;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -23,14 +27,21 @@ import org.springframework.web.server.ResponseStatusException;
 public class SessionService {
   private final Logger log = LoggerFactory.getLogger(SessionService.class);
 
+  /** Maximum number of sessions per page of the session history. */
+  public static final int MAX_PAGE_SIZE = 100;
+
   private final SessionRepository sessionRepository;
 
   private final TeamService teamService;
 
+  private final PusherService pusherService;
+
   @Autowired
-  public SessionService(SessionRepository sessionRepository, TeamService teamService) {
+  public SessionService(
+      SessionRepository sessionRepository, TeamService teamService, PusherService pusherService) {
     this.sessionRepository = sessionRepository;
     this.teamService = teamService;
+    this.pusherService = pusherService;
   }
 
   /**
@@ -53,8 +64,7 @@ public class SessionService {
     Team team = teamService.getTeamByTeamId(teamId);
 
     // check that no current session is active
-    List<Session> existingSessions = getSessionsByTeamId(teamId);
-    if (!existingSessions.isEmpty() && existingSessions.get(0).getEndDateTime() == null) {
+    if (getActiveSession(team).isPresent()) {
       throw new ResponseStatusException(
           HttpStatus.CONFLICT, "There is already an active session for this team.");
     }
@@ -69,6 +79,9 @@ public class SessionService {
     Session createdSession = sessionRepository.save(newSession);
     sessionRepository.flush();
 
+    // notify the team
+    pusherService.startSession(teamId, teamService.nextRevision(teamId));
+
     log.debug("Created session: {} at {}", createdSession, createdSession.getStartDateTime());
     return createdSession;
   }
@@ -93,6 +106,39 @@ public class SessionService {
     return sessions;
   }
 
+  /**
+   * Get one page of the sessions of a team (more recent first) with keyset pagination.
+   *
+   * @param teamId the team id of the team to get the sessions for
+   * @param limit the maximum number of sessions of the page (1 to {@value #MAX_PAGE_SIZE})
+   * @param cursor the cursor of the previous page, null for the first page
+   * @throws ResponseStatusException with status 404 if the team does not exist; 400 if the limit or
+   *     the cursor is invalid
+   * @return the sessions of the page, hasNext() tells if there are more sessions
+   */
+  public Slice<Session> getSessionsByTeamId(Long teamId, int limit, String cursor) {
+    log.debug(
+        "Get sessions for team with teamId '{}', limit {}, cursor '{}'", teamId, limit, cursor);
+
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    // parse the cursor first (400 if invalid)
+    KeysetCursor position = cursor == null ? null : KeysetCursor.decode(cursor);
+
+    // get team (404 if not found)
+    Team team = teamService.getTeamByTeamId(teamId);
+
+    // get the page (more recent first)
+    PageRequest page = PageRequest.of(0, limit);
+    if (position == null) {
+      return sessionRepository.findByTeamOrderByStartDateTimeDescSessionIdDesc(team, page);
+    }
+    return sessionRepository.findByTeamAfterCursor(
+        team, position.getTimestamp(), position.getId(), page);
+  }
+
   /**
    * End the active session for a team, if the session is active. If the team has no active session,
    * 410 is thrown.
@@ -105,54 +151,65 @@ public class SessionService {
   public Session endSession(Long teamId) {
     log.debug("Ending session for team with teamId '{}'", teamId);
 
-    // get all sessions for the team (more recent first)
-    List<Session> sessions = getSessionsByTeamId(teamId);
+    // get team (404 if not found)
+    Team team = teamService.getTeamByTeamId(teamId);
 
     // check if the team has an active session
-    if (sessions.isEmpty() || sessions.get(0).getEndDateTime() != null
-        || isSessionExpired(sessions.get(0))) {
+    Optional<Session> foundSession = getActiveSession(team);
+    if (foundSession.isEmpty() || isSessionExpired(foundSession.get())) {
       log.error("Team with teamId '{}' has no active session", teamId);
       throw new ResponseStatusException(HttpStatus.GONE, "Team has no active session");
     }
 
     // end the session
-    Session activeSession = sessions.get(0);
+    Session activeSession = foundSession.get();
     activeSession.setEndDateTime(LocalDateTime.now());
 
     // save session in the database
     Session endedSession = sessionRepository.save(activeSession);
     sessionRepository.flush();
 
+    // notify the team
+    pusherService.stopSession(teamId, teamService.nextRevision(teamId));
+
     log.debug("Ended session: {}; started at {}; ended at {}", endedSession,
         endedSession.getStartDateTime(), endedSession.getEndDateTime());
     return endedSession;
   }
 
+  /**
+   * Get the active session of a team without loading the session history of the team.
+   *
+   * @param team the team to get the active session for
+   * @return the active session, empty if the team has no active session
+   */
+  private Optional<Session> getActiveSession(Team team) {
+    return sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(team);
+  }
+
   private boolean isSessionExpired(Session session) {
     return session.getStartDateTime().plusHours(24).isBefore(LocalDateTime.now());
   }
 
   /**
-   * End all sessions that are expired.
-   * This method is called by a cronjob every 24 hours.
+   * End all sessions that are expired with a single bulk update (no session is loaded).
+   * This method is called by a cronjob every hour. The teams are notified.
    * @see "cron.yaml"
-   * @see ch.uzh.ifi.hase.soprafs24.controller.SessionController#endSession(Long, String)
+   * @see ch.uzh.ifi.hase.soprafs24.controller.SessionController#endExpiredSessions()
+   * @return the team ids of the teams whose session was ended
    */
-  public void endExpiredSessions() {
+  public List<Long> endExpiredSessions() {
     log.info("Checking for expired sessions...");
-    List<Session> sessions = sessionRepository.findByEndDateTimeIsNull();
-    for (Session session : sessions) {
-      if (isSessionExpired(session)) {
-        try {
-          session.setEndDateTime(session.getStartDateTime().plusHours(24));
-          Session endedSession = sessionRepository.save(session);
-          sessionRepository.flush();
-          log.info("Ended expired session with id {}", session.getSessionId());
-        } catch (Exception e) {
-          log.warn("Failed to end expired session with id {} due to unknown exception {}",
-              session.getSessionId(), e.getMessage());
-        }
-      }
-    }
+    List<Long> teamIds =
+        sessionRepository.endSessionsStartedBefore(LocalDateTime.now().minusHours(24))
+            .stream()
+            .map(Number::longValue)
+            .distinct()
+            .collect(Collectors.toList());
+    log.info("Ended expired sessions of {} teams: {}", teamIds.size(), teamIds);
+
+    // notify all teams of the ended sessions (sent in batches after the commit)
+    pusherService.stopSessions(teamService.nextRevisions(teamIds));
+    return teamIds;
   }
 }
@@ -0,0 +1,135 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedCommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedTaskRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Task Archive Service
+ * Moves the deleted tasks (and their comments) that were not changed for some time from TASK and
+ * COMMENT to the archive tables, so that the task table only holds the live tasks of the teams.
+ * Archived tasks can be restored.
+ *
+ * The tasks are moved with INSERT ... SELECT and bulk deletes, no task or comment is loaded.
+ */
+@Service
+@Transactional
+public class TaskArchiveService {
+  private final Logger log = LoggerFactory.getLogger(TaskArchiveService.class);
+
+  private final TaskRepository taskRepository;
+  private final CommentRepository commentRepository;
+  private final ArchivedTaskRepository archivedTaskRepository;
+  private final ArchivedCommentRepository archivedCommentRepository;
+  private final TeamService teamService;
+  private final PusherService pusherService;
+  private final long minAgeDays;
+  private final int batchSize;
+
+  public TaskArchiveService(@Qualifier("taskRepository") TaskRepository taskRepository,
+      @Qualifier("commentRepository") CommentRepository commentRepository,
+      @Qualifier("archivedTaskRepository") ArchivedTaskRepository archivedTaskRepository,
+      @Qualifier("archivedCommentRepository") ArchivedCommentRepository archivedCommentRepository,
+      TeamService teamService, PusherService pusherService,
+      @Value("${task.archive.min-age-days:30}") long minAgeDays,
+      @Value("${task.archive.batch-size:1000}") int batchSize) {
+    this.taskRepository = taskRepository;
+    this.commentRepository = commentRepository;
+    this.archivedTaskRepository = archivedTaskRepository;
+    this.archivedCommentRepository = archivedCommentRepository;
+    this.teamService = teamService;
+    this.pusherService = pusherService;
+    this.minAgeDays = minAgeDays;
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Archive the deleted tasks that were not changed for task.archive.min-age-days, at most
+   * task.archive.batch-size tasks per call (the rest is archived by the next calls).
+   * This method is called by a cronjob every day.
+   * @see "cron.yaml"
+   * @return the number of archived tasks
+   */
+  public int archiveDeletedTasks() {
+    List<Long> taskIds = taskRepository.findIdsByStatusModifiedBefore(TaskStatus.DELETED,
+        LocalDateTime.now().minusDays(minAgeDays), PageRequest.of(0, batchSize));
+    if (taskIds.isEmpty()) {
+      log.info("No deleted tasks to archive");
+      return 0;
+    }
+
+    // copy tasks and comments, then delete the comments before the tasks (foreign key)
+    int comments = archivedCommentRepository.archiveComments(taskIds);
+    Set<Long> teamIds = archivedTaskRepository.archiveTasks(taskIds, LocalDateTime.now())
+                            .stream()
+                            .map(Number::longValue)
+                            .collect(Collectors.toSet());
+    commentRepository.deleteByTaskIds(taskIds);
+    taskRepository.deleteByTaskIds(taskIds);
+
+    // deleted tasks are not shown to the clients, only the ETags of the task listings change
+    teamService.nextRevisions(teamIds);
+
+    log.info("Archived {} deleted tasks with {} comments of {} teams", taskIds.size(), comments,
+        teamIds.size());
+    return taskIds.size();
+  }
+
+  /**
+   * Get the archived tasks of a team, read directly as DTOs.
+   *
+   * @param teamId team of the archived tasks
+   * @return the archived tasks, newest archival first
+   * @throws ResponseStatusException 404 if team not found
+   */
+  public List<TaskGetDTO> getArchivedTasks(Long teamId) {
+    teamService.checkTeamExists(teamId);
+    return archivedTaskRepository.findTaskGetDTOsByTeamId(teamId);
+  }
+
+  /**
+   * Restore an archived task with its comments (except the comments of deleted users). The task
+   * keeps its id and gets the status TODO. The team is notified.
+   *
+   * @param teamId team of the archived task
+   * @param taskId id of the archived task
+   * @return the restored task
+   * @throws ResponseStatusException 404 if the task is not an archived task of the team
+   */
+  public Task restoreTask(Long teamId, Long taskId) {
+    if (!archivedTaskRepository.existsByTaskIdAndTeamId(taskId, teamId)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Archived task not found.");
+    }
+
+    // copy task and comments back, then delete them from the archive
+    archivedTaskRepository.restoreTask(taskId, TaskStatus.TODO.ordinal(), LocalDateTime.now());
+    int comments = archivedCommentRepository.restoreComments(taskId);
+    archivedCommentRepository.deleteByTaskId(taskId);
+    archivedTaskRepository.deleteByTaskId(taskId);
+
+    Task restoredTask = taskRepository.findById(taskId).orElseThrow(
+        () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found."));
+    log.debug("Restored task {} with {} comments", taskId, comments);
+
+    // send pusher event
+    pusherService.taskModification(restoredTask, teamService.nextRevision(teamId));
+    return restoredTask;
+  }
+}
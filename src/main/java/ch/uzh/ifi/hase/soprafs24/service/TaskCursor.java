@@ -0,0 +1,93 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Task Cursor
+ * Position in the paged task listing of a team: the sort keys (creation date, title, status) and
+ * the id of the last task of the previous page. The cursor carries all sort keys, so the next page
+ * does not depend on the task still existing and needs no extra query to look them up.
+ *
+ * The cursor is handed to the client as an opaque string (URL-safe base64 of
+ * "creationDate|status|taskId|title"). The title is last, as it may contain the separator.
+ */
+public class TaskCursor {
+  private static final String SEPARATOR = "|";
+
+  private final LocalDateTime creationDate;
+  private final TaskStatus status;
+  private final Long taskId;
+  private final String title;
+
+  public TaskCursor(LocalDateTime creationDate, TaskStatus status, Long taskId, String title) {
+    this.creationDate = creationDate;
+    this.status = status;
+    this.taskId = taskId;
+    this.title = title;
+  }
+
+  /**
+   * @param task the last task of a page
+   * @return the position right after the task
+   */
+  public static TaskCursor of(TaskGetDTO task) {
+    return new TaskCursor(
+        task.getListingCreationDate(), task.getStatus(), task.getTaskId(), task.getTitle());
+  }
+
+  public LocalDateTime getCreationDate() {
+    return creationDate;
+  }
+
+  public TaskStatus getStatus() {
+    return status;
+  }
+
+  public Long getTaskId() {
+    return taskId;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * @return the cursor as opaque string for the client
+   */
+  public String encode() {
+    String raw = creationDate.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + SEPARATOR
+        + status.name() + SEPARATOR + taskId + SEPARATOR + title;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(
+        raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a cursor that was created by {@link #encode()}.
+   *
+   * @param cursor the cursor string of the client
+   * @return the position of the cursor
+   * @throws ResponseStatusException with status 400 if the cursor is invalid
+   */
+  public static TaskCursor decode(String cursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = raw.split("\\" + SEPARATOR, 4);
+      if (parts.length != 4) {
+        throw new IllegalArgumentException("Missing separator");
+      }
+      return new TaskCursor(
+          LocalDateTime.parse(parts[0], DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+          TaskStatus.valueOf(parts[1]), Long.parseLong(parts[2]), parts[3]);
+    } catch (IllegalArgumentException | DateTimeParseException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+  }
+}
@@ -1,16 +1,27 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.constant.TaskSort;
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
-import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskPageGetDTO;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
@@ -25,15 +36,23 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 @Transactional
 public class TaskService {
+  public static final int MAX_PAGE_SIZE = 100;
+  public static final int MAX_BATCH_SIZE = 100;
+  private static final String TASK_CHANGED_MESSAGE =
+      "Task was changed by another user. Please reload the task.";
+
   private final Logger log = LoggerFactory.getLogger(TaskService.class);
   private final TeamService teamService;
   private final TaskRepository taskRepository;
+  private final CommentRepository commentRepository;
   private final PusherService pusherService;
 
   @Autowired
   public TaskService(@Qualifier("taskRepository") TaskRepository taskRepository,
+      @Qualifier("commentRepository") CommentRepository commentRepository,
       @Qualifier("teamService") TeamService teamService, PusherService pusherService) {
     this.taskRepository = taskRepository;
+    this.commentRepository = commentRepository;
     this.teamService = teamService;
     this.pusherService = pusherService;
   }
@@ -68,42 +87,157 @@ public class TaskService {
     log.debug("Created Information for Task: {}", newTask);
 
     // send pusher event
-    pusherService.taskModification(newTask.getTeam().getTeamId().toString());
+    pusherService.taskModification(
+        newTask, teamService.nextRevision(newTask.getTeam().getTeamId()));
 
     return newTask;
   }
 
   /**
-   * Get tasks method.
+   * Get tasks method. The tasks are read directly as DTOs (listing endpoint), no entity is loaded.
+   * The comment counts of the tasks are read with one grouped query.
    *
    * @param teamId for tasks to be taken from
    * @return List of tasks
+   * @throws ResponseStatusException 404 if team not found
    */
-  public List<Task> getTasksByTeamId(Long teamId) {
-    Team team = teamService.getTeamByTeamId(teamId);
-    List<Task> tasks = taskRepository.findByTeamAndStatusNot(team, TaskStatus.DELETED);
-    return tasks; // just return the list as it is, whether it's empty or not
+  public List<TaskGetDTO> getTasksByTeamId(Long teamId) {
+    teamService.checkTeamExists(teamId);
+    // just return the list as it is, whether it's empty or not
+    return setCommentCounts(
+        taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(teamId, TaskStatus.DELETED));
   }
 
   /**
-   * Get tasks by status method.
+   * Get tasks by status method. The tasks are read directly as DTOs (listing endpoint), no entity
+   * is loaded. The comment counts of the tasks are read with one grouped query.
    *
    * @param teamId for tasks to be taken from
    * @param status of tasks to be taken
    * @return List of tasks
+   * @throws ResponseStatusException 404 if team not found
    */
-  public List<Task> getTasksByTeamIdAndStatus(Long teamId, List<TaskStatus> status) {
+  public List<TaskGetDTO> getTasksByTeamIdAndStatus(Long teamId, List<TaskStatus> status) {
     // check that the team exists
-    Team team = teamService.getTeamByTeamId(teamId);
-    List<Task> tasks = taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, status);
+    teamService.checkTeamExists(teamId);
+    return setCommentCounts(
+        taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(teamId, status));
+  }
+
+  /**
+   * Get a page of the tasks of a team (keyset pagination). The first page is requested without
+   * cursor, the next pages with the nextCursor of the previous page, which is null on the last
+   * page. The tasks are read directly as DTOs, and each page is a single index range scan, so the
+   * cost does not depend on the size of the board or how far the client paged.
+   *
+   * The cursor is an opaque {@link TaskCursor} with all sort keys of the last task of the page, so
+   * it stays valid for every sort order, also if that task was deleted in the meantime.
+   *
+   * @param teamId for tasks to be taken from
+   * @param status statuses of the tasks to be taken, null or empty for all tasks except the
+   *     deleted ones
+   * @param sort sort order of the tasks, null for newest first
+   * @param limit the maximum number of tasks of the page (1 to {@value #MAX_PAGE_SIZE})
+   * @param cursor the cursor of the previous page, null for the first page
+   * @return the tasks of the page and the cursor of the next page
+   * @throws ResponseStatusException 404 if team not found; 400 if the limit or the cursor is
+   *     invalid
+   */
+  public TaskPageGetDTO getTaskPage(
+      Long teamId, List<TaskStatus> status, TaskSort sort, int limit, String cursor) {
+    log.debug("Get tasks for team with teamId '{}', status {}, sort {}, limit {}, cursor '{}'",
+        teamId, status, sort, limit, cursor);
+
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+    }
+    // parse the cursor first (400 if invalid)
+    TaskCursor after = cursor == null ? null : TaskCursor.decode(cursor);
+
+    // check that the team exists
+    teamService.checkTeamExists(teamId);
+
+    List<TaskStatus> statuses = status == null || status.isEmpty()
+        ? List.copyOf(EnumSet.complementOf(EnumSet.of(TaskStatus.DELETED)))
+        : status;
+    if (sort == null) {
+      sort = TaskSort.CREATION_DATE;
+    }
+    PageRequest page = PageRequest.of(0, limit);
+
+    Slice<TaskGetDTO> tasks;
+    if (after == null) {
+      switch (sort) {
+        case TITLE:
+          tasks = taskRepository.findPageOrderByTitle(teamId, statuses, page);
+          break;
+        case STATUS:
+          tasks = taskRepository.findPageOrderByStatus(teamId, statuses, page);
+          break;
+        default:
+          tasks = taskRepository.findPageOrderByCreationDate(teamId, statuses, page);
+      }
+    } else {
+      // the cursor holds the sort keys of the last task of the previous page
+      switch (sort) {
+        case TITLE:
+          tasks = taskRepository.findPageOrderByTitleAfter(
+              teamId, statuses, after.getTitle(), after.getTaskId(), page);
+          break;
+        case STATUS:
+          tasks = taskRepository.findPageOrderByStatusAfter(teamId, statuses, after.getStatus(),
+              after.getTitle(), after.getTaskId(), page);
+          break;
+        default:
+          tasks = taskRepository.findPageOrderByCreationDateAfter(
+              teamId, statuses, after.getCreationDate(), after.getTaskId(), page);
+      }
+    }
+
+    TaskPageGetDTO taskPageGetDTO = new TaskPageGetDTO();
+    taskPageGetDTO.setTasks(setCommentCounts(tasks.getContent()));
+    if (tasks.hasNext()) {
+      TaskGetDTO last = tasks.getContent().get(tasks.getNumberOfElements() - 1);
+      taskPageGetDTO.setNextCursor(TaskCursor.of(last).encode());
+    }
+    return taskPageGetDTO;
+  }
+
+  /**
+   * Sets the comment counts of the listed tasks with a single grouped query over the comments,
+   * instead of one comments request per task.
+   *
+   * @param tasks tasks of a listing
+   * @return the same tasks
+   */
+  private List<TaskGetDTO> setCommentCounts(List<TaskGetDTO> tasks) {
+    if (tasks.isEmpty()) {
+      return tasks;
+    }
+    List<Long> taskIds = new ArrayList<>(tasks.size());
+    for (TaskGetDTO task : tasks) {
+      taskIds.add(task.getTaskId());
+    }
+
+    Map<Long, Long> commentCounts = new HashMap<>();
+    for (Object[] row : commentRepository.countByTaskIds(taskIds)) {
+      commentCounts.put((Long) row[0], ((Number) row[1]).longValue());
+    }
+    for (TaskGetDTO task : tasks) {
+      task.setCommentCount(commentCounts.getOrDefault(task.getTaskId(), 0L));
+    }
     return tasks;
   }
 
   /**
-   * Update task method.
+   * Update task method. The task must have the version of the task the client edited (optimistic
+   * locking).
    *
    * @param task to be updated
    * @return updatedTask
+   * @throws ResponseStatusException 404 if the task is not a task of the team; 400 if the version
+   *     is missing; 409 if the task was changed in the meantime
    */
   public Task updateTask(Task task, Long teamId) {
     // Reusing the getTask method
@@ -116,6 +250,9 @@ public class TaskService {
 
     ServiceHelpers.checkValidString(existingTask.getTitle(), null);
 
+    // 409 if the task was changed since the client loaded it
+    checkVersion(existingTask, task);
+
     // update allowed fields
     existingTask.setTitle(task.getTitle());
     existingTask.setDescription(task.getDescription());
@@ -128,15 +265,116 @@ public class TaskService {
     } catch (DataIntegrityViolationException e) {
       throw new ResponseStatusException(
           HttpStatus.BAD_REQUEST, "Could not update task. Please check length constraints.");
+    } catch (ObjectOptimisticLockingFailureException e) {
+      // changed by a concurrent request after the task was loaded (version checked by the update)
+      throw new ResponseStatusException(HttpStatus.CONFLICT, TASK_CHANGED_MESSAGE);
     }
 
     // Send pusher event
-    pusherService.taskModification(updatedTask.getTeam().getTeamId().toString());
+    pusherService.taskModification(
+        updatedTask, teamService.nextRevision(updatedTask.getTeam().getTeamId()));
 
     log.debug("Updated Information for Task: {}", updatedTask);
     return updatedTask;
   }
 
+  /**
+   * Update several tasks of a team at once (e.g. cards moved across columns). The tasks are loaded
+   * with one query, which also checks that they belong to the team, and written with JDBC batches
+   * in one flush. The team gets a single notification with one new revision.
+   *
+   * @param tasks the tasks to update (id, title, description, status)
+   * @param teamId the team of the tasks
+   * @return the updated tasks, in the order of the input
+   * @throws ResponseStatusException 400 if there are no or more than {@value #MAX_BATCH_SIZE}
+   *     tasks, a task has no id, no title or no version, or a task is updated twice; 404 if a task
+   *     does not belong to the team; 409 if a task was changed in the meantime
+   */
+  public List<Task> updateTasks(List<Task> tasks, Long teamId) {
+    if (tasks == null || tasks.isEmpty() || tasks.size() > MAX_BATCH_SIZE) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+          "Between 1 and " + MAX_BATCH_SIZE + " tasks can be updated at once.");
+    }
+    Map<Long, Task> updatesByTaskId = new LinkedHashMap<>();
+    for (Task task : tasks) {
+      ServiceHelpers.checkValidNumber(task.getTaskId(), "taskId");
+      ServiceHelpers.checkValidString(task.getTitle(), "title");
+      if (updatesByTaskId.put(task.getTaskId(), task) != null) {
+        throw new ResponseStatusException(
+            HttpStatus.BAD_REQUEST, "Task " + task.getTaskId() + " is updated more than once.");
+      }
+    }
+
+    // load all tasks with a single query (404 if one of them is not a task of the team)
+    Map<Long, Task> existingTasksById = new LinkedHashMap<>();
+    for (Task existingTask :
+        taskRepository.findByTeamIdAndTaskIdIn(teamId, updatesByTaskId.keySet())) {
+      existingTasksById.put(existingTask.getTaskId(), existingTask);
+    }
+    if (existingTasksById.size() != updatesByTaskId.size()) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found.");
+    }
+
+    // 409 if one of the tasks was changed since the client loaded it
+    for (Task task : updatesByTaskId.values()) {
+      checkVersion(existingTasksById.get(task.getTaskId()), task);
+    }
+
+    // update allowed fields, the changes are written with the flush (dirty checking)
+    List<Task> updatedTasks = new ArrayList<>();
+    for (Task task : updatesByTaskId.values()) {
+      Task existingTask = existingTasksById.get(task.getTaskId());
+      existingTask.setTitle(task.getTitle());
+      existingTask.setDescription(task.getDescription());
+      existingTask.setStatus(task.getStatus());
+      updatedTasks.add(existingTask);
+    }
+    try {
+      taskRepository.flush();
+    } catch (DataIntegrityViolationException e) {
+      throw new ResponseStatusException(
+          HttpStatus.BAD_REQUEST, "Could not update tasks. Please check length constraints.");
+    } catch (ObjectOptimisticLockingFailureException e) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, TASK_CHANGED_MESSAGE);
+    }
+
+    // a single pusher event for all tasks
+    pusherService.tasksModification(teamId, updatedTasks, teamService.nextRevision(teamId));
+
+    log.debug("Updated {} tasks of team {}", updatedTasks.size(), teamId);
+    return updatedTasks;
+  }
+
+  /**
+   * Checks the version of an update against the loaded task (optimistic locking). No row lock is
+   * held: a concurrent update between this check and the flush is detected by the version
+   * condition of the UPDATE statement.
+   *
+   * @param existingTask the task loaded from the database
+   * @param task the update, with the version of the task the client edited
+   * @throws ResponseStatusException 400 if the update has no version; 409 if the task was changed
+   *     in the meantime
+   */
+  private static void checkVersion(Task existingTask, Task task) {
+    ServiceHelpers.checkValidNumber(task.getVersion(), "version");
+    if (!task.getVersion().equals(existingTask.getVersion())) {
+      throw new ResponseStatusException(HttpStatus.CONFLICT, TASK_CHANGED_MESSAGE);
+    }
+  }
+
+  /**
+   * Check that a task exists and belongs to the team, without loading the task.
+   *
+   * @param taskId Id of the task
+   * @param teamId Id of the team of the task
+   * @throws ResponseStatusException 404 if the task is not a task of the team
+   */
+  public void checkTaskExists(Long taskId, Long teamId) {
+    if (!taskRepository.existsByTaskIdAndTeamTeamId(taskId, teamId)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found.");
+    }
+  }
+
   /**
    * Get a task by its Id.
    *
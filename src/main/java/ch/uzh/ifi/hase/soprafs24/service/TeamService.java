@@ -3,6 +3,9 @@ package ch.uzh.ifi.hase.soprafs24.service;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,6 +50,18 @@ public class TeamService {
     return found;
   }
 
+  /**
+   * Check that a team exists without loading the team.
+   *
+   * @param teamId team id
+   * @throws ResponseStatusException 404 if team id not found
+   */
+  public void checkTeamExists(Long teamId) {
+    if (!teamRepository.existsById(teamId)) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Team not found");
+    }
+  }
+
   /**
    * Get team by team uuid.
    *
@@ -121,9 +136,59 @@ public class TeamService {
     }
 
     // notify other users of team edit
-    pusherService.updateTeam(updatedTeam.getTeamId().toString());
+    pusherService.updateTeam(team, nextRevision(team.getTeamId()));
 
     log.debug("Updated Information for Team: {} with id {}", team, team.getTeamId());
     return team;
   }
+
+  /**
+   * Increments the revision of the team. Called in the transaction of every change that is sent to
+   * the clients of the team, the revision is part of the pusher event. A client that sees a gap in
+   * the revisions missed an event and reloads the data.
+   *
+   * @param teamId id of the changed team
+   * @return the new revision of the team
+   * @throws ResponseStatusException 404 if team id not found
+   */
+  public long nextRevision(Long teamId) {
+    Number revision = teamRepository.incrementRevision(teamId);
+    if (revision == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Team not found");
+    }
+    return revision.longValue();
+  }
+
+  /**
+   * Increments the revisions of several teams with one statement.
+   *
+   * @param teamIds ids of the changed teams
+   * @return the new revision by team id (teams that do not exist are missing)
+   */
+  public Map<Long, Long> nextRevisions(Collection<Long> teamIds) {
+    Map<Long, Long> revisions = new HashMap<>();
+    if (teamIds.isEmpty()) {
+      return revisions;
+    }
+    for (Object[] row : teamRepository.incrementRevisions(teamIds)) {
+      revisions.put(((Number) row[0]).longValue(), ((Number) row[1]).longValue());
+    }
+    return revisions;
+  }
+
+  /**
+   * Get the ETag of the data of a team (tasks, sessions and members). The ETag only changes with
+   * the revision of the team, so it is read without loading the team or its data.
+   *
+   * @param teamId team id
+   * @return the ETag (without quotes)
+   * @throws ResponseStatusException 404 if team id not found
+   */
+  public String getTeamETag(Long teamId) {
+    Long revision = teamRepository.findRevisionByTeamId(teamId);
+    if (revision == null) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Team not found");
+    }
+    return "team-" + teamId + "-r" + revision;
+  }
 }
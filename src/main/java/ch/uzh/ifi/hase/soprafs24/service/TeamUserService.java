@@ -1,20 +1,26 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
+import ch.uzh.ifi.hase.soprafs24.cache.ExpiringCache;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.TeamUser;
+import ch.uzh.ifi.hase.soprafs24.entity.TeamUserId;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamUserRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.server.ResponseStatusException;
 
 /**
@@ -31,16 +37,24 @@ public class TeamUserService {
   private final TeamService teamService;
   private final PusherService pusherService;
 
+  // only memberships are cached (no negative results), so that a user that joined on another
+  // instance is not rejected; a removal on another instance is seen after the time-to-live
+  private final ExpiringCache<TeamUserId, Boolean> membershipCache;
+
   @Autowired
   public TeamUserService(@Qualifier("userRepository") UserRepository userRepository,
       @Qualifier("teamRepository") TeamRepository teamRepository,
       @Qualifier("teamUserRepository") TeamUserRepository teamUserRepository,
-      @Qualifier("teamService") TeamService teamService, PusherService pusherService) {
+      @Qualifier("teamService") TeamService teamService, PusherService pusherService,
+      @Value("${auth.membership-cache.max-size:10000}") int membershipCacheSize,
+      @Value("${auth.membership-cache.ttl-seconds:60}") long membershipCacheTtlSeconds) {
     this.userRepository = userRepository;
     this.teamRepository = teamRepository;
     this.teamUserRepository = teamUserRepository;
     this.teamService = teamService;
     this.pusherService = pusherService;
+    this.membershipCache =
+        new ExpiringCache<>(membershipCacheSize, Duration.ofSeconds(membershipCacheTtlSeconds));
   }
 
   /**
@@ -65,9 +79,11 @@ public class TeamUserService {
     // save and flush
     teamUserRepository.save(teamUser);
     teamUserRepository.flush();
+    updateMembershipCache(teamUser.getTeamUserId(), true);
 
     // notify
-    pusherService.updateTeam(team.getTeamId().toString());
+    pusherService.updateTeamMembers(
+        team.getTeamId(), user, true, teamService.nextRevision(team.getTeamId()));
 
     log.debug("Created Information for TeamUser: {}", teamUser);
 
@@ -112,6 +128,34 @@ public class TeamUserService {
     return teams;
   }
 
+  /**
+   * Get the ETag of the teams of a user. It is a hash of the ids and revisions of the teams, so it
+   * changes if the user joins or leaves a team or if one of the teams is changed. Only the ids and
+   * revisions are queried, no team is loaded.
+   *
+   * @param userId user id of which the teams should be retrieved
+   * @return the ETag (without quotes)
+   */
+  public String getTeamsOfUserETag(Long userId) {
+    StringBuilder revisions = new StringBuilder();
+    for (Object[] row : teamUserRepository.findTeamRevisionsByUserId(userId)) {
+      revisions.append(row[0]).append(':').append(row[1]).append(';');
+    }
+    return "user-" + userId + "-teams-"
+        + DigestUtils.md5DigestAsHex(revisions.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Increments the revisions of all teams of a user, because the user is part of the member list
+   * of the teams (e.g. after the name of the user changed).
+   *
+   * @param userId user id of the changed user
+   */
+  public void updateRevisionsOfTeamsOfUser(Long userId) {
+    int updated = teamRepository.incrementRevisionsOfUser(userId);
+    log.debug("Updated the revision of {} teams of user {}", updated, userId);
+  }
+
   /**
    * Get all users of a team
    *
@@ -158,12 +202,79 @@ public class TeamUserService {
 
     // delete selected team user
     teamUserRepository.deleteById(teamUser.getTeamUserId());
+    updateMembershipCache(teamUser.getTeamUserId(), false);
 
     // sync with pusher
-    pusherService.updateTeam(team.getTeamId().toString());
+    pusherService.updateTeamMembers(
+        team.getTeamId(), user, false, teamService.nextRevision(team.getTeamId()));
 
     log.debug("Deleted teamUser {}: user '{}' from team '{}'", teamUser, user.getUsername(),
         team.getName()); // monitoring
     return teamUser;
   }
+
+  /**
+   * Remove a user from all teams with a single statement (the user is deleted). The teams are not
+   * notified here, the caller increments their revisions together with the other changes.
+   *
+   * @param userId user that is removed
+   * @return ids of the teams the user was removed from
+   */
+  public List<Long> deleteUserOfAllTeams(Long userId) {
+    List<Long> teamIds = teamUserRepository.findTeamIdsByUserId(userId);
+    if (teamIds.isEmpty()) {
+      return teamIds;
+    }
+
+    int deleted = teamUserRepository.deleteByUserId(userId);
+    membershipCache.invalidateIf(teamUserId -> userId.equals(teamUserId.getUserId()));
+    ServiceHelpers.runAfterCommit(
+        () -> membershipCache.invalidateIf(teamUserId -> userId.equals(teamUserId.getUserId())));
+
+    log.debug("Deleted {} teamUsers of user {}", deleted, userId);
+    return teamIds;
+  }
+
+  /**
+   * Check if a user is in a team. Uses a single existence query on the composite key and caches
+   * the memberships for a short time.
+   *
+   * @param teamId team id
+   * @param userId user id
+   * @return true if the user is in the team
+   * @throws ResponseStatusException 404 if the user is not in the team and the team does not exist
+   */
+  public boolean isUserInTeam(Long teamId, Long userId) {
+    TeamUserId teamUserId = new TeamUserId(teamId, userId);
+    if (membershipCache.get(teamUserId) != null) {
+      return true;
+    }
+
+    boolean isMember = teamUserRepository.existsByTeamUserId(teamUserId);
+    if (isMember) {
+      membershipCache.put(teamUserId, Boolean.TRUE);
+    } else if (!teamRepository.existsById(teamId)) {
+      // only checked on failure, to distinguish an unknown team (404) from a non-member
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Team not found");
+    }
+
+    log.debug("User '{}' is in team '{}': {}", userId, teamId, isMember);
+    return isMember;
+  }
+
+  /**
+   * Keep the membership cache up to date after a link was created or deleted. The entry is removed
+   * immediately and set again once the transaction committed, so that a concurrent lookup cannot
+   * cache the old state.
+   */
+  private void updateMembershipCache(TeamUserId teamUserId, boolean isMember) {
+    membershipCache.invalidate(teamUserId);
+    ServiceHelpers.runAfterCommit(() -> {
+      if (isMember) {
+        membershipCache.put(teamUserId, Boolean.TRUE);
+      } else {
+        membershipCache.invalidate(teamUserId);
+      }
+    });
+  }
 }
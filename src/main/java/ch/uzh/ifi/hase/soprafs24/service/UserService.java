@@ -1,11 +1,13 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
-import ch.uzh.ifi.hase.soprafs24.entity.Team;
-import ch.uzh.ifi.hase.soprafs24.entity.TeamUser;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import org.hibernate.exception.ConstraintViolationException;
 import org.hibernate.exception.DataException;
@@ -35,11 +37,25 @@ public class UserService {
 
   private final TeamUserService teamUserService;
 
+  private final CommentService commentService;
+
+  private final TeamService teamService;
+
+  private final PusherService pusherService;
+
+  private final UserTokenCache userTokenCache;
+
   @Autowired
-  public UserService(
-      @Qualifier("userRepository") UserRepository userRepository, TeamUserService teamUserService) {
+  public UserService(@Qualifier("userRepository") UserRepository userRepository,
+      TeamUserService teamUserService, CommentService commentService,
+      @Qualifier("teamService") TeamService teamService, PusherService pusherService,
+      UserTokenCache userTokenCache) {
     this.userRepository = userRepository;
     this.teamUserService = teamUserService;
+    this.commentService = commentService;
+    this.teamService = teamService;
+    this.pusherService = pusherService;
+    this.userTokenCache = userTokenCache;
   }
 
   // User creation:
@@ -103,28 +119,63 @@ public class UserService {
       }
     }
 
+    // cached user of the token is outdated now
+    userTokenCache.invalidate(updatedUser.getToken());
+
+    // the member lists of the teams of the user changed
+    teamUserService.updateRevisionsOfTeamsOfUser(updatedUser.getUserId());
+
     log.debug("Updated Information for User: {}", updatedUser);
     return updatedUser;
   }
 
-  // User deletion:
+  /**
+   * Delete a user with the team links and the comments of the user. The links and the comments are
+   * removed with one statement each (no comment or link is loaded), so the time does not grow
+   * with the number of teams or comments of the user. Every changed team gets one new revision and
+   * one event per change, sent in batches after the commit.
+   *
+   * @param userId id of the user
+   * @throws ResponseStatusException 404 if the user does not exist
+   */
   public void deleteUser(Long userId) {
     User existingUser = userRepository.findById(userId).orElseThrow(
         () -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
-    // delete all teams that the user is part of (this will also call pusher realtime update)
-    List<Team> teams = teamUserService.getTeamsOfUser(existingUser.getUserId());
-    for (Team team : teams) {
-      teamUserService.deleteUserOfTeam(team.getTeamId(), existingUser.getUserId());
-    }
+    // remove the user from all teams and delete the comments of the user
+    List<Long> teamIds = teamUserService.deleteUserOfAllTeams(userId);
+    List<Long> commentTeamIds = commentService.deleteCommentsOfUser(userId);
 
     // delete user
     userRepository.delete(existingUser);
     userRepository.flush();
 
+    // token must not be accepted anymore
+    userTokenCache.invalidate(existingUser.getToken());
+
+    // one new revision for every changed team (single statement)
+    Set<Long> changedTeamIds = new HashSet<>(teamIds);
+    changedTeamIds.addAll(commentTeamIds);
+    Map<Long, Long> revisions = teamService.nextRevisions(changedTeamIds);
+
+    // notify the teams: the user left, the comments of the user are gone
+    pusherService.leaveTeams(existingUser, selectRevisions(revisions, teamIds));
+    pusherService.reloadComments(selectRevisions(revisions, commentTeamIds));
+
     log.debug("Deleted User: {}", existingUser);
   }
 
+  private static Map<Long, Long> selectRevisions(Map<Long, Long> revisions, List<Long> teamIds) {
+    Map<Long, Long> selected = new HashMap<>();
+    for (Long teamId : teamIds) {
+      Long revision = revisions.get(teamId);
+      if (revision != null) {
+        selected.put(teamId, revision);
+      }
+    }
+    return selected;
+  }
+
   /**
    * This is a helper method that will check the uniqueness criteria of the
    * username defined in the User entity. The method will do nothing if the input is unique
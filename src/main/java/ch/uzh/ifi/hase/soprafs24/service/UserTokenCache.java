@@ -0,0 +1,85 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import ch.uzh.ifi.hase.soprafs24.cache.ExpiringCache;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token Cache
+ * Caches the user of a token, so that not every authorized request needs to look up the token in
+ * the database. The entries expire after a short time, because every instance of the server has
+ * its own cache and only sees the invalidations of its own requests.
+ *
+ * @see AuthorizationService#isAuthorized(String)
+ */
+@Component
+public class UserTokenCache {
+  private final Logger log = LoggerFactory.getLogger(UserTokenCache.class);
+
+  private final ExpiringCache<String, User> cache;
+
+  public UserTokenCache(@Value("${auth.token-cache.max-size:10000}") int maxSize,
+      @Value("${auth.token-cache.ttl-seconds:60}") long ttlSeconds) {
+    this.cache = new ExpiringCache<>(maxSize, Duration.ofSeconds(ttlSeconds));
+  }
+
+  /**
+   * @param token token of the user
+   * @return the cached user of the token, null if not cached
+   */
+  public User get(String token) {
+    return token == null ? null : cache.get(token);
+  }
+
+  /**
+   * Cache a user by its token.
+   */
+  public void put(User user) {
+    if (user != null && user.getToken() != null) {
+      cache.put(user.getToken(), user);
+    }
+  }
+
+  /**
+   * Remove the user of the token from the cache. If called inside a transaction, the entry is
+   * removed again after the commit, so that a concurrent request cannot cache the old state.
+   *
+   * @param token token of the user that was updated or deleted
+   */
+  public void invalidate(String token) {
+    if (token == null) {
+      return;
+    }
+    cache.invalidate(token);
+    ServiceHelpers.runAfterCommit(() -> cache.invalidate(token));
+  }
+
+  /**
+   * Remove all cached users.
+   */
+  public void clear() {
+    cache.clear();
+  }
+
+  public long getHitCount() {
+    return cache.getHitCount();
+  }
+
+  public long getMissCount() {
+    return cache.getMissCount();
+  }
+
+  /**
+   * Logs the hit/miss counters, every hit is a saved token lookup in the database.
+   */
+  @Scheduled(fixedRateString = "${auth.token-cache.stats-interval-ms:600000}")
+  public void logStats() {
+    log.info("Token cache: {} hits (saved lookups), {} misses, {} entries", getHitCount(),
+        getMissCount(), cache.size());
+  }
+}
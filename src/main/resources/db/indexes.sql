@@ -0,0 +1,47 @@
+-- Indexes that cannot be declared with JPA annotations (e.g. partial indexes).
+-- Runs after Hibernate updated the schema, so every statement must be idempotent.
+
+-- active session of a team
+-- (SessionRepository#findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc)
+CREATE INDEX IF NOT EXISTS idx_session_active_team
+    ON session (team_id, start_date_time DESC)
+    WHERE end_date_time IS NULL;
+
+-- session history of a team, keyset pagination (SessionRepository#findByTeamAfterCursor)
+CREATE INDEX IF NOT EXISTS idx_session_team_start
+    ON session (team_id, start_date_time DESC, session_id DESC);
+
+-- paged task listing of a team (TaskRepository#findPageOrderBy...), keyset pagination
+CREATE INDEX IF NOT EXISTS idx_task_team_creation
+    ON task (team_id, creation_date DESC, task_id DESC);
+CREATE INDEX IF NOT EXISTS idx_task_team_title
+    ON task (team_id, lower(title), task_id);
+-- also serves the status filter with the title order
+-- (TaskRepository#findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc)
+CREATE INDEX IF NOT EXISTS idx_task_team_status_title
+    ON task (team_id, status, lower(title), task_id);
+
+-- comment thread of a task, keyset pagination (CommentRepository#findPageByTaskId...),
+-- also serves the comment counts of a task listing (CommentRepository#countByTaskIds)
+DROP INDEX IF EXISTS idx_comment_task;
+CREATE INDEX IF NOT EXISTS idx_comment_task_creation
+    ON comment (task_id, creation_date DESC, comment_id DESC);
+
+-- deleted tasks to archive (TaskRepository#findIdsByStatusModifiedBefore)
+CREATE INDEX IF NOT EXISTS idx_task_status_modification
+    ON task (status, coalesce(modification_date, creation_date));
+
+-- archived tasks of a team and comments of an archived task (TaskArchiveService)
+CREATE INDEX IF NOT EXISTS idx_archived_task_team
+    ON archived_task (team_id, archive_date DESC);
+CREATE INDEX IF NOT EXISTS idx_archived_comment_task
+    ON archived_comment (task_id);
+
+-- team links and comments of a user, e.g. to delete a user with set-based statements
+-- (TeamUserRepository#deleteByUserId, CommentRepository#deleteByUserId)
+CREATE INDEX IF NOT EXISTS idx_team_user_user
+    ON team_user (user_id);
+CREATE INDEX IF NOT EXISTS idx_comment_user
+    ON comment (user_id);
+CREATE INDEX IF NOT EXISTS idx_archived_comment_user
+    ON archived_comment (user_id);
@@ -3,6 +3,14 @@ package ch.uzh.ifi.hase.soprafs24.agora;
 import static org.junit.jupiter.api.Assertions.*;
 
 import ch.uzh.ifi.hase.soprafs24.agora.AccessToken2;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.jupiter.api.Test;
 
 public class AccessToken2Test {
@@ -311,6 +319,84 @@ public class AccessToken2Test {
   //           AccessToken2.PrivilegeChat.PRIVILEGE_CHAT_APP.intValue));
   // }
 
+  @Test
+  public void getSign_sameIssueTs_dependsOnSaltAndCertificate() throws Exception {
+    AccessToken2 accessToken = new AccessToken2(appId, appCertificate, expire);
+    accessToken.issueTs = issueTs;
+    accessToken.salt = salt;
+    byte[] sign = accessToken.getSign();
+
+    // same issue timestamp and salt -> same key (first stage shared)
+    AccessToken2 sameToken = new AccessToken2(appId, appCertificate, expire);
+    sameToken.issueTs = issueTs;
+    sameToken.salt = salt;
+    assertArrayEquals(sign, sameToken.getSign());
+
+    // other salt -> other key
+    sameToken.salt = salt + 1;
+    assertFalse(Arrays.equals(sign, sameToken.getSign()));
+
+    // other certificate in the same second -> other key
+    AccessToken2 otherCertificate =
+        new AccessToken2(appId, "6CFd2fd1755d40ecb72977518be15d3b", expire);
+    otherCertificate.issueTs = issueTs;
+    otherCertificate.salt = salt;
+    assertFalse(Arrays.equals(sign, otherCertificate.getSign()));
+    assertArrayEquals(sign, accessToken.getSign());
+  }
+
+  @Test
+  public void build_concurrentThreads_sameToken() throws Exception {
+    Callable<String> build = () -> {
+      AccessToken2 accessToken = new AccessToken2(appId, appCertificate, expire);
+      accessToken.issueTs = issueTs;
+      accessToken.salt = salt;
+      AccessToken2.ServiceRtm serviceRtm = new AccessToken2.ServiceRtm(userId);
+      serviceRtm.addPrivilegeRtm(AccessToken2.PrivilegeRtm.PRIVILEGE_LOGIN, expire);
+      accessToken.addService(serviceRtm);
+      return accessToken.build();
+    };
+    String expected = build.call();
+
+    // every thread signs with its own Mac
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> tokens = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        tokens.add(executor.submit(build));
+      }
+      for (Future<String> token : tokens) {
+        assertEquals(expected, token.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void build_largeService_parsesBack() throws Exception {
+    // more than the former fixed buffer size of 1024 bytes
+    String longChannelName = String.join("", Collections.nCopies(100, channelName));
+
+    AccessToken2 accessToken = new AccessToken2(appId, appCertificate, expire);
+    accessToken.addService(new AccessToken2.ServiceRtc(longChannelName, uid));
+    String token = accessToken.build();
+
+    // the buffers of the thread are reused for a small token afterwards
+    AccessToken2 smallToken = new AccessToken2(appId, appCertificate, expire);
+    smallToken.issueTs = issueTs;
+    smallToken.salt = salt;
+    assertEquals("007eJxTYEiJ9+zw7Gb1viNuGtMfy3JriuZNp+1h1iLu/"
+            + "rOePHlS91WBwdLcwNnR2DQl1cwg2cTEzMQ0KSkx1SLRyNDUwMwwydjY/YsAQwQTAwMjAwgAAKtnGK8=",
+        smallToken.build());
+
+    AccessToken2 parsed = new AccessToken2();
+    assertTrue(parsed.parse(token));
+    assertEquals(longChannelName,
+        ((AccessToken2.ServiceRtc) parsed.services.get(AccessToken2.SERVICE_TYPE_RTC))
+            .getChannelName());
+  }
+
   @Test
   public void getUidStr() {
     assertEquals("", AccessToken2.getUidStr(0));
@@ -0,0 +1,56 @@
+package ch.uzh.ifi.hase.soprafs24.agora;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+public class ByteBufTest {
+  @Test
+  public void put_moreThanCapacity_grows() {
+    ByteBuf buf = new ByteBuf(2);
+
+    buf.put(1).put("channel").put(2L);
+
+    assertEquals(4 + 2 + 7 + 8, buf.length());
+    ByteBuf read = new ByteBuf(buf.asBytes());
+    assertEquals(1, read.readInt());
+    assertEquals("channel", read.readString());
+  }
+
+  @Test
+  public void reset_reused_onlyNewBytesWritten() {
+    ByteBuf buf = new ByteBuf();
+    buf.put("first value");
+
+    buf.reset().put((short) 7);
+
+    assertArrayEquals(new byte[] {7, 0}, buf.asBytes());
+  }
+
+  @Test
+  public void append_writtenBytes_noLengthPrefix() {
+    ByteBuf content = new ByteBuf();
+    TreeMap<Short, Integer> privileges = new TreeMap<>();
+    privileges.put((short) 1, 600);
+    content.putIntMap(privileges);
+
+    ByteBuf buf = new ByteBuf(1).put((short) 3).append(content);
+
+    ByteBuf read = new ByteBuf(buf.asBytes());
+    assertEquals(3, read.readShort());
+    assertEquals(privileges, read.readIntMap());
+  }
+
+  @Test
+  public void compress_range_decompressesToRange() {
+    ByteBuf data = new ByteBuf().put("prefix").put("compressed content");
+    int offset = 2 + "prefix".length();
+    ByteBuf compressed = new ByteBuf(1);
+
+    Utils.compress(data.array(), offset, data.length() - offset, compressed);
+
+    ByteBuf read = new ByteBuf(Utils.decompress(compressed.asBytes()));
+    assertEquals("compressed content", read.readString());
+  }
+}
@@ -0,0 +1,110 @@
+package ch.uzh.ifi.hase.soprafs24.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+  private AtomicLong now;
+  private ExpiringCache<String, String> cache;
+
+  @BeforeEach
+  public void setup() {
+    now = new AtomicLong(0);
+    cache = new ExpiringCache<>(2, Duration.ofSeconds(10), now::get);
+  }
+
+  @Test
+  public void get_cachedKey_returnsValue() {
+    cache.put("key", "value");
+
+    assertEquals("value", cache.get("key"));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(0, cache.getMissCount());
+  }
+
+  @Test
+  public void get_unknownKey_returnsNull() {
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  public void get_expiredKey_returnsNull() {
+    cache.put("key", "value");
+
+    // when -> time-to-live passed
+    now.set(Duration.ofSeconds(10).toMillis());
+
+    // then
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void put_customTimeToLive_expiresEarlier() {
+    cache.put("key", "value", 1000);
+
+    now.set(999);
+    assertEquals("value", cache.get("key"));
+
+    now.set(1000);
+    assertNull(cache.get("key"));
+  }
+
+  @Test
+  public void put_maxSizeReached_evictsLeastRecentlyUsed() {
+    cache.put("a", "1");
+    cache.put("b", "2");
+
+    // when -> "a" is used, so "b" is the least recently used entry
+    cache.get("a");
+    cache.put("c", "3");
+
+    // then
+    assertEquals(2, cache.size());
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+  }
+
+  @Test
+  public void invalidate_cachedKey_removed() {
+    cache.put("key", "value");
+
+    cache.invalidate("key");
+
+    assertNull(cache.get("key"));
+  }
+
+  @Test
+  public void invalidateIf_matchingKeys_removed() {
+    cache.put("team-1", "1");
+    cache.put("team-2", "2");
+
+    cache.invalidateIf(key -> key.endsWith("1"));
+
+    assertNull(cache.get("team-1"));
+    assertEquals("2", cache.get("team-2"));
+  }
+
+  @Test
+  public void clear_allRemoved() {
+    cache.put("a", "1");
+    cache.put("b", "2");
+
+    cache.clear();
+
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void constructor_invalidMaxSize_throwsException() {
+    assertThrows(
+        IllegalArgumentException.class, () -> new ExpiringCache<>(0, Duration.ofSeconds(1)));
+  }
+}
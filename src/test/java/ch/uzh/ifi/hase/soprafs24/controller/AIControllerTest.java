@@ -1,10 +1,13 @@
 package ch.uzh.ifi.hase.soprafs24.controller;
 
 import static ch.uzh.ifi.hase.soprafs24.controller.ControllerTestHelper.asJsonString;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import ch.uzh.ifi.hase.soprafs24.entity.User;
@@ -12,7 +15,6 @@ import ch.uzh.ifi.hase.soprafs24.rest.dto.AIPromptGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.AIPromptTeamDescriptionPostDTO;
 import ch.uzh.ifi.hase.soprafs24.service.AIService;
 import ch.uzh.ifi.hase.soprafs24.service.AuthorizationService;
-import java.util.Optional;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,8 +23,11 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 @WebMvcTest(AIController.class)
 public class AIControllerTest {
@@ -51,7 +56,7 @@ public class AIControllerTest {
 
     // When the user is authorized and the AI Service returns a description
     given(authorizationService.isAuthorized(anyString())).willReturn(user);
-    given(aiService.generateDescription(anyString())).willReturn(Optional.of("Some description"));
+    given(aiService.generateDescription(anyString())).willReturn(Mono.just("Some description"));
 
     // Construct the POST request
     MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct")
@@ -59,8 +64,11 @@ public class AIControllerTest {
                                                     .contentType(MediaType.APPLICATION_JSON)
                                                     .content(asJsonString(requestBody));
 
-    // Then the request should be successful and the response should not be null or empty
-    mockMvc.perform(postRequest)
+    // Then the request thread is released while the AI Service answers
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+
+    // And the response should not be null or empty
+    mockMvc.perform(asyncDispatch(result))
         .andExpect(status().isOk())
         .andExpect(content().json(asJsonString(response)));
     Mockito.verify(aiService, Mockito.times(1)).generateDescription(anyString());
@@ -107,14 +115,16 @@ public class AIControllerTest {
     // When the user is authorized but the AI Service fails
     given(authorizationService.isAuthorized(anyString())).willReturn(user);
     given(aiService.generateDescription(anyString()))
-        .willThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "AI Service failed"));
+        .willReturn(Mono.error(
+            new ResponseStatusException(HttpStatus.BAD_REQUEST, "AI Service failed")));
     // Construct the POST request
     MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct")
                                                     .header("Authorization", "Bearer token")
                                                     .contentType(MediaType.APPLICATION_JSON)
                                                     .content(asJsonString(requestBody));
     // Then the request should return Bad Gateway status
-    mockMvc.perform(postRequest).andExpect(status().isBadGateway());
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadGateway());
     Mockito.verify(aiService, Mockito.times(1)).generateDescription(anyString());
   }
   /**
@@ -133,14 +143,150 @@ public class AIControllerTest {
     // When the user is authorized but the request body is invalid
     given(authorizationService.isAuthorized(anyString())).willReturn(user);
     given(aiService.generateDescription(anyString()))
-        .willThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid input"));
+        .willReturn(
+            Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid input")));
     // Construct the POST request
     MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct")
                                                     .header("Authorization", "Bearer token")
                                                     .contentType(MediaType.APPLICATION_JSON)
                                                     .content(asJsonString(requestBody));
     // Then the request should return Bad Gateway status
-    mockMvc.perform(postRequest).andExpect(status().isBadGateway());
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isBadGateway());
     Mockito.verify(aiService, Mockito.times(1)).generateDescription(anyString());
   }
+
+  /**
+   * Test for callGpt35Instruct method when too many requests wait for the AI Service.
+   * Ensures that the 503 of the limiter is passed on, so that the client can retry later.
+   */
+  @Test
+  public void callGpt35Instruct_tooManyRequests_serviceUnavailable() throws Exception {
+    // Given a user with a valid token
+    User user = new User();
+    user.setUserId(1L);
+    user.setToken("token");
+    AIPromptTeamDescriptionPostDTO requestBody = new AIPromptTeamDescriptionPostDTO();
+    requestBody.setPromptParameter("The Warriors");
+    // When the AI Service rejects the request
+    given(authorizationService.isAuthorized(anyString())).willReturn(user);
+    given(aiService.generateDescription(anyString()))
+        .willReturn(Mono.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)));
+    // Construct the POST request
+    MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct")
+                                                    .header("Authorization", "Bearer token")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(asJsonString(requestBody));
+    // Then the request should return Service Unavailable status
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result)).andExpect(status().isServiceUnavailable());
+  }
+
+  /**
+   * Test for streamGpt35Instruct method with valid input.
+   * Ensures that every piece of text is sent as event, followed by the done event.
+   */
+  @Test
+  public void streamGpt35Instruct_validInput_events() throws Exception {
+    // Given a user with a valid token
+    User user = new User();
+    user.setUserId(1L);
+    user.setToken("token");
+    AIPromptTeamDescriptionPostDTO requestBody = new AIPromptTeamDescriptionPostDTO();
+    requestBody.setPromptParameter("The Warriors");
+    // When the AI Service streams two pieces
+    given(authorizationService.isAuthorized(anyString())).willReturn(user);
+    given(aiService.streamDescription(anyString())).willReturn(Flux.just("Some", " description"));
+    // Construct the POST request
+    MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct/stream")
+                                                    .header("Authorization", "Bearer token")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(asJsonString(requestBody));
+    // Then the pieces are sent as events (answer with the leading space) and the stream is done
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("data:{\"answer\":\"Some\"}")))
+        .andExpect(content().string(containsString("data:{\"answer\":\" description\"}")))
+        .andExpect(content().string(containsString("event:done\ndata:[DONE]")));
+  }
+
+  /**
+   * Test for streamGpt35Instruct method when the AI Service fails after the first piece.
+   * Ensures that the error is sent as event, because the status is already sent.
+   */
+  @Test
+  public void streamGpt35Instruct_aiServiceFails_errorEvent() throws Exception {
+    // Given a user with a valid token
+    User user = new User();
+    user.setUserId(1L);
+    user.setToken("token");
+    AIPromptTeamDescriptionPostDTO requestBody = new AIPromptTeamDescriptionPostDTO();
+    requestBody.setPromptParameter("The Warriors");
+    // When the AI Service stops sending after the first piece
+    given(authorizationService.isAuthorized(anyString())).willReturn(user);
+    given(aiService.streamDescription(anyString()))
+        .willReturn(Flux.concat(Flux.just("Some"),
+            Flux.error(
+                new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "AI Service timed out"))));
+    // Construct the POST request
+    MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct/stream")
+                                                    .header("Authorization", "Bearer token")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(asJsonString(requestBody));
+    // Then the error is sent as event
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("data:{\"answer\":\"Some\"}")))
+        .andExpect(content().string(containsString("event:error\ndata:504 AI Service timed out")));
+  }
+
+  /**
+   * Test for streamGpt35Instruct method when too many requests wait for the AI Service.
+   * Ensures that an error before the first event is the status of the response.
+   */
+  @Test
+  public void streamGpt35Instruct_tooManyRequests_serviceUnavailable() throws Exception {
+    // Given a user with a valid token
+    User user = new User();
+    user.setUserId(1L);
+    user.setToken("token");
+    AIPromptTeamDescriptionPostDTO requestBody = new AIPromptTeamDescriptionPostDTO();
+    requestBody.setPromptParameter("The Warriors");
+    // When the AI Service rejects the request
+    given(authorizationService.isAuthorized(anyString())).willReturn(user);
+    given(aiService.streamDescription(anyString()))
+        .willReturn(Flux.error(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)));
+    // Construct the POST request
+    MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct/stream")
+                                                    .header("Authorization", "Bearer token")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(asJsonString(requestBody));
+    // Then the request should return Service Unavailable status, no event is sent
+    MvcResult result = mockMvc.perform(postRequest).andExpect(request().asyncStarted()).andReturn();
+    mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(content().string(""));
+  }
+
+  /**
+   * Test for streamGpt35Instruct method with invalid token.
+   * Ensures that the method returns Unauthorized status before the stream is started.
+   */
+  @Test
+  public void streamGpt35Instruct_invalidToken_unauthorized() throws Exception {
+    AIPromptTeamDescriptionPostDTO requestBody = new AIPromptTeamDescriptionPostDTO();
+    requestBody.setPromptParameter("The Warriors");
+    given(authorizationService.isAuthorized(anyString()))
+        .willThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED));
+
+    MockHttpServletRequestBuilder postRequest = post("/api/v1/ai/gpt-3.5-turbo-instruct/stream")
+                                                    .header("Authorization", "Bearer invalid_token")
+                                                    .contentType(MediaType.APPLICATION_JSON)
+                                                    .content(asJsonString(requestBody));
+
+    mockMvc.perform(postRequest).andExpect(status().isUnauthorized());
+    Mockito.verify(aiService, Mockito.never()).streamDescription(anyString());
+  }
 }
@@ -11,11 +11,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPageGetDTO;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPostDTO;
 import ch.uzh.ifi.hase.soprafs24.service.AuthorizationService;
 import ch.uzh.ifi.hase.soprafs24.service.CommentService;
 import ch.uzh.ifi.hase.soprafs24.service.PusherService;
 import ch.uzh.ifi.hase.soprafs24.service.TaskService;
+import ch.uzh.ifi.hase.soprafs24.service.TeamService;
 import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,6 +28,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -43,6 +47,7 @@ public class CommentControllerTest {
   @MockBean private AuthorizationService authorizationService;
   @MockBean private TaskService taskService;
   @MockBean private PusherService pusherService;
+  @MockBean private TeamService teamService;
 
   private User testUser;
 
@@ -51,8 +56,8 @@ public class CommentControllerTest {
     testUser = new User();
     testUser.setUserId(1L);
 
-    // mock pusher service
-    Mockito.doNothing().when(pusherService).updateComments(Mockito.anyString());
+    // when -> ETag of the team -> current revision
+    given(teamService.getTeamETag(Mockito.anyLong())).willReturn("team-1-r1");
   }
 
   // region Comment Controller POST
@@ -95,8 +100,8 @@ public class CommentControllerTest {
         .andExpect(jsonPath("$.authorId", is(comment.getUser().getUserId().intValue())))
         .andExpect(jsonPath("$.authorName", is(comment.getUser().getName())));
 
-    // verify that pusher service was called
-    Mockito.verify(pusherService, Mockito.times(1)).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
 
   /**
@@ -136,8 +141,8 @@ public class CommentControllerTest {
             -> assertTrue(result.getResolvedException().getMessage().contains(
                 "Comment text cannot be null.")));
 
-    // verify that pusher service wasn't called
-    Mockito.verify(pusherService, Mockito.times(0)).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
 
   /**
@@ -171,8 +176,8 @@ public class CommentControllerTest {
             -> assertTrue(
                 result.getResolvedException().getMessage().contains("Not authorized to access.")));
 
-    // verify that pusher service wasn't called
-    Mockito.verify(pusherService, Mockito.times(0)).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
   // endregion
 
@@ -259,6 +264,103 @@ public class CommentControllerTest {
 
   // endregion
 
+  // region Comment Controller GET page
+
+  /**
+   * Test for fetching a page of comments, the cursors of the service are returned
+   */
+  @Test
+  public void getCommentsPage_validInput_returnsPage() throws Exception {
+    // given
+    CommentGetDTO comment = new CommentGetDTO(1L, 1L, "user1", "This is a test comment.", null);
+    CommentPageGetDTO commentPage = new CommentPageGetDTO();
+    commentPage.setComments(List.of(comment));
+    commentPage.setNextCursor("next");
+    commentPage.setLatestCursor("latest");
+
+    given(commentService.getCommentPage(1L, 2L, 10, null, null)).willReturn(commentPage);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/tasks/2/comments")
+                                                   .param("limit", "10")
+                                                   .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.comments", hasSize(1)))
+        .andExpect(jsonPath("$.comments[0].commentId", is(1)))
+        .andExpect(jsonPath("$.comments[0].authorName", is("user1")))
+        .andExpect(jsonPath("$.nextCursor", is("next")))
+        .andExpect(jsonPath("$.latestCursor", is("latest")));
+  }
+
+  /**
+   * Test for refreshing the comments with since, only the new comments are requested
+   */
+  @Test
+  public void getCommentsPage_since_passedToService() throws Exception {
+    // given no new comments
+    CommentPageGetDTO commentPage = new CommentPageGetDTO();
+    commentPage.setComments(List.of());
+    commentPage.setLatestCursor("latest");
+
+    given(commentService.getCommentPage(1L, 2L, 10, null, "latest")).willReturn(commentPage);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/tasks/2/comments")
+                                                   .param("limit", "10")
+                                                   .param("since", "latest")
+                                                   .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.comments", hasSize(0)))
+        .andExpect(jsonPath("$.latestCursor", is("latest")));
+  }
+
+  /**
+   * Test for fetching a page of comments with the current ETag, the comments are not loaded
+   */
+  @Test
+  public void getCommentsPage_sameETag_notModified() throws Exception {
+    // when/then -> do the request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks/2/comments")
+            .param("limit", "10")
+            .header("Authorization", "1234")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r1\"");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isNotModified());
+    Mockito.verify(commentService, Mockito.never())
+        .getCommentPage(Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.any(),
+            Mockito.any());
+  }
+
+  /**
+   * Test for fetching a page of comments with an invalid cursor
+   */
+  @Test
+  public void getCommentsPage_invalidCursor_throwsBadRequest() throws Exception {
+    // given
+    given(commentService.getCommentPage(Mockito.any(), Mockito.any(), Mockito.anyInt(),
+              Mockito.any(), Mockito.any()))
+        .willThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/tasks/2/comments")
+                                                   .param("limit", "10")
+                                                   .param("cursor", "invalid")
+                                                   .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isBadRequest());
+  }
+
+  // endregion
+
   // region Comment Controller DELETE
   @Test
   public void deleteComment_validInput_commentDeleted() throws Exception {
@@ -284,8 +386,8 @@ public class CommentControllerTest {
     // then
     mockMvc.perform(deleteRequest).andExpect(status().isOk());
 
-    // verify the pusher service was called
-    Mockito.verify(pusherService, Mockito.times(1)).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
 
   @Test
@@ -303,8 +405,8 @@ public class CommentControllerTest {
     // then
     mockMvc.perform(deleteRequest).andExpect(status().isUnauthorized());
 
-    // verify that pusher service wasn't called
-    Mockito.verify(pusherService, Mockito.never()).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
 
   @Test
@@ -327,8 +429,8 @@ public class CommentControllerTest {
     // then
     mockMvc.perform(deleteRequest).andExpect(status().isNotFound());
 
-    // verify that pusher service wasn't called
-    Mockito.verify(pusherService, Mockito.never()).updateComments(Mockito.anyString());
+    // the team is notified by the comment service, not by the controller
+    Mockito.verifyNoInteractions(pusherService);
   }
   // endregion
 }
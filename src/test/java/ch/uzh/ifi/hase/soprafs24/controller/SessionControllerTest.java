@@ -6,6 +6,8 @@ import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -22,6 +24,9 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -38,7 +43,7 @@ public class SessionControllerTest {
 
   @MockBean private AuthorizationService authorizationService;
   @MockBean private SessionService sessionService;
-  @MockBean private PusherService pusherService;
+  @MockBean private TeamService teamService;
 
   private Session testSession;
   private LocalDateTime testSessionStartDateTime;
@@ -69,6 +74,9 @@ public class SessionControllerTest {
     testSessionEnded.setStartDateTime(testSessionEndedStartDateTime);
     testSessionEnded.setEndDateTime(testSessionEndedEndDateTime);
     testSessionEnded.setGoalMinutes(testSessionEndedGoalMinutes);
+
+    // current ETag of the sessions of the team
+    given(teamService.getTeamETag(Mockito.anyLong())).willReturn("team-1-r1");
   }
 
   // region create session
@@ -86,9 +94,6 @@ public class SessionControllerTest {
     given(sessionService.createSession(Mockito.anyLong(), Mockito.anyLong()))
         .willReturn(testSession);
 
-    // pusher mock
-    Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder postRequest =
         post("/api/v1/teams/1/sessions")
@@ -121,9 +126,6 @@ public class SessionControllerTest {
         .willThrow(
             new ResponseStatusException(HttpStatus.CONFLICT, "There is already an active session"));
 
-    // pusher mock
-    Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder postRequest =
         post("/api/v1/teams/1/sessions")
@@ -149,9 +151,6 @@ public class SessionControllerTest {
     // given(sessionService.createSession(Mockito.anyLong(),
     // Mockito.anyLong())).willReturn(testSession);
 
-    // pusher mock
-    // Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder postRequest =
         post("/api/v1/teams/1/sessions")
@@ -177,9 +176,6 @@ public class SessionControllerTest {
     // given(sessionService.createSession(Mockito.anyLong(),
     // Mockito.anyLong())).willReturn(testSession);
 
-    // pusher mock
-    // Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder postRequest =
         post("/api/v1/teams/1/sessions")
@@ -294,6 +290,137 @@ public class SessionControllerTest {
     // then
     mockMvc.perform(getRequest).andExpect(status().isNotFound());
   }
+
+  @Test
+  public void getSessionsByTeam_returnsETag() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+    given(sessionService.getSessionsByTeamId(Mockito.anyLong())).willReturn(List.of(testSession));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/sessions")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .header("Authorization", "valid-token");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"team-1-r1\""));
+  }
+
+  @Test
+  public void getSessionsByTeam_sameETag_notModified() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+
+    // when/then -> do the request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/sessions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .header("Authorization", "valid-token")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r1\"");
+
+    // then -> no body and the sessions are not loaded
+    mockMvc.perform(getRequest)
+        .andExpect(status().isNotModified())
+        .andExpect(content().string(""));
+    Mockito.verify(sessionService, Mockito.never()).getSessionsByTeamId(Mockito.anyLong());
+  }
+
+  @Test
+  public void getSessionsByTeamPage_sameETag_notModified() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+
+    // when/then -> do the request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/sessions")
+            .param("limit", "10")
+            .contentType(MediaType.APPLICATION_JSON)
+            .header("Authorization", "valid-token")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r1\"");
+
+    // then -> the page is not loaded
+    mockMvc.perform(getRequest).andExpect(status().isNotModified());
+    Mockito.verify(sessionService, Mockito.never())
+        .getSessionsByTeamId(Mockito.anyLong(), Mockito.anyInt(), Mockito.any());
+  }
+
+  @Test
+  public void getSessionsByTeamPage_hasNext_returnsNextCursor() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+
+    // when get sessions service -> return first page, more sessions available
+    given(sessionService.getSessionsByTeamId(Mockito.anyLong(), Mockito.eq(1), Mockito.isNull()))
+        .willReturn(new SliceImpl<>(List.of(testSession), PageRequest.of(0, 1), true));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/sessions")
+                                                   .param("limit", "1")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .header("Authorization", "valid-token");
+
+    // then -> the cursor points to the last session of the page
+    String expectedCursor =
+        new KeysetCursor(testSession.getStartDateTime(), testSession.getSessionId()).encode();
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.sessions", hasSize(1)))
+        .andExpect(
+            jsonPath("$.sessions[0].goalMinutes", is(testSession.getGoalMinutes().intValue())))
+        .andExpect(jsonPath("$.nextCursor", is(expectedCursor)));
+  }
+
+  @Test
+  public void getSessionsByTeamPage_lastPage_noNextCursor() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+
+    // when get sessions service -> return last page
+    given(sessionService.getSessionsByTeamId(
+              Mockito.anyLong(), Mockito.eq(10), Mockito.eq("cursor")))
+        .willReturn(new SliceImpl<>(List.of(testSessionEnded), PageRequest.of(0, 10), false));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/sessions")
+                                                   .param("limit", "10")
+                                                   .param("cursor", "cursor")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .header("Authorization", "valid-token");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.sessions", hasSize(1)))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  @Test
+  public void getSessionsByTeamPage_invalidCursor_expectsException() throws Exception {
+    // when auth -> ok
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(new User());
+
+    // when get sessions service -> invalid cursor
+    given(sessionService.getSessionsByTeamId(Mockito.anyLong(), Mockito.anyInt(), Mockito.any()))
+        .willThrow(new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor"));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest = get("/api/v1/teams/1/sessions")
+                                                   .param("limit", "10")
+                                                   .param("cursor", "invalid")
+                                                   .contentType(MediaType.APPLICATION_JSON)
+                                                   .header("Authorization", "valid-token");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isBadRequest());
+  }
   // endregion
 
   // region end session
@@ -306,9 +433,6 @@ public class SessionControllerTest {
     // when end session service -> return test session successfully
     given(sessionService.endSession(Mockito.anyLong())).willReturn(testSessionEnded);
 
-    // pusher mock
-    Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder patchRequest = patch("/api/v1/teams/1/sessions")
                                                      .contentType(MediaType.APPLICATION_JSON)
@@ -334,9 +458,6 @@ public class SessionControllerTest {
     given(sessionService.endSession(Mockito.anyLong()))
         .willThrow(new ResponseStatusException(HttpStatus.GONE, "Team has no active session"));
 
-    // pusher mock
-    // Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder patchRequest = patch("/api/v1/teams/1/sessions")
                                                      .contentType(MediaType.APPLICATION_JSON)
@@ -352,9 +473,6 @@ public class SessionControllerTest {
     given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
         .willThrow(new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User is not authorized"));
 
-    // pusher mock
-    // Mockito.doNothing().when(pusherService).startSession(Mockito.anyString());
-
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder patchRequest = patch("/api/v1/teams/1/sessions")
                                                      .contentType(MediaType.APPLICATION_JSON)
@@ -370,7 +488,7 @@ public class SessionControllerTest {
   @Test
   public void endExpiredSessions_validInputs_success() throws Exception {
     // mock session service call
-    Mockito.doNothing().when(sessionService).endExpiredSessions();
+    given(sessionService.endExpiredSessions()).willReturn(List.of(1L, 2L));
 
     // when/then -> do the request + validate the result
     MockHttpServletRequestBuilder getRequest =
@@ -6,14 +6,18 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import ch.uzh.ifi.hase.soprafs24.constant.TaskSort;
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.TeamUser;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.rest.dto.*;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import ch.uzh.ifi.hase.soprafs24.service.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -24,6 +28,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -43,6 +48,7 @@ public class TeamControllerTest {
   @MockBean private TeamUserService teamUserService;
   @MockBean private TaskService taskService;
   @MockBean private MailService mailService;
+  @MockBean private TaskArchiveService taskArchiveService;
 
   private User testUser;
 
@@ -255,6 +261,29 @@ public class TeamControllerTest {
         .andExpect(jsonPath("$[0].username", is(testUser.getUsername())));
   }
 
+  /**
+   * Test for getting the users of a team with the current ETag -> 304 without loading the users
+   */
+  @Test
+  public void getUsersOfTeam_sameETag_notModified() throws Exception {
+    // when -> is auth check -> is valid
+    given(authorizationService.isAuthorizedAndBelongsToTeam(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(testUser);
+    // when -> current ETag of the team
+    given(teamService.getTeamETag(1L)).willReturn("team-1-r5");
+
+    // when -> perform get request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/users")
+            .contentType(MediaType.APPLICATION_JSON)
+            .header("Authorization", "valid-token")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r5\"");
+
+    // then -> not modified and the users are not loaded
+    mockMvc.perform(getRequest).andExpect(status().isNotModified());
+    Mockito.verify(teamUserService, Mockito.never()).getUsersOfTeam(Mockito.anyLong());
+  }
+
   // endregion
 
   // region send invitation mail tests
@@ -766,8 +795,8 @@ public class TeamControllerTest {
     task.setTitle("Test Task");
     task.setDescription("This is a test task.");
 
-    List<Task> tasks = new ArrayList<>();
-    tasks.add(task);
+    List<TaskGetDTO> tasks = new ArrayList<>();
+    tasks.add(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task));
 
     Mockito
         .when(authorizationService.isAuthorizedAndBelongsToTeam(
@@ -788,6 +817,53 @@ public class TeamControllerTest {
         .andExpect(jsonPath("$[0].description", is(task.getDescription())));
   }
 
+  /**
+   * Test for fetching the tasks with an outdated ETag -> tasks with the new ETag
+   */
+  @Test
+  public void getTasks_outdatedETag_returnTasksWithETag() throws Exception {
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(teamService.getTeamETag(1L)).willReturn("team-1-r6");
+    given(taskService.getTasksByTeamId(Mockito.anyLong())).willReturn(List.of());
+
+    // when/then -> do the request with the ETag of an older revision
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks")
+            .header("Authorization", "1234")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r5\"");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"team-1-r6\""));
+  }
+
+  /**
+   * Test for fetching the tasks with the current ETag -> 304 without loading the tasks
+   */
+  @Test
+  public void getTasks_sameETag_notModified() throws Exception {
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(teamService.getTeamETag(1L)).willReturn("team-1-r6");
+
+    // when/then -> do the request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks?status=TODO")
+            .header("Authorization", "1234")
+            .header(HttpHeaders.IF_NONE_MATCH, "\"team-1-r6\"");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isNotModified());
+    Mockito.verify(taskService, Mockito.never())
+        .getTasksByTeamIdAndStatus(Mockito.anyLong(), Mockito.any());
+  }
+
   /**
    * Test for trying to fetch a Task, where there is no task in team
    */
@@ -844,8 +920,8 @@ public class TeamControllerTest {
     task.setTitle("Test Task");
     task.setDescription("This is a test task.");
 
-    List<Task> tasks = new ArrayList<>();
-    tasks.add(task);
+    List<TaskGetDTO> tasks = new ArrayList<>();
+    tasks.add(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task));
 
     Mockito
         .when(authorizationService.isAuthorizedAndBelongsToTeam(
@@ -934,6 +1010,88 @@ public class TeamControllerTest {
                 result.getResolvedException().getMessage().contains("Invalid task status.")));
   }
 
+  /*
+   * Test for fetching a page of tasks filtered by status and sorted by title
+   */
+  @Test
+  public void getTasksPage_validInput_returnPage() throws Exception {
+    // given
+    Task task = new Task();
+    task.setTaskId(1L);
+    task.setTitle("Test Task");
+    task.setDescription("This is a test task.");
+
+    TaskPageGetDTO taskPage = new TaskPageGetDTO();
+    taskPage.setTasks(List.of(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task)));
+    taskPage.setNextCursor("next");
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskService.getTaskPage(1L, List.of(TaskStatus.TODO, TaskStatus.DONE), TaskSort.TITLE,
+              20, "cursor"))
+        .willReturn(taskPage);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks?limit=20&cursor=cursor&sort=title&status=TODO&status=DONE")
+            .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.tasks", hasSize(1)))
+        .andExpect(jsonPath("$.tasks[0].taskId", is(task.getTaskId().intValue())))
+        .andExpect(jsonPath("$.nextCursor", is("next")));
+  }
+
+  /*
+   * Test for fetching a page of tasks without sort and status -> newest first, all statuses
+   */
+  @Test
+  public void getTasksPage_defaults_newestFirst() throws Exception {
+    // given
+    TaskPageGetDTO taskPage = new TaskPageGetDTO();
+    taskPage.setTasks(new ArrayList<>());
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskService.getTaskPage(1L, null, TaskSort.CREATION_DATE, 20, null)).willReturn(taskPage);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks?limit=20").header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.tasks", hasSize(0)))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+  }
+
+  /*
+   * Test for fetching a page of tasks with an unknown sort -> 400 without loading the tasks
+   */
+  @Test
+  public void getTasksPage_invalidSort_badRequest() throws Exception {
+    // given
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/tasks?limit=20&sort=priority").header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest).andExpect(status().isBadRequest());
+    Mockito.verifyNoInteractions(taskService);
+  }
+
   /* test if team not found */
   @Test
   public void getTasks_somethingNotFound_throwsError() throws Exception {
@@ -955,6 +1113,89 @@ public class TeamControllerTest {
 
   // endregion
 
+  // region archived tasks
+
+  /*
+   * Test for fetching the archived tasks of a team
+   */
+  @Test
+  public void getArchivedTasks_validInput_returnTasks() throws Exception {
+    // given
+    Task task = new Task();
+    task.setTaskId(1L);
+    task.setTitle("Test Task");
+    task.setStatus(TaskStatus.DELETED);
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskArchiveService.getArchivedTasks(1L))
+        .willReturn(List.of(DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task)));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/teams/1/archived-tasks").header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(getRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(1)))
+        .andExpect(jsonPath("$[0].taskId", is(task.getTaskId().intValue())))
+        .andExpect(jsonPath("$[0].status", is("DELETED")));
+  }
+
+  /*
+   * Test for restoring an archived task
+   */
+  @Test
+  public void restoreTask_validInput_taskRestored() throws Exception {
+    // given
+    Task task = new Task();
+    task.setTaskId(1L);
+    task.setTitle("Test Task");
+    task.setStatus(TaskStatus.TODO);
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskArchiveService.restoreTask(1L, 1L)).willReturn(task);
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder postRequest =
+        post("/api/v1/teams/1/archived-tasks/1/restore").header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(postRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.taskId", is(task.getTaskId().intValue())))
+        .andExpect(jsonPath("$.status", is("TODO")));
+  }
+
+  /*
+   * Test for restoring a task that is not archived
+   */
+  @Test
+  public void restoreTask_notArchived_notFound() throws Exception {
+    // given
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskArchiveService.restoreTask(1L, 2L))
+        .willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Archived task not found."));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder postRequest =
+        post("/api/v1/teams/1/archived-tasks/2/restore").header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(postRequest).andExpect(status().isNotFound());
+  }
+
+  // endregion
+
   // region TaskControllerTest for PUT
 
   // PUT
@@ -1073,5 +1314,80 @@ public class TeamControllerTest {
         .andExpect(result
             -> assertTrue(result.getResolvedException().getMessage().contains("Task not found.")));
   }
+
+  /**
+   * Test for updating several tasks at once
+   */
+  @Test
+  public void updateTasks_validInput_tasksUpdated() throws Exception {
+    // given
+    Task task1 = new Task();
+    task1.setTaskId(1L);
+    task1.setTitle("Task 1");
+    task1.setStatus(TaskStatus.DONE);
+    Task task2 = new Task();
+    task2.setTaskId(2L);
+    task2.setTitle("Task 2");
+    task2.setStatus(TaskStatus.DONE);
+
+    TaskPutDTO taskPutDTO1 = new TaskPutDTO();
+    taskPutDTO1.setTaskId(1L);
+    taskPutDTO1.setTitle("Task 1");
+    taskPutDTO1.setStatus(TaskStatus.DONE);
+    TaskPutDTO taskPutDTO2 = new TaskPutDTO();
+    taskPutDTO2.setTaskId(2L);
+    taskPutDTO2.setTitle("Task 2");
+    taskPutDTO2.setStatus(TaskStatus.DONE);
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskService.updateTasks(Mockito.anyList(), Mockito.eq(1L)))
+        .willReturn(List.of(task1, task2));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder putRequest =
+        put("/api/v1/teams/1/tasks")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(ControllerTestHelper.asJsonString(List.of(taskPutDTO1, taskPutDTO2)))
+            .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(putRequest)
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(2)))
+        .andExpect(jsonPath("$[0].taskId", is(1)))
+        .andExpect(jsonPath("$[1].status", is("DONE")));
+    Mockito.verify(taskService, Mockito.times(1)).updateTasks(Mockito.anyList(), Mockito.eq(1L));
+  }
+
+  /**
+   * Test for updating several tasks where one does not belong to the team
+   */
+  @Test
+  public void updateTasks_taskOfOtherTeam_notFound() throws Exception {
+    // given
+    TaskPutDTO taskPutDTO = new TaskPutDTO();
+    taskPutDTO.setTaskId(3L);
+    taskPutDTO.setTitle("Task 3");
+
+    Mockito
+        .when(authorizationService.isAuthorizedAndBelongsToTeam(
+            Mockito.anyString(), Mockito.anyLong()))
+        .thenReturn(testUser);
+    given(taskService.updateTasks(Mockito.anyList(), Mockito.eq(1L)))
+        .willThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found."));
+
+    // when/then -> do the request + validate the result
+    MockHttpServletRequestBuilder putRequest =
+        put("/api/v1/teams/1/tasks")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(ControllerTestHelper.asJsonString(List.of(taskPutDTO)))
+            .header("Authorization", "1234");
+
+    // then
+    mockMvc.perform(putRequest).andExpect(status().isNotFound());
+  }
   // endregion
 }
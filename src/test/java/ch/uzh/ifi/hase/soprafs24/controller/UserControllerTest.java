@@ -12,6 +12,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,6 +31,7 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -475,6 +477,37 @@ public class UserControllerTest {
         .andExpect(jsonPath("$[0].name", is(testTeam.getName())))
         .andExpect(jsonPath("$[0].description", is(testTeam.getDescription())));
   }
+
+  /**
+   * Test for getting the teams of a user with the current ETag -> 304 without loading the teams
+   */
+  @Test
+  public void getTeamsByUser_sameETag_notModified() throws Exception {
+    // given test user
+    User testUser = new User();
+    testUser.setUserId(1L);
+    testUser.setToken("1");
+
+    // when -> is auth check -> is valid
+    given(authorizationService.isExistingAndAuthorized(Mockito.anyString(), Mockito.anyLong()))
+        .willReturn(testUser);
+
+    // when -> current ETag of the teams of the user
+    given(teamUserService.getTeamsOfUserETag(Mockito.anyLong())).willReturn("user-1-teams-abc");
+
+    // when -> perform get request with the current ETag
+    MockHttpServletRequestBuilder getRequest =
+        get("/api/v1/users/" + testUser.getUserId().toString() + "/teams")
+            .contentType(MediaType.APPLICATION_JSON)
+            .header("Authorization", testUser.getToken())
+            .header(HttpHeaders.IF_NONE_MATCH, "\"user-1-teams-abc\"");
+
+    // then -> not modified and the teams are not loaded
+    mockMvc.perform(getRequest)
+        .andExpect(status().isNotModified())
+        .andExpect(header().string(HttpHeaders.ETAG, "\"user-1-teams-abc\""));
+    verify(teamUserService, Mockito.never()).getTeamsOfUser(Mockito.anyLong());
+  }
   // endregion
 
   // region userAcceptsTeamInvitation
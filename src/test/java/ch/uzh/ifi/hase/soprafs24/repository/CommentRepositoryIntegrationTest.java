@@ -1,13 +1,16 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
 import java.time.LocalDateTime;
 import java.util.List;
 import org.junit.jupiter.api.AfterEach;
@@ -18,6 +21,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -156,4 +161,84 @@ public class CommentRepositoryIntegrationTest {
     assertEquals(comments.get(0).getText(), comment.getText());
     assertEquals(comments.get(0).getTask(), task);
   }
+
+  @Test
+  public void countByTaskIds_success() {
+    // given two comments on the task and a task without comments
+    for (String text : List.of("first comment", "second comment")) {
+      Comment comment = new Comment();
+      comment.setText(text);
+      comment.setTask(task);
+      comment.setUser(user);
+      comment.setCreationDate(LocalDateTime.now());
+      entityManager.persist(comment);
+    }
+
+    Task otherTask = new Task();
+    otherTask.setTitle("Other Task");
+    otherTask.setDescription("Task Description");
+    otherTask.setStatus(TaskStatus.TODO);
+    otherTask.setTeam(team);
+    entityManager.persist(otherTask);
+    entityManager.flush();
+
+    // when
+    List<Object[]> counts =
+        commentRepository.countByTaskIds(List.of(task.getTaskId(), otherTask.getTaskId()));
+
+    // then only the task with comments is counted
+    assertEquals(1, counts.size());
+    assertEquals(task.getTaskId(), counts.get(0)[0]);
+    assertEquals(2L, ((Number) counts.get(0)[1]).longValue());
+  }
+
+  @Test
+  public void findPageByTaskId_keysetPagination_success() {
+    // given three comments, two of them with the same creation date
+    LocalDateTime now = LocalDateTime.now().withNano(0);
+    Comment oldest = persistComment("oldest", now.minusMinutes(1));
+    Comment middle = persistComment("middle", now);
+    Comment newest = persistComment("newest", now);
+    entityManager.flush();
+
+    // when -> first page
+    Slice<CommentGetDTO> first = commentRepository.findPageByTaskId(
+        task.getTaskId(), PageRequest.of(0, 2));
+
+    // then -> newest first, the comment id breaks the tie of the creation date
+    assertEquals(2, first.getNumberOfElements());
+    assertTrue(first.hasNext());
+    assertEquals(newest.getCommentId(), first.getContent().get(0).getCommentId());
+    assertEquals(middle.getCommentId(), first.getContent().get(1).getCommentId());
+    assertEquals(user.getUserId(), first.getContent().get(0).getAuthorId());
+    assertEquals(user.getUsername(), first.getContent().get(0).getAuthorName());
+
+    // when -> next page after the last comment of the first page
+    Slice<CommentGetDTO> next = commentRepository.findPageByTaskIdBefore(
+        task.getTaskId(), now, middle.getCommentId(), PageRequest.of(0, 2));
+
+    // then
+    assertEquals(1, next.getNumberOfElements());
+    assertFalse(next.hasNext());
+    assertEquals(oldest.getCommentId(), next.getContent().get(0).getCommentId());
+
+    // when -> comments since the oldest comment (oldest first)
+    Slice<CommentGetDTO> since = commentRepository.findPageByTaskIdAfter(
+        task.getTaskId(), now.minusMinutes(1), oldest.getCommentId(), PageRequest.of(0, 10));
+
+    // then
+    assertEquals(2, since.getNumberOfElements());
+    assertEquals(middle.getCommentId(), since.getContent().get(0).getCommentId());
+    assertEquals(newest.getCommentId(), since.getContent().get(1).getCommentId());
+  }
+
+  private Comment persistComment(String text, LocalDateTime creationDate) {
+    Comment comment = new Comment();
+    comment.setText(text);
+    comment.setTask(task);
+    comment.setUser(user);
+    comment.setCreationDate(creationDate);
+    entityManager.persist(comment);
+    return comment;
+  }
 }
@@ -13,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -152,4 +154,137 @@ public class SessionRepositoryIntegrationTest {
     assertEquals(session.getSessionId(), found.get(1).getSessionId());
     assertEquals(session2.getSessionId(), found.get(0).getSessionId());
   }
+
+  @Test
+  public void findActiveSessionByTeam_activeSession_success() {
+    // given
+    Team team = createTeam();
+
+    // given ended session
+    Session endedSession = new Session();
+    endedSession.setTeam(team);
+    endedSession.setStartDateTime(LocalDateTime.now().minusHours(2));
+    endedSession.setEndDateTime(LocalDateTime.now().minusHours(1));
+    endedSession.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(endedSession);
+
+    // given active session
+    Session activeSession = new Session();
+    activeSession.setTeam(team);
+    activeSession.setStartDateTime(LocalDateTime.now());
+    activeSession.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(activeSession);
+    entityManager.flush();
+
+    // when
+    Optional<Session> found =
+        sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(team);
+
+    // then
+    assertTrue(found.isPresent());
+    assertEquals(activeSession.getSessionId(), found.get().getSessionId());
+  }
+
+  @Test
+  public void findActiveSessionByTeam_onlyEndedSessions_empty() {
+    // given
+    Team team = createTeam();
+
+    // given ended session
+    Session endedSession = new Session();
+    endedSession.setTeam(team);
+    endedSession.setStartDateTime(LocalDateTime.now().minusHours(2));
+    endedSession.setEndDateTime(LocalDateTime.now().minusHours(1));
+    endedSession.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(endedSession);
+    entityManager.flush();
+
+    // when
+    Optional<Session> found =
+        sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(team);
+
+    // then
+    assertTrue(found.isEmpty());
+  }
+
+  @Test
+  public void findByTeamKeyset_pagesInOrder_success() {
+    // given
+    Team team = createTeam();
+
+    // given three sessions, two with the same start date (tie broken by the id)
+    LocalDateTime start = LocalDateTime.now().withNano(0);
+    Session oldest = new Session();
+    oldest.setTeam(team);
+    oldest.setStartDateTime(start.minusHours(1));
+    oldest.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(oldest);
+
+    Session first = new Session();
+    first.setTeam(team);
+    first.setStartDateTime(start);
+    first.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(first);
+
+    Session second = new Session();
+    second.setTeam(team);
+    second.setStartDateTime(start);
+    second.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(second);
+    entityManager.flush();
+
+    // when -> first page
+    Slice<Session> firstPage = sessionRepository.findByTeamOrderByStartDateTimeDescSessionIdDesc(
+        team, PageRequest.of(0, 2));
+
+    // then -> most recent first, higher id first
+    assertEquals(2, firstPage.getNumberOfElements());
+    assertTrue(firstPage.hasNext());
+    assertEquals(second.getSessionId(), firstPage.getContent().get(0).getSessionId());
+    assertEquals(first.getSessionId(), firstPage.getContent().get(1).getSessionId());
+
+    // when -> next page after the last session of the first page
+    Session last = firstPage.getContent().get(1);
+    Slice<Session> nextPage = sessionRepository.findByTeamAfterCursor(
+        team, last.getStartDateTime(), last.getSessionId(), PageRequest.of(0, 2));
+
+    // then
+    assertEquals(1, nextPage.getNumberOfElements());
+    assertFalse(nextPage.hasNext());
+    assertEquals(oldest.getSessionId(), nextPage.getContent().get(0).getSessionId());
+  }
+
+  @Test
+  public void endSessionsStartedBefore_onlyExpiredSessionsEnded() {
+    // given
+    Team team = createTeam();
+    LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(25);
+
+    // given expired session (started more than 24 hours ago)
+    Session expiredSession = new Session();
+    expiredSession.setTeam(team);
+    expiredSession.setStartDateTime(start);
+    expiredSession.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(expiredSession);
+
+    // given active session
+    Session activeSession = new Session();
+    activeSession.setTeam(team);
+    activeSession.setStartDateTime(LocalDateTime.now());
+    activeSession.setGoalMinutes(mockGoalMinutes);
+    entityManager.persist(activeSession);
+    entityManager.flush();
+
+    // when
+    List<Number> teamIds =
+        sessionRepository.endSessionsStartedBefore(LocalDateTime.now().minusHours(24));
+    entityManager.clear();
+
+    // then -> only the expired session was ended, 24 hours after its start
+    assertEquals(1, teamIds.size());
+    assertEquals(team.getTeamId(), teamIds.get(0).longValue());
+    assertEquals(start.plusHours(24),
+        sessionRepository.findById(expiredSession.getSessionId()).get().getEndDateTime());
+    assertNull(sessionRepository.findById(activeSession.getSessionId()).get().getEndDateTime());
+  }
 }
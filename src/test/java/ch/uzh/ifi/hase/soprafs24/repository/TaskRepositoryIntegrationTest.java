@@ -1,13 +1,17 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -16,6 +20,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
@@ -99,7 +105,7 @@ public class TaskRepositoryIntegrationTest {
 
   /* test to get a list of tasks where status is not DELETED */
   @Test
-  public void findByTeamAndStatusNot_success() {
+  public void findTaskGetDTOsByTeamIdAndStatusNot_deletedExcluded() {
     // given
     Task task = new Task();
     task.setTitle("Task Title");
@@ -119,7 +125,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found = taskRepository.findByTeamAndStatusNot(team, TaskStatus.DELETED);
+    List<TaskGetDTO> found =
+        taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(team.getTeamId(), TaskStatus.DELETED);
 
     // then
     assertEquals(1, found.size());
@@ -127,12 +134,11 @@ public class TaskRepositoryIntegrationTest {
     assertEquals(found.get(0).getTitle(), task.getTitle());
     assertEquals(found.get(0).getDescription(), task.getDescription());
     assertEquals(found.get(0).getStatus(), task.getStatus());
-    assertEquals(found.get(0).getTeam(), task.getTeam());
     assertNotNull(found.get(0).getCreationDate());
   }
 
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_success() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_sameStatus() {
     // given
     Task task = new Task();
     task.setTitle("Task Title");
@@ -151,8 +157,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found =
-        taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, List.of(TaskStatus.TODO));
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO));
 
     // then
     assertEquals(2, found.size());
@@ -160,22 +166,20 @@ public class TaskRepositoryIntegrationTest {
     assertEquals(found.get(0).getTitle(), task.getTitle());
     assertEquals(found.get(0).getDescription(), task.getDescription());
     assertEquals(found.get(0).getStatus(), task.getStatus());
-    assertEquals(found.get(0).getTeam(), task.getTeam());
     assertNotNull(found.get(0).getCreationDate());
 
     assertNotNull(found.get(1).getTaskId());
     assertEquals(found.get(1).getTitle(), task2.getTitle());
     assertEquals(found.get(1).getDescription(), task2.getDescription());
     assertEquals(found.get(1).getStatus(), task2.getStatus());
-    assertEquals(found.get(1).getTeam(), task2.getTeam());
     assertNotNull(found.get(1).getCreationDate());
   }
 
   /*
-   * empty list as parameter for findByTeamAndStatusOrderByTitleAsc
+   * empty list as parameter for findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc
    */
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_emptyList() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_emptyList() {
     // given
     Task task = new Task();
     task.setTitle("Task Title");
@@ -194,7 +198,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found = taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, List.of());
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of());
 
     // then
     assertEquals(0, found.size());
@@ -204,7 +209,7 @@ public class TaskRepositoryIntegrationTest {
    * Test for if my team has no todo tasks
    */
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_noTodoTasks() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_noTodoTasks() {
     // given
     Task task = new Task();
     task.setTitle("Task Title");
@@ -223,8 +228,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found =
-        taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, List.of(TaskStatus.TODO));
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO));
 
     // then
     assertEquals(0, found.size());
@@ -234,10 +239,10 @@ public class TaskRepositoryIntegrationTest {
    * Test for if my team has no tasks
    */
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_noTasks() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_noTasks() {
     // when
-    List<Task> found =
-        taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, List.of(TaskStatus.TODO));
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO));
 
     // then
     assertEquals(0, found.size());
@@ -247,7 +252,7 @@ public class TaskRepositoryIntegrationTest {
    * Test for if my team has multiple tasks with different statuses
    */
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_multipleTasks() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_multipleTasks() {
     // given
     Task task = new Task();
     task.setTitle("Task Title");
@@ -274,8 +279,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found = taskRepository.findByTeamAndStatusInOrderByTitleAsc(
-        team, List.of(TaskStatus.TODO, TaskStatus.IN_SESSION));
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO, TaskStatus.IN_SESSION));
 
     // then
     assertEquals(2, found.size());
@@ -289,7 +294,7 @@ public class TaskRepositoryIntegrationTest {
 
   /* test for case-insensitive ordering */
   @Test
-  public void findByTeamAndStatusOrderByTitleAsc_caseInsensitive() {
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_caseInsensitive() {
     // given
     Task task = new Task();
     task.setTitle("a task");
@@ -316,8 +321,8 @@ public class TaskRepositoryIntegrationTest {
     entityManager.flush();
 
     // when
-    List<Task> found =
-        taskRepository.findByTeamAndStatusInOrderByTitleAsc(team, List.of(TaskStatus.TODO));
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO));
 
     // then
     assertEquals(3, found.size());
@@ -325,4 +330,199 @@ public class TaskRepositoryIntegrationTest {
     assertEquals(found.get(1).getTitle(), task2.getTitle());
     assertEquals(found.get(2).getTitle(), task3.getTitle());
   }
+
+  /* the listing queries read the DTOs directly, without loading the tasks or the team */
+  @Test
+  public void findTaskGetDTOsByTeamIdAndStatusNot_noEntitiesLoaded() {
+    // given
+    Task task = new Task();
+    task.setTitle("Task Title");
+    task.setDescription("Task Description");
+    task.setStatus(TaskStatus.TODO);
+    task.setTeam(team);
+    entityManager.persist(task);
+
+    Task task2 = new Task();
+    task2.setTitle("Task Title 2");
+    task2.setDescription("Task Description 2");
+    task2.setStatus(TaskStatus.DELETED);
+    task2.setTeam(team);
+    entityManager.persist(task2);
+    entityManager.flush();
+    entityManager.clear();
+
+    // when
+    List<TaskGetDTO> found =
+        taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(team.getTeamId(), TaskStatus.DELETED);
+
+    // then
+    assertEquals(1, found.size());
+    assertEquals(task.getTaskId(), found.get(0).getTaskId());
+    assertEquals(task.getTitle(), found.get(0).getTitle());
+    assertEquals(task.getDescription(), found.get(0).getDescription());
+    assertEquals(task.getStatus(), found.get(0).getStatus());
+    assertNotNull(found.get(0).getCreationDate());
+
+    // no task or team is in the persistence context
+    org.hibernate.Session session =
+        entityManager.getEntityManager().unwrap(org.hibernate.Session.class);
+    assertEquals(0, session.getStatistics().getEntityCount());
+  }
+
+  @Test
+  public void findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc_success() {
+    // given
+    Task task = new Task();
+    task.setTitle("b task");
+    task.setDescription("Task Description");
+    task.setStatus(TaskStatus.TODO);
+    task.setTeam(team);
+    entityManager.persist(task);
+
+    Task task2 = new Task();
+    task2.setTitle("A task");
+    task2.setDescription("Task Description 2");
+    task2.setStatus(TaskStatus.IN_SESSION);
+    task2.setTeam(team);
+    entityManager.persist(task2);
+
+    Task task3 = new Task();
+    task3.setTitle("C task");
+    task3.setDescription("Task Description 3");
+    task3.setStatus(TaskStatus.DONE);
+    task3.setTeam(team);
+    entityManager.persist(task3);
+    entityManager.flush();
+
+    // when
+    List<TaskGetDTO> found = taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+        team.getTeamId(), List.of(TaskStatus.TODO, TaskStatus.IN_SESSION));
+
+    // then -> case-insensitive order by title
+    assertEquals(2, found.size());
+    assertEquals(task2.getTaskId(), found.get(0).getTaskId());
+    assertEquals(task.getTaskId(), found.get(1).getTaskId());
+  }
+
+  // region paged task listing
+  private static final List<TaskStatus> NOT_DELETED =
+      List.of(TaskStatus.TODO, TaskStatus.IN_SESSION, TaskStatus.IN_SESSION_DONE, TaskStatus.DONE);
+
+  private Task persistTask(String title, TaskStatus status) {
+    Task task = new Task();
+    task.setTitle(title);
+    task.setDescription("Task Description");
+    task.setStatus(status);
+    task.setTeam(team);
+    entityManager.persist(task);
+    return task;
+  }
+
+  private Slice<TaskGetDTO> nextTitlePage(TaskGetDTO last) {
+    return taskRepository.findPageOrderByTitleAfter(
+        team.getTeamId(), NOT_DELETED, last.getTitle(), last.getTaskId(), PageRequest.of(0, 2));
+  }
+
+  @Test
+  public void findPageOrderByTitle_pagedWithCursor() {
+    // given
+    Task taskB = persistTask("b task", TaskStatus.TODO);
+    Task taskA = persistTask("A task", TaskStatus.DONE);
+    Task taskD = persistTask("d task", TaskStatus.IN_SESSION);
+    Task taskC = persistTask("C task", TaskStatus.TODO);
+    persistTask("a deleted task", TaskStatus.DELETED);
+    entityManager.flush();
+
+    // when
+    Slice<TaskGetDTO> first =
+        taskRepository.findPageOrderByTitle(team.getTeamId(), NOT_DELETED, PageRequest.of(0, 2));
+    Slice<TaskGetDTO> second = nextTitlePage(first.getContent().get(1));
+
+    // then -> case-insensitive order by title, deleted task filtered
+    assertTrue(first.hasNext());
+    assertEquals(taskA.getTaskId(), first.getContent().get(0).getTaskId());
+    assertEquals(taskB.getTaskId(), first.getContent().get(1).getTaskId());
+    assertFalse(second.hasNext());
+    assertEquals(2, second.getNumberOfElements());
+    assertEquals(taskC.getTaskId(), second.getContent().get(0).getTaskId());
+    assertEquals(taskD.getTaskId(), second.getContent().get(1).getTaskId());
+  }
+
+  @Test
+  public void findPageOrderByStatus_pagedWithCursor() {
+    // given
+    Task taskB = persistTask("b task", TaskStatus.TODO);
+    Task taskA = persistTask("A task", TaskStatus.TODO);
+    Task taskC = persistTask("c task", TaskStatus.DONE);
+    Task taskD = persistTask("d task", TaskStatus.IN_SESSION);
+    entityManager.flush();
+
+    // when
+    Slice<TaskGetDTO> first =
+        taskRepository.findPageOrderByStatus(team.getTeamId(), NOT_DELETED, PageRequest.of(0, 2));
+    TaskGetDTO last = first.getContent().get(1);
+    Slice<TaskGetDTO> second = taskRepository.findPageOrderByStatusAfter(team.getTeamId(),
+        NOT_DELETED, last.getStatus(), last.getTitle(), last.getTaskId(), PageRequest.of(0, 2));
+
+    // then -> order of the statuses, then by title
+    assertEquals(taskA.getTaskId(), first.getContent().get(0).getTaskId());
+    assertEquals(taskB.getTaskId(), first.getContent().get(1).getTaskId());
+    assertEquals(taskD.getTaskId(), second.getContent().get(0).getTaskId());
+    assertEquals(taskC.getTaskId(), second.getContent().get(1).getTaskId());
+    assertFalse(second.hasNext());
+  }
+
+  @Test
+  public void findPageOrderByCreationDate_pagedWithCursor_newestFirst() {
+    // given
+    Task task1 = persistTask("task 1", TaskStatus.TODO);
+    Task task2 = persistTask("task 2", TaskStatus.TODO);
+    Task task3 = persistTask("task 3", TaskStatus.DONE);
+    entityManager.flush();
+
+    // when -> page through with one task per page
+    Slice<TaskGetDTO> page = taskRepository.findPageOrderByCreationDate(
+        team.getTeamId(), NOT_DELETED, PageRequest.of(0, 1));
+    List<Long> taskIds = new ArrayList<>();
+    taskIds.add(page.getContent().get(0).getTaskId());
+    while (page.hasNext()) {
+      TaskGetDTO last = page.getContent().get(0);
+      page = taskRepository.findPageOrderByCreationDateAfter(team.getTeamId(), NOT_DELETED,
+          last.getListingCreationDate(), last.getTaskId(), PageRequest.of(0, 1));
+      taskIds.add(page.getContent().get(0).getTaskId());
+    }
+
+    // then -> every task exactly once, newest first
+    assertEquals(List.of(task3.getTaskId(), task2.getTaskId(), task1.getTaskId()), taskIds);
+  }
+
+  @Test
+  public void findByTeamIdAndTaskIdIn_onlyTasksOfTeam() {
+    // given
+    Team otherTeam = new Team();
+    otherTeam.setName("Other Team");
+    otherTeam.setDescription("Team Description");
+    otherTeam.setTeamUUID("other-team-uuid");
+    entityManager.persist(otherTeam);
+
+    Task task = persistTask("Task Title", TaskStatus.TODO);
+    Task otherTask = new Task();
+    otherTask.setTitle("Other Task");
+    otherTask.setDescription("Task Description");
+    otherTask.setStatus(TaskStatus.TODO);
+    otherTask.setTeam(otherTeam);
+    entityManager.persist(otherTask);
+    entityManager.flush();
+    entityManager.clear();
+
+    // when
+    List<Task> found = taskRepository.findByTeamIdAndTaskIdIn(
+        team.getTeamId(), List.of(task.getTaskId(), otherTask.getTaskId()));
+
+    // then -> the task of the other team is not found, the team is fetched with the task
+    assertEquals(1, found.size());
+    assertEquals(task.getTaskId(), found.get(0).getTaskId());
+    assertEquals(team.getTeamId(), found.get(0).getTeam().getTeamId());
+  }
+  // endregion
 }
@@ -2,6 +2,7 @@ package ch.uzh.ifi.hase.soprafs24.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import java.util.Optional;
@@ -38,4 +39,48 @@ public class TeamRepositoryIntegrationTest {
     assertEquals(found.get().getDescription(), team.getDescription());
     assertEquals(found.get().getTeamUUID(), team.getTeamUUID());
   }
+
+  @Test
+  public void incrementRevision_returnsNewRevision() {
+    // given
+    Team team = new Team();
+    team.setName("Team Name");
+    team.setDescription("Team Description");
+    team.setTeamUUID("team-uuid");
+
+    entityManager.persist(team);
+    entityManager.flush();
+
+    // when -> a new team starts at revision 0
+    Number first = teamRepository.incrementRevision(team.getTeamId());
+    Number second = teamRepository.incrementRevision(team.getTeamId());
+
+    // then
+    assertEquals(1L, first.longValue());
+    assertEquals(2L, second.longValue());
+  }
+
+  @Test
+  public void incrementRevision_teamNotFound_returnsNull() {
+    assertNull(teamRepository.incrementRevision(-1L));
+  }
+
+  @Test
+  public void findRevisionByTeamId_newTeam_zero() {
+    // given
+    Team team = new Team();
+    team.setName("Team Name");
+    team.setDescription("Team Description");
+    team.setTeamUUID("team-uuid");
+
+    entityManager.persist(team);
+    entityManager.flush();
+
+    // when -> revision is incremented
+    teamRepository.incrementRevision(team.getTeamId());
+
+    // then
+    assertEquals(1L, teamRepository.findRevisionByTeamId(team.getTeamId()));
+    assertNull(teamRepository.findRevisionByTeamId(-1L));
+  }
 }
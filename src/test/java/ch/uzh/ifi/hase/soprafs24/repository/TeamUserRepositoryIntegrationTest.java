@@ -1,10 +1,13 @@
 package ch.uzh.ifi.hase.soprafs24.repository;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.TeamUser;
+import ch.uzh.ifi.hase.soprafs24.entity.TeamUserId;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
@@ -187,4 +190,16 @@ public class TeamUserRepositoryIntegrationTest {
     assertEquals(team.getTeamId(), found.getTeam().getTeamId());
   }
   // endregion
+
+  @Test
+  public void whenExistsByTeamUserId_thenReturnTrue() {
+    assertTrue(teamUserRepository.existsByTeamUserId(
+        new TeamUserId(team.getTeamId(), user.getUserId())));
+  }
+
+  @Test
+  public void whenExistsByTeamUserId_notInTeam_thenReturnFalse() {
+    assertFalse(teamUserRepository.existsByTeamUserId(
+        new TeamUserId(team.getTeamId(), user.getUserId() + 1)));
+  }
 }
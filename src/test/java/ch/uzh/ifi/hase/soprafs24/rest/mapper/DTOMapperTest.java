@@ -175,6 +175,7 @@ public class DTOMapperTest {
     task.setTitle("write book");
     task.setDescription("A productive task");
     task.setStatus(TaskStatus.TODO);
+    task.setVersion(4L);
 
     // MAP -> Create TaskGetDTO
     TaskGetDTO taskGetDTO = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(task);
@@ -184,6 +185,7 @@ public class DTOMapperTest {
     assertEquals(task.getTitle(), taskGetDTO.getTitle());
     assertEquals(task.getDescription(), taskGetDTO.getDescription());
     assertEquals(task.getStatus(), taskGetDTO.getStatus()); // compare enums directly
+    assertEquals(task.getVersion(), taskGetDTO.getVersion());
   }
 
   @Test
@@ -194,6 +196,7 @@ public class DTOMapperTest {
     taskPutDTO.setTitle("new title");
     taskPutDTO.setDescription("new description");
     taskPutDTO.setStatus(TaskStatus.IN_SESSION);
+    taskPutDTO.setVersion(4L);
 
     // MAP -> Create Task
     Task task = DTOMapper.INSTANCE.convertTaskPutDTOtoEntity(taskPutDTO);
@@ -203,6 +206,7 @@ public class DTOMapperTest {
     assertEquals(taskPutDTO.getTitle(), task.getTitle());
     assertEquals(taskPutDTO.getDescription(), task.getDescription());
     assertEquals(taskPutDTO.getStatus(), task.getStatus());
+    assertEquals(taskPutDTO.getVersion(), task.getVersion());
   }
 
   // endregion
@@ -6,16 +6,24 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 public class AIServiceTest {
+  private static final String AI_RESPONSE = "{\"choices\": [{\"text\": \"test description\"}]}";
+
   @Mock private WebClient webClient;
   @Mock private WebClient.Builder webClientBuilder;
   @Mock private WebClient.RequestHeadersSpec requestHeadersSpec;
@@ -41,7 +49,8 @@ public class AIServiceTest {
     when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just("test response"));
     when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
 
-    aiService = new AIService(webClientBuilder, objectMapper); // Manually initializing AIService
+    // Manually initializing AIService (20 seconds timeout, 8 concurrent requests)
+    aiService = new AIService(webClientBuilder, objectMapper, 20, 8);
   }
 
   // Test the generateDescription method with valid input
@@ -57,15 +66,14 @@ public class AIServiceTest {
     when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
     when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(aiResponse));
     when(responseSpec.onStatus(any(), any())).thenReturn(responseSpec);
-    Optional<String> description = aiService.generateDescription(prompt);
+    String description = aiService.generateDescription(prompt).block();
     verify(webClient, times(1)).post();
     verify(requestBodyUriSpec, times(1)).uri(anyString());
     verify(requestBodySpec, times(2)).header(anyString(), anyString());
     verify(requestBodySpec, times(1)).body(any());
     verify(requestHeadersSpec, times(1)).retrieve();
     verify(responseSpec, times(1)).bodyToMono(String.class);
-    assertTrue(description.isPresent());
-    assertEquals(expectedDescription, description.get());
+    assertEquals(expectedDescription, description);
   }
 
   // Test the generateDescription method when the API throws an exception
@@ -79,7 +87,8 @@ public class AIServiceTest {
     when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
     when(responseSpec.bodyToMono(String.class))
         .thenReturn(Mono.error(new Exception("AI Service failed")));
-    assertThrows(ResponseStatusException.class, () -> aiService.generateDescription(prompt));
+    assertThrows(
+        ResponseStatusException.class, () -> aiService.generateDescription(prompt).block());
   }
 
   // Test the generateDescription method with an invalid response
@@ -93,6 +102,239 @@ public class AIServiceTest {
     when(requestBodySpec.body(any())).thenReturn(requestHeadersSpec);
     when(requestHeadersSpec.retrieve()).thenReturn(responseSpec);
     when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(aiResponse));
-    assertThrows(ResponseStatusException.class, () -> aiService.generateDescription(prompt));
+    assertThrows(
+        ResponseStatusException.class, () -> aiService.generateDescription(prompt).block());
+  }
+
+  // Test that nothing is sent to the AI service before the result is subscribed
+  @Test
+  public void generateDescription_notSubscribed_noRequest() {
+    aiService.generateDescription("test prompt");
+
+    verify(webClient, never()).post();
+  }
+
+  // Test the generateDescription method when the AI service does not answer in time
+  @Test
+  public void generateDescription_slowApi_gatewayTimeout() {
+    aiService = new AIService(webClientBuilder, objectMapper, 1, 8);
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.never());
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> aiService.generateDescription("test prompt").block());
+    assertEquals(HttpStatus.GATEWAY_TIMEOUT, exception.getStatus());
+  }
+
+  // Test that requests over the limit are rejected and the permit is released afterwards
+  @Test
+  public void generateDescription_tooManyRequests_serviceUnavailable() {
+    aiService = new AIService(webClientBuilder, objectMapper, 20, 1);
+    Sinks.One<String> pendingResponse = Sinks.one();
+    when(responseSpec.bodyToMono(String.class)).thenReturn(pendingResponse.asMono());
+
+    // given one request that waits for the AI service
+    aiService.generateDescription("first prompt").subscribe();
+
+    // when another request is made -> rejected
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> aiService.generateDescription("second prompt").block());
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exception.getStatus());
+
+    // when the pending request is answered -> permit released
+    pendingResponse.tryEmitValue(AI_RESPONSE);
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(AI_RESPONSE));
+    assertEquals("test description", aiService.generateDescription("third prompt").block());
+  }
+
+  // Test that an answer is cached by the normalized prompt
+  @Test
+  public void generateDescription_samePrompt_cachedAnswer() {
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(AI_RESPONSE));
+
+    String description = aiService.generateDescription("team  The Warriors").block();
+    String cachedDescription = aiService.generateDescription(" team The Warriors ").block();
+
+    assertEquals("test description", description);
+    assertEquals("test description", cachedDescription);
+    verify(webClient, times(1)).post();
+  }
+
+  // Test that a failed request is not cached
+  @Test
+  public void generateDescription_failedRequest_notCached() {
+    when(responseSpec.bodyToMono(String.class))
+        .thenReturn(Mono.error(new Exception("AI Service failed")), Mono.just(AI_RESPONSE));
+
+    assertThrows(ResponseStatusException.class,
+        () -> aiService.generateDescription("test prompt").block());
+
+    assertEquals("test description", aiService.generateDescription("test prompt").block());
+    verify(webClient, times(2)).post();
+  }
+
+  // Test that concurrent requests of the same prompt share one request to the AI service
+  @Test
+  public void generateDescription_concurrentSamePrompt_oneRequest() throws Exception {
+    Sinks.One<String> pendingResponse = Sinks.one();
+    when(responseSpec.bodyToMono(String.class)).thenReturn(pendingResponse.asMono());
+
+    // given two requests of the same prompt that wait for the answer
+    CompletableFuture<String> first = aiService.generateDescription("test prompt").toFuture();
+    CompletableFuture<String> second = aiService.generateDescription("test prompt").toFuture();
+    assertFalse(first.isDone());
+
+    // when the AI service answers
+    pendingResponse.tryEmitValue(AI_RESPONSE);
+
+    // then both got the answer of the same request
+    assertEquals("test description", first.get(1, TimeUnit.SECONDS));
+    assertEquals("test description", second.get(1, TimeUnit.SECONDS));
+    verify(webClient, times(1)).post();
+  }
+
+  // Test the streamDescription method, the pieces are passed on as they arrive
+  @Test
+  public void streamDescription_validInput_pieces() {
+    when(requestBodySpec.accept(any())).thenReturn(requestBodySpec);
+    doReturn(Flux.just(ServerSentEvent.builder("{\"choices\": [{\"text\": \"Team\"}]}").build(),
+                 ServerSentEvent.builder("{\"choices\": [{\"text\": \" spirit\"}]}").build(),
+                 ServerSentEvent.builder("[DONE]").build()))
+        .when(responseSpec)
+        .bodyToFlux(any(ParameterizedTypeReference.class));
+
+    List<String> pieces = aiService.streamDescription("test prompt").collectList().block();
+
+    assertEquals(List.of("Team", " spirit"), pieces);
+    verify(requestBodySpec, times(1)).accept(MediaType.TEXT_EVENT_STREAM);
+  }
+
+  // Test the streamDescription method with a cached answer, nothing is sent
+  @Test
+  public void streamDescription_cachedAnswer_onePiece() {
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(AI_RESPONSE));
+    aiService.generateDescription("test prompt").block();
+
+    List<String> pieces = aiService.streamDescription("test prompt").collectList().block();
+
+    assertEquals(List.of("test description"), pieces);
+    verify(webClient, times(1)).post();
+  }
+
+  // Test that a completed stream is cached as the whole description
+  @Test
+  public void streamDescription_completed_cachedAnswer() {
+    when(requestBodySpec.accept(any())).thenReturn(requestBodySpec);
+    doReturn(Flux.just(ServerSentEvent.builder("{\"choices\": [{\"text\": \" Team\"}]}").build(),
+                 ServerSentEvent.builder("{\"choices\": [{\"text\": \" spirit\"}]}").build(),
+                 ServerSentEvent.builder("[DONE]").build()))
+        .when(responseSpec)
+        .bodyToFlux(any(ParameterizedTypeReference.class));
+
+    aiService.streamDescription("test prompt").blockLast();
+
+    // the trimmed description, also for generateDescription()
+    assertEquals(List.of("Team spirit"),
+        aiService.streamDescription(" test prompt").collectList().block());
+    assertEquals("Team spirit", aiService.generateDescription("test prompt").block());
+    verify(webClient, times(1)).post();
+  }
+
+  // Test that concurrent streams of the same prompt share one stream of the AI service
+  @Test
+  public void streamDescription_concurrentSamePrompt_oneRequest() throws Exception {
+    Sinks.Many<ServerSentEvent<String>> pendingEvents = Sinks.many().replay().all();
+    when(requestBodySpec.accept(any())).thenReturn(requestBodySpec);
+    doReturn(pendingEvents.asFlux())
+        .when(responseSpec)
+        .bodyToFlux(any(ParameterizedTypeReference.class));
+
+    // given a stream that already got a piece and a second request of the same prompt
+    CompletableFuture<List<String>> first =
+        aiService.streamDescription("test prompt").collectList().toFuture();
+    pendingEvents.tryEmitNext(
+        ServerSentEvent.builder("{\"choices\": [{\"text\": \"Team\"}]}").build());
+    CompletableFuture<List<String>> second =
+        aiService.streamDescription("test prompt").collectList().toFuture();
+    assertFalse(second.isDone());
+
+    // when the AI service completes the stream
+    pendingEvents.tryEmitNext(ServerSentEvent.builder("[DONE]").build());
+
+    // then both got all pieces of the same stream
+    assertEquals(List.of("Team"), first.get(1, TimeUnit.SECONDS));
+    assertEquals(List.of("Team"), second.get(1, TimeUnit.SECONDS));
+    verify(webClient, times(1)).post();
+  }
+
+  // Test that a failed stream is not cached
+  @Test
+  public void streamDescription_failedStream_notCached() {
+    when(requestBodySpec.accept(any())).thenReturn(requestBodySpec);
+    doReturn(Flux.error(new Exception("AI Service failed")),
+        Flux.just(ServerSentEvent.builder("{\"choices\": [{\"text\": \"Team\"}]}").build()))
+        .when(responseSpec)
+        .bodyToFlux(any(ParameterizedTypeReference.class));
+
+    assertThrows(ResponseStatusException.class,
+        () -> aiService.streamDescription("test prompt").blockLast());
+
+    assertEquals(List.of("Team"), aiService.streamDescription("test prompt").collectList().block());
+    verify(webClient, times(2)).post();
+  }
+
+  // Test the streamDescription method when the AI service stops sending
+  @Test
+  public void streamDescription_slowApi_gatewayTimeout() {
+    aiService = new AIService(webClientBuilder, objectMapper, 1, 8);
+    when(requestBodySpec.accept(any())).thenReturn(requestBodySpec);
+    doReturn(Flux.never()).when(responseSpec).bodyToFlux(any(ParameterizedTypeReference.class));
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> aiService.streamDescription("test prompt").blockLast());
+    assertEquals(HttpStatus.GATEWAY_TIMEOUT, exception.getStatus());
+  }
+
+  // Test that the prompt is escaped in the request body (e.g. quotes in a team name)
+  @Test
+  public void completionRequest_quotesInPrompt_escaped() throws Exception {
+    String prompt = "a team named \"The \\ Warriors\"";
+
+    String requestBody =
+        objectMapper.writeValueAsString(new AIService.CompletionRequest(prompt, false));
+
+    assertEquals("{\"model\":\"gpt-3.5-turbo-instruct\","
+            + "\"prompt\":\"a team named \\\"The \\\\ Warriors\\\"\",\"max_tokens\":50}",
+        requestBody);
+    assertEquals(prompt, objectMapper.readTree(requestBody).path("prompt").asText());
+  }
+
+  // Test that the stream flag is only sent in stream mode
+  @Test
+  public void completionRequest_streamMode_streamFlag() throws Exception {
+    String requestBody =
+        objectMapper.writeValueAsString(new AIService.CompletionRequest("x", true));
+
+    assertTrue(objectMapper.readTree(requestBody).path("stream").asBoolean());
+  }
+
+  // Test that only the text of the first choice is read, the other fields are skipped
+  @Test
+  public void generateDescription_responseWithOtherFields_firstChoiceText() {
+    String aiResponse = "{\"id\": \"cmpl-1\", \"usage\": {\"text\": \"usage\"},"
+        + " \"choices\": [{\"index\": 0, \"logprobs\": null, \"text\": \" first \"},"
+        + " {\"text\": \"second\"}]}";
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just(aiResponse));
+
+    assertEquals("first", aiService.generateDescription("test prompt").block());
+  }
+
+  // Test the generateDescription method with an empty list of choices
+  @Test
+  public void generateDescription_noChoices_throwsException() {
+    when(responseSpec.bodyToMono(String.class)).thenReturn(Mono.just("{\"choices\": []}"));
+
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> aiService.generateDescription("test prompt").block());
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
   }
 }
@@ -69,6 +69,62 @@ public class AgoraServiceTest {
     assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) exception).getStatus());
   }
 
+  @Test
+  public void testGetRtcToken_sameUserAndChannel_cachedToken() {
+    // given
+    Mockito
+        .when(rtcTokenBuilder2.buildTokenWithUserAccount(Mockito.any(), Mockito.any(),
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+        .thenReturn("testToken", "otherToken");
+
+    // when -> same user and channel twice
+    String token = agoraService.getRtcToken(userId, channelName);
+    String cachedToken = agoraService.getRtcToken(userId, channelName);
+
+    // then -> token is only built once
+    assertEquals("testToken", token);
+    assertEquals("testToken", cachedToken);
+    Mockito.verify(rtcTokenBuilder2, Mockito.times(1))
+        .buildTokenWithUserAccount(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(),
+            Mockito.any(), Mockito.anyInt(), Mockito.anyInt());
+  }
+
+  @Test
+  public void testGetRtcToken_otherChannelOrUser_newToken() {
+    // given
+    Mockito
+        .when(rtcTokenBuilder2.buildTokenWithUserAccount(Mockito.any(), Mockito.any(),
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+        .thenReturn("testToken", "otherChannelToken", "otherUserToken");
+
+    // when
+    String token = agoraService.getRtcToken(userId, channelName);
+    String otherChannelToken = agoraService.getRtcToken(userId, "otherChannel");
+    String otherUserToken = agoraService.getRtcToken(2L, channelName);
+
+    // then
+    assertEquals("testToken", token);
+    assertEquals("otherChannelToken", otherChannelToken);
+    assertEquals("otherUserToken", otherUserToken);
+  }
+
+  @Test
+  public void testGetRtcToken_builderException_notCached() {
+    // given -> first call fails, second call succeeds
+    Mockito
+        .when(rtcTokenBuilder2.buildTokenWithUserAccount(Mockito.any(), Mockito.any(),
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt(), Mockito.anyInt()))
+        .thenThrow(new RuntimeException("Test exception"))
+        .thenReturn("testToken");
+
+    // when
+    assertThrows(
+        ResponseStatusException.class, () -> agoraService.getRtcToken(userId, channelName));
+
+    // then
+    assertEquals("testToken", agoraService.getRtcToken(userId, channelName));
+  }
+
   /* just to cover the helper method and to assure that in the future this check is kept */
   @Test
   public void testGetRtcToken_missingAppId() {
@@ -135,6 +191,24 @@ public class AgoraServiceTest {
     assertEquals(HttpStatus.SERVICE_UNAVAILABLE, ((ResponseStatusException) exception).getStatus());
   }
 
+  @Test
+  public void testGetRtmToken_sameUser_cachedToken() {
+    // given
+    Mockito
+        .when(rtmTokenBuilder2.buildToken(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt()))
+        .thenReturn("testToken", "otherToken");
+
+    // when
+    agoraService.getRtmToken(userId);
+    String cachedToken = agoraService.getRtmToken(userId);
+
+    // then
+    assertEquals("testToken", cachedToken);
+    Mockito.verify(rtmTokenBuilder2, Mockito.times(1))
+        .buildToken(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.anyInt());
+  }
+
   /* to cover the helper method and to assure that in the future this check is kept */
   @Test
   public void testGetRtmToken_missingAppId() {
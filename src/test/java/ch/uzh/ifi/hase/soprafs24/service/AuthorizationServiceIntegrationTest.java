@@ -28,12 +28,16 @@ public class AuthorizationServiceIntegrationTest {
   @Autowired private UserService userService;
   @Autowired private TeamUserService teamUserService;
   @Autowired private TeamService teamService;
+  @Autowired private UserTokenCache userTokenCache;
 
   @BeforeEach
   public void setup() {
     teamUserRepository.deleteAll();
     userRepository.deleteAll();
     teamRepository.deleteAll();
+
+    // users are deleted directly in the repository, so the cached tokens are outdated
+    userTokenCache.clear();
   }
 
   // region login
@@ -11,7 +11,11 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.server.ResponseStatusException;
 
 public class AuthorizationServiceTest {
@@ -19,6 +23,8 @@ public class AuthorizationServiceTest {
 
   @Mock private TeamUserService teamUserService;
 
+  @Spy private UserTokenCache userTokenCache = new UserTokenCache(100, 60);
+
   @InjectMocks private AuthorizationService authorizationService;
 
   @BeforeEach
@@ -135,6 +141,50 @@ public class AuthorizationServiceTest {
         () -> authorizationService.isAuthorized("some invalid token"));
   }
 
+  /**
+   * Test that the user of a valid token is cached and the repository is only queried once
+   */
+  @Test
+  public void isAuthorized_validToken_cached() {
+    // given
+    User testUser = new User();
+    testUser.setUserId(1L);
+    testUser.setToken("some valid token");
+
+    // when -> find user by token -> user is returned
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(testUser);
+
+    // then -> second call is served from the cache
+    authorizationService.isAuthorized("some valid token");
+    User cachedUser = authorizationService.isAuthorized("some valid token");
+
+    assertEquals(testUser.getUserId(), cachedUser.getUserId());
+    Mockito.verify(userRepository, Mockito.times(1)).findByToken(Mockito.anyString());
+    assertEquals(1, userTokenCache.getHitCount());
+    assertEquals(1, userTokenCache.getMissCount());
+  }
+
+  /**
+   * Test that an invalidated token is looked up in the repository again
+   */
+  @Test
+  public void isAuthorized_invalidatedToken_notCached() {
+    // given
+    User testUser = new User();
+    testUser.setUserId(1L);
+    testUser.setToken("some valid token");
+
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(testUser);
+
+    // when -> token is cached and then invalidated (e.g. user updated)
+    authorizationService.isAuthorized("some valid token");
+    userTokenCache.invalidate("some valid token");
+    authorizationService.isAuthorized("some valid token");
+
+    // then
+    Mockito.verify(userRepository, Mockito.times(2)).findByToken(Mockito.anyString());
+  }
+
   // endregion
 
   // region isExistingAndAuthorized tests
@@ -153,10 +203,13 @@ public class AuthorizationServiceTest {
     testUser.setToken(token);
 
     // when -> find user by token -> user is returned
-    Mockito.when(userRepository.findById(Mockito.anyLong())).thenReturn(Optional.of(testUser));
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(testUser);
 
     // then (does not throw exception)
     authorizationService.isExistingAndAuthorized(token, testUser.getUserId());
+
+    // user existence is only checked on failure
+    Mockito.verify(userRepository, Mockito.never()).existsById(Mockito.anyLong());
   }
 
   /**
@@ -170,10 +223,27 @@ public class AuthorizationServiceTest {
 
     // when -> find user by token -> no user found because token is invalid
     Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(null);
+    Mockito.when(userRepository.existsById(Mockito.anyLong())).thenReturn(true);
 
     // then
-    assertThrows(ResponseStatusException.class,
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
         () -> authorizationService.isExistingAndAuthorized("invalid token", testUser.getUserId()));
+    assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
+  }
+
+  /**
+   * test that if the user does not exist, 404 is returned
+   */
+  @Test
+  public void isExistingAndAuthorized_userDoesNotExist_throwsNotFound() {
+    // when -> find user by token -> no user found, user id does not exist
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(null);
+    Mockito.when(userRepository.existsById(Mockito.anyLong())).thenReturn(false);
+
+    // then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> authorizationService.isExistingAndAuthorized("invalid token", 1L));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
   }
 
   /**
@@ -212,9 +282,9 @@ public class AuthorizationServiceTest {
     AuthorizationService tempAuthService = Mockito.spy(authorizationService);
     Mockito.doReturn(testUser).when(tempAuthService).isAuthorized(Mockito.anyString());
 
-    // when -> call to getUsersOfTeam -> user found
-    Mockito.when(teamUserService.getUsersOfTeam(Mockito.anyLong()))
-        .thenReturn(java.util.List.of(testUser));
+    // when -> call to isUserInTeam -> user found
+    Mockito.when(teamUserService.isUserInTeam(Mockito.anyLong(), Mockito.anyLong()))
+        .thenReturn(true);
 
     // then (does not throw exception)
     User authUser = tempAuthService.isAuthorizedAndBelongsToTeam("batman's token", 1L);
@@ -233,8 +303,9 @@ public class AuthorizationServiceTest {
     AuthorizationService tempAuthService = Mockito.spy(authorizationService);
     Mockito.doReturn(testUser).when(tempAuthService).isAuthorized(Mockito.anyString());
 
-    // when -> call to getUsersOfTeam -> no user found
-    Mockito.when(teamUserService.getUsersOfTeam(Mockito.anyLong())).thenReturn(java.util.List.of());
+    // when -> call to isUserInTeam -> no user found
+    Mockito.when(teamUserService.isUserInTeam(Mockito.anyLong(), Mockito.anyLong()))
+        .thenReturn(false);
 
     // then
     assertThrows(ResponseStatusException.class,
@@ -252,12 +323,13 @@ public class AuthorizationServiceTest {
     AuthorizationService tempAuthService = Mockito.spy(authorizationService);
     Mockito.doReturn(testUser).when(tempAuthService).isAuthorized(Mockito.anyString());
 
-    Mockito.when(teamUserService.getUsersOfTeam(Mockito.anyLong()))
+    Mockito.when(teamUserService.isUserInTeam(Mockito.anyLong(), Mockito.anyLong()))
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Team not found"));
 
-    // then -> unauthorized
-    assertThrows(ResponseStatusException.class,
+    // then -> not found
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
         () -> tempAuthService.isAuthorizedAndBelongsToTeam("invalid token", 1L));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
   }
 
   @Test
@@ -310,6 +382,67 @@ public class AuthorizationServiceTest {
     assertEquals(authUser.getUserId(), testUser.getUserId());
   }
 
+
+  /**
+   * Within one request, the caller and the membership are only resolved once
+   */
+  @Test
+  public void isAuthorizedAndBelongsToTeam_withUserId_sameRequest_resolvedOnce() {
+    // given
+    User testUser = new User();
+    testUser.setUserId(1L);
+    testUser.setToken("batman's token");
+
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(testUser);
+    Mockito.when(teamUserService.isUserInTeam(Mockito.anyLong(), Mockito.anyLong()))
+        .thenReturn(true);
+
+    // when -> all checks run in the same request
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+    try {
+      authorizationService.isAuthorizedAndBelongsToTeam("batman's token", 1L, 2L);
+      authorizationService.isAuthorizedAndBelongsToTeam("batman's token", 2L);
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+
+    // then -> token and membership were looked up once
+    Mockito.verify(userRepository, Mockito.times(1)).findByToken(Mockito.anyString());
+    Mockito.verify(userRepository, Mockito.never()).findById(Mockito.anyLong());
+    Mockito.verify(teamUserService, Mockito.times(1))
+        .isUserInTeam(Mockito.anyLong(), Mockito.anyLong());
+  }
+
+  /**
+   * Different requests do not share the resolved memberships
+   */
+  @Test
+  public void isAuthorizedAndBelongsToTeam_differentRequests_membershipCheckedAgain() {
+    // given
+    User testUser = new User();
+    testUser.setUserId(1L);
+    testUser.setToken("batman's token");
+
+    Mockito.when(userRepository.findByToken(Mockito.anyString())).thenReturn(testUser);
+    Mockito.when(teamUserService.isUserInTeam(Mockito.anyLong(), Mockito.anyLong()))
+        .thenReturn(true);
+
+    // when -> two requests
+    for (int i = 0; i < 2; i++) {
+      RequestContextHolder.setRequestAttributes(
+          new ServletRequestAttributes(new MockHttpServletRequest()));
+      try {
+        authorizationService.isAuthorizedAndBelongsToTeam("batman's token", 2L);
+      } finally {
+        RequestContextHolder.resetRequestAttributes();
+      }
+    }
+
+    // then
+    Mockito.verify(teamUserService, Mockito.times(2))
+        .isUserInTeam(Mockito.anyLong(), Mockito.anyLong());
+  }
   // endregion
 
   // region deprecated
@@ -4,8 +4,12 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Comment;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedCommentRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.CommentPageGetDTO;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -16,12 +20,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 public class CommentServiceTest {
   @Mock private CommentRepository commentRepository;
+  @Mock private ArchivedCommentRepository archivedCommentRepository;
   @Mock private TaskService taskService;
+  @Mock private TeamService teamService;
+  @Mock private PusherService pusherService;
 
   @InjectMocks private CommentService commentService;
 
@@ -48,6 +57,11 @@ public class CommentServiceTest {
     testTask.setTaskId(1L);
     testTask.setTitle("task1");
 
+    Team testTeam = new Team();
+    testTeam.setTeamId(1L);
+    testTask.setTeam(testTeam);
+    testComment.setTask(testTask);
+
     testUser = new User();
     testUser.setUserId(1L);
     testUser.setUsername("user1");
@@ -62,6 +76,9 @@ public class CommentServiceTest {
 
     // when -> delete any object in the commentRepository -> return the dummy testComment
     Mockito.when(commentRepository.findById(Mockito.any())).thenReturn(Optional.of(testComment));
+
+    // when -> the team of the task is changed -> return the next revision
+    Mockito.when(teamService.nextRevision(Mockito.anyLong())).thenReturn(1L);
   }
 
   // region createComment tests
@@ -85,6 +102,9 @@ public class CommentServiceTest {
     assertEquals(testComment.getCreationDate(), createdComment.getCreationDate());
     assertEquals(testComment.getTask(), createdComment.getTask());
     assertEquals(testComment.getUser(), createdComment.getUser());
+
+    // the team is notified with the new revision
+    Mockito.verify(pusherService, Mockito.times(1)).createComment(1L, createdComment, 1L);
   }
 
   /**
@@ -130,6 +150,8 @@ public class CommentServiceTest {
     // when/then -> try to create comment -> then the exception is thrown
     assertThrows(ResponseStatusException.class,
         () -> commentService.createComment(testComment, testTask.getTaskId()));
+    Mockito.verify(pusherService, Mockito.never())
+        .createComment(Mockito.anyLong(), Mockito.any(), Mockito.anyLong());
   }
 
   // endregion
@@ -206,6 +228,158 @@ public class CommentServiceTest {
   }
   // endregion
 
+  // region getCommentPage tests
+  /**
+   * Test for the first page of comments, with the cursor of the next page and the newest comment
+   */
+  @Test
+  public void getCommentPage_firstPage_hasNext_returnsCursors() {
+    // given the two newest comments of a thread with more comments
+    CommentGetDTO newest = new CommentGetDTO(2L, 1L, "user1", "newest", testCreationDate);
+    CommentGetDTO older =
+        new CommentGetDTO(1L, 1L, "user1", "older", testCreationDate.minusMinutes(1));
+    Mockito.when(commentRepository.findPageByTaskId(Mockito.eq(1L), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(newest, older), PageRequest.of(0, 2), true));
+
+    // call the method under test
+    CommentPageGetDTO page = commentService.getCommentPage(1L, 1L, 2, null, null);
+
+    // assert the comments, the next page starts after the oldest, the refresh after the newest
+    assertEquals(List.of(newest, older), page.getComments());
+    assertEquals(
+        new KeysetCursor(older.getCreationDate(), 1L).encode(), page.getNextCursor());
+    assertEquals(
+        new KeysetCursor(newest.getCreationDate(), 2L).encode(), page.getLatestCursor());
+    Mockito.verify(taskService).checkTaskExists(1L, 1L);
+    Mockito.verify(taskService, Mockito.never()).getTask(Mockito.any());
+  }
+
+  /**
+   * Test for the next page of comments, the page starts after the cursor
+   */
+  @Test
+  public void getCommentPage_withCursor_lastPage_noCursors() {
+    // given
+    CommentGetDTO comment = new CommentGetDTO(1L, 1L, "user1", "comment", testCreationDate);
+    String cursor = new KeysetCursor(testCreationDate.plusMinutes(1), 2L).encode();
+    Mockito
+        .when(commentRepository.findPageByTaskIdBefore(Mockito.eq(1L),
+            Mockito.eq(testCreationDate.plusMinutes(1)), Mockito.eq(2L), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(comment), PageRequest.of(0, 10), false));
+
+    // call the method under test
+    CommentPageGetDTO page = commentService.getCommentPage(1L, 1L, 10, cursor, null);
+
+    // assert last page, the latest cursor is only set on the first page
+    assertEquals(List.of(comment), page.getComments());
+    assertNull(page.getNextCursor());
+    assertNull(page.getLatestCursor());
+  }
+
+  /**
+   * Test for the refresh with since, only the new comments are returned (newest first)
+   */
+  @Test
+  public void getCommentPage_since_returnsNewCommentsNewestFirst() {
+    // given two new comments (oldest first from the repository)
+    String since = new KeysetCursor(testCreationDate, 1L).encode();
+    CommentGetDTO first =
+        new CommentGetDTO(2L, 1L, "user1", "first", testCreationDate.plusMinutes(1));
+    CommentGetDTO second =
+        new CommentGetDTO(3L, 1L, "user1", "second", testCreationDate.plusMinutes(2));
+    Mockito
+        .when(commentRepository.findPageByTaskIdAfter(
+            Mockito.eq(1L), Mockito.eq(testCreationDate), Mockito.eq(1L), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(first, second), PageRequest.of(0, 10), false));
+
+    // call the method under test
+    CommentPageGetDTO page = commentService.getCommentPage(1L, 1L, 10, null, since);
+
+    // assert newest first, the next refresh starts after the newest comment
+    assertEquals(List.of(second, first), page.getComments());
+    assertEquals(
+        new KeysetCursor(second.getCreationDate(), 3L).encode(), page.getLatestCursor());
+    assertNull(page.getNextCursor());
+  }
+
+  /**
+   * Test for the refresh with since without new comments, the latest cursor stays the same
+   */
+  @Test
+  public void getCommentPage_since_noNewComments_keepsLatestCursor() {
+    // given
+    String since = new KeysetCursor(testCreationDate, 1L).encode();
+    Mockito
+        .when(commentRepository.findPageByTaskIdAfter(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 10), false));
+
+    // call the method under test
+    CommentPageGetDTO page = commentService.getCommentPage(1L, 1L, 10, null, since);
+
+    // assert
+    assertTrue(page.getComments().isEmpty());
+    assertEquals(since, page.getLatestCursor());
+  }
+
+  /**
+   * Test for invalid limits and cursors, nothing is read
+   */
+  @Test
+  public void getCommentPage_invalidInputs_throwsBadRequest() {
+    String cursor = new KeysetCursor(testCreationDate, 1L).encode();
+
+    assertThrows(ResponseStatusException.class,
+        () -> commentService.getCommentPage(1L, 1L, 0, null, null));
+    assertThrows(ResponseStatusException.class,
+        () -> commentService.getCommentPage(1L, 1L, CommentService.MAX_PAGE_SIZE + 1, null, null));
+    assertThrows(ResponseStatusException.class,
+        () -> commentService.getCommentPage(1L, 1L, 10, "invalid", null));
+    assertThrows(ResponseStatusException.class,
+        () -> commentService.getCommentPage(1L, 1L, 10, cursor, cursor));
+    Mockito.verifyNoInteractions(taskService, commentRepository);
+  }
+
+  /**
+   * Test for the comments of a task that is not a task of the team
+   */
+  @Test
+  public void getCommentPage_taskNotInTeam_throwsNotFound() {
+    // given
+    Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND, "Task not found."))
+        .when(taskService)
+        .checkTaskExists(1L, 2L);
+
+    // call the method under test and assert an exception is thrown
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> commentService.getCommentPage(2L, 1L, 10, null, null));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+  // endregion
+
+  // region deleteCommentsOfUser tests
+  /**
+   * Test for deleting all comments of a user, one statement for the comments and one for the
+   * archived comments
+   */
+  @Test
+  public void deleteCommentsOfUser_setBasedDelete() {
+    // when -> user commented in team 1
+    Mockito.when(commentRepository.findTeamIdsByUserId(testUser.getUserId()))
+        .thenReturn(List.of(1L));
+
+    // call the method under test
+    List<Long> teamIds = commentService.deleteCommentsOfUser(testUser.getUserId());
+
+    // assert the teams of the comments, no comment is loaded and no event is sent
+    assertEquals(List.of(1L), teamIds);
+    Mockito.verify(commentRepository).deleteByUserId(testUser.getUserId());
+    Mockito.verify(archivedCommentRepository).deleteByUserId(testUser.getUserId());
+    Mockito.verify(commentRepository, Mockito.never()).findByUser(Mockito.any());
+    Mockito.verifyNoInteractions(pusherService);
+  }
+  // endregion
+
   // region getComment tests
   @Test
   public void getComment_validInputs_success() {
@@ -218,6 +392,7 @@ public class CommentServiceTest {
     // assert found comment
     assertEquals(testComment.getCommentId(), foundComment.getCommentId());
     Mockito.verify(commentRepository, Mockito.times(1)).delete(Mockito.any());
+    Mockito.verify(pusherService, Mockito.times(1)).deleteComment(1L, foundComment, 1L);
   }
 
   @Test
@@ -231,6 +406,8 @@ public class CommentServiceTest {
         () -> commentService.deleteCommentById(testComment.getCommentId()));
 
     Mockito.verify(commentRepository, Mockito.never()).delete(Mockito.any());
+    Mockito.verify(pusherService, Mockito.never())
+        .deleteComment(Mockito.anyLong(), Mockito.any(), Mockito.anyLong());
   }
   // endregion
 }
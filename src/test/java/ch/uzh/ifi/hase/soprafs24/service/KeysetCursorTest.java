@@ -0,0 +1,33 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class KeysetCursorTest {
+  @Test
+  public void encodeDecode_samePosition() {
+    LocalDateTime timestamp = LocalDateTime.of(2024, 4, 1, 12, 30, 15, 123456000);
+
+    KeysetCursor decoded = KeysetCursor.decode(new KeysetCursor(timestamp, 42L).encode());
+
+    assertEquals(timestamp, decoded.getTimestamp());
+    assertEquals(42L, decoded.getId());
+  }
+
+  @Test
+  public void decode_invalidBase64_throwsBadRequest() {
+    ResponseStatusException exception =
+        assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode("not a cursor!"));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+
+  @Test
+  public void decode_invalidContent_throwsBadRequest() {
+    // valid base64, but no timestamp and id
+    assertThrows(ResponseStatusException.class, () -> KeysetCursor.decode("aGVsbG8"));
+  }
+}
@@ -0,0 +1,268 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.pusher.rest.Pusher;
+import com.pusher.rest.data.Event;
+import com.pusher.rest.data.Result;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class PusherEventDispatcherTest {
+  @Mock private Pusher pusher;
+
+  // no workers -> the batches are sent by the test with sendNextBatch()
+  private PusherEventDispatcher dispatcher;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+    dispatcher = new PusherEventDispatcher(pusher, 20, 0, 2, 0, 0);
+  }
+
+  @AfterEach
+  public void teardown() {
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+  }
+
+  private Event event(int teamId) {
+    return new Event(
+        "team-" + teamId, "session-update", Collections.singletonMap("status", "off"));
+  }
+
+  @Test
+  public void sendNextBatch_moreEventsThanBatchSize_sentInBatches() {
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any()))
+        .thenReturn(Result.fromHttpCode(200, ""));
+
+    // given more events than fit in one batch
+    for (int i = 0; i < PusherEventDispatcher.MAX_BATCH_SIZE + 2; i++) {
+      dispatcher.dispatch(event(i));
+    }
+    assertEquals(PusherEventDispatcher.MAX_BATCH_SIZE + 2, dispatcher.getQueueDepth());
+
+    // when
+    assertEquals(PusherEventDispatcher.MAX_BATCH_SIZE, dispatcher.sendNextBatch());
+    assertEquals(2, dispatcher.sendNextBatch());
+    assertEquals(0, dispatcher.sendNextBatch());
+
+    // then -> two batch requests, no single event requests
+    ArgumentCaptor<List<Event>> batches = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(pusher, Mockito.times(2)).trigger(batches.capture());
+    Mockito.verify(pusher, Mockito.never())
+        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+    assertEquals("team-0", batches.getAllValues().get(0).get(0).getChannel());
+    assertEquals(PusherEventDispatcher.MAX_BATCH_SIZE + 2, dispatcher.getSentCount());
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+
+  @Test
+  public void dispatch_queueFull_eventDropped() {
+    dispatcher = new PusherEventDispatcher(pusher, 1, 0, 2, 0, 0);
+
+    dispatcher.dispatch(event(1));
+    dispatcher.dispatch(event(2));
+
+    assertEquals(1, dispatcher.getQueueDepth());
+    assertEquals(1, dispatcher.getDroppedCount());
+  }
+
+  @Test
+  public void dispatch_insideTransaction_queuedAfterCommit() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    dispatcher.dispatch(event(1));
+
+    // not queued before the commit
+    assertEquals(0, dispatcher.getQueueDepth());
+
+    // when -> commit
+    for (TransactionSynchronization synchronization :
+        TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCommit();
+    }
+
+    // then
+    assertEquals(1, dispatcher.getQueueDepth());
+  }
+
+  @Test
+  public void dispatch_insideTransaction_rollback_notQueued() {
+    TransactionSynchronizationManager.initSynchronization();
+
+    dispatcher.dispatch(event(1));
+
+    // when -> rollback
+    for (TransactionSynchronization synchronization :
+        TransactionSynchronizationManager.getSynchronizations()) {
+      synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+    }
+
+    // then
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+
+  @Test
+  public void sendNextBatch_temporaryError_retried() {
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any()))
+        .thenReturn(Result.fromHttpCode(500, "server error"))
+        .thenReturn(Result.fromHttpCode(200, ""));
+
+    dispatcher.dispatch(event(1));
+    dispatcher.sendNextBatch();
+
+    Mockito.verify(pusher, Mockito.times(2)).trigger(Mockito.<List<Event>>any());
+    assertEquals(1, dispatcher.getRetryCount());
+    assertEquals(1, dispatcher.getSentCount());
+    assertEquals(0, dispatcher.getFailedCount());
+  }
+
+  @Test
+  public void sendNextBatch_temporaryError_retriesExhausted_failed() {
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any()))
+        .thenReturn(Result.fromHttpCode(500, "server error"));
+
+    dispatcher.dispatch(event(1));
+    dispatcher.sendNextBatch();
+
+    // first attempt + 2 retries
+    Mockito.verify(pusher, Mockito.times(3)).trigger(Mockito.<List<Event>>any());
+    assertEquals(2, dispatcher.getRetryCount());
+    assertEquals(1, dispatcher.getFailedCount());
+  }
+
+  @Test
+  public void sendNextBatch_clientError_notRetried() {
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any()))
+        .thenReturn(Result.fromHttpCode(400, "invalid event"));
+
+    dispatcher.dispatch(event(1));
+    dispatcher.sendNextBatch();
+
+    Mockito.verify(pusher, Mockito.times(1)).trigger(Mockito.<List<Event>>any());
+    assertEquals(0, dispatcher.getRetryCount());
+    assertEquals(1, dispatcher.getFailedCount());
+  }
+
+  @Test
+  public void sendNextBatch_pusherException_failed() {
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any()))
+        .thenThrow(new RuntimeException("Test exception"));
+
+    dispatcher.dispatch(event(1));
+    dispatcher.sendNextBatch();
+
+    assertEquals(1, dispatcher.getFailedCount());
+  }
+
+  @Test
+  public void shutdown_queuedEventsSent() {
+    dispatcher.dispatch(event(1));
+    dispatcher.dispatch(event(2));
+
+    dispatcher.shutdown();
+
+    Mockito.verify(pusher, Mockito.times(1)).trigger(Mockito.<List<Event>>any());
+    assertEquals(0, dispatcher.getQueueDepth());
+  }
+
+  private Event taskEvent(int teamId, long taskId, String title, long revision) {
+    Map<String, Object> task = new HashMap<>();
+    task.put("taskId", taskId);
+    task.put("title", title);
+    Map<String, Object> data = new HashMap<>();
+    data.put("tasks", "updated");
+    data.put("revision", revision);
+    data.put("task", task);
+    return new Event("team-" + teamId, "task-update", data);
+  }
+
+  @Test
+  public void sendNextBatch_taskEventsOfChannel_mergedIntoOneEvent() {
+    // given task events of one team, with an event of another team in between
+    dispatcher.dispatch(taskEvent(1, 1L, "old title", 5L));
+    dispatcher.dispatch(taskEvent(2, 7L, "other team", 3L));
+    dispatcher.dispatch(taskEvent(1, 2L, "second task", 6L));
+    dispatcher.dispatch(taskEvent(1, 1L, "new title", 7L));
+
+    // when
+    assertEquals(4, dispatcher.sendNextBatch());
+
+    // then -> one event per team, the newest version of each task and the range of revisions
+    ArgumentCaptor<List<Event>> batch = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(pusher, Mockito.times(1)).trigger(batch.capture());
+    assertEquals(2, batch.getValue().size());
+    Event merged = batch.getValue().get(0);
+    assertEquals("team-1", merged.getChannel());
+    Map<?, ?> data = (Map<?, ?>) merged.getData();
+    assertEquals(5L, data.get("fromRevision"));
+    assertEquals(7L, data.get("revision"));
+    List<?> changedTasks = (List<?>) data.get("changedTasks");
+    assertEquals(2, changedTasks.size());
+    assertEquals("new title", ((Map<?, ?>) changedTasks.get(0)).get("title"));
+    assertEquals("second task", ((Map<?, ?>) changedTasks.get(1)).get("title"));
+    assertEquals(2, dispatcher.getMergedCount());
+    assertEquals(2, dispatcher.getSentCount());
+  }
+
+  @Test
+  public void sendNextBatch_otherEventInBetween_notMerged() {
+    // given a session event of the same team between two task events
+    dispatcher.dispatch(taskEvent(1, 1L, "task", 5L));
+    dispatcher.dispatch(event(1));
+    dispatcher.dispatch(taskEvent(1, 2L, "task", 7L));
+
+    dispatcher.sendNextBatch();
+
+    // then -> the order of the events of the team is kept
+    ArgumentCaptor<List<Event>> batch = ArgumentCaptor.forClass(List.class);
+    Mockito.verify(pusher, Mockito.times(1)).trigger(batch.capture());
+    assertEquals(3, batch.getValue().size());
+    assertEquals("session-update", batch.getValue().get(1).getName());
+    assertEquals(0, dispatcher.getMergedCount());
+  }
+
+  @Test
+  public void dispatch_severalWorkers_eventsOfChannelSentInOrder() throws Exception {
+    // given two workers, every batch request is recorded
+    List<Event> sent = Collections.synchronizedList(new ArrayList<>());
+    Mockito.when(pusher.trigger(Mockito.<List<Event>>any())).thenAnswer(invocation -> {
+      sent.addAll(invocation.getArgument(0));
+      return Result.fromHttpCode(200, "");
+    });
+    dispatcher = new PusherEventDispatcher(pusher, 1000, 2, 2, 0, 0);
+
+    // when -> events of several channels with increasing revisions
+    for (int revision = 0; revision < 200; revision++) {
+      dispatcher.dispatch(new Event("team-" + (revision % 4), "task-update",
+          Collections.singletonMap("revision", revision)));
+    }
+    for (int i = 0; i < 200 && dispatcher.getSentCount() < 200; i++) {
+      Thread.sleep(10);
+    }
+    dispatcher.shutdown();
+
+    // then -> the revisions of each channel were sent in ascending order
+    assertEquals(200, sent.size());
+    Map<String, Integer> lastRevisions = new HashMap<>();
+    for (Event event : sent) {
+      int revision = (Integer) ((Map<?, ?>) event.getData()).get("revision");
+      Integer last = lastRevisions.put(event.getChannel(), revision);
+      assertTrue(last == null || last < revision, "revision " + revision + " after " + last);
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.pusher.rest.data.Event;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+public class PusherEventMergerTest {
+  private Map<String, Object> task(long taskId, String description) {
+    Map<String, Object> task = new LinkedHashMap<>();
+    task.put("taskId", taskId);
+    task.put("title", "task " + taskId);
+    task.put("description", description);
+    return task;
+  }
+
+  private Event taskEvent(String channel, long revision, List<Map<String, Object>> tasks) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("tasks", "updated");
+    data.put("revision", revision);
+    if (tasks != null) {
+      data.put("changedTasks", tasks);
+    }
+    return new Event(channel, "task-update", data);
+  }
+
+  @Test
+  public void merge_reloadOnlyEvent_mergedWithoutTasks() {
+    Event merged = PusherEventMerger.merge(
+        taskEvent("team-1", 5L, List.of(task(1L, ""))), taskEvent("team-1", 6L, null));
+
+    Map<?, ?> data = (Map<?, ?>) merged.getData();
+    assertEquals(5L, data.get("fromRevision"));
+    assertEquals(6L, data.get("revision"));
+    assertFalse(data.containsKey("changedTasks"));
+  }
+
+  @Test
+  public void merge_tasksTooLarge_mergedWithoutTasks() {
+    // two events that fit into one event each, but not together
+    List<Map<String, Object>> olderTasks = new ArrayList<>();
+    List<Map<String, Object>> newerTasks = new ArrayList<>();
+    for (long i = 0; i < 3; i++) {
+      olderTasks.add(task(i, "€".repeat(500)));
+      newerTasks.add(task(i + 3, "€".repeat(500)));
+    }
+
+    Event merged = PusherEventMerger.merge(
+        taskEvent("team-1", 5L, olderTasks), taskEvent("team-1", 6L, newerTasks));
+
+    Map<?, ?> data = (Map<?, ?>) merged.getData();
+    assertEquals(6L, data.get("revision"));
+    assertFalse(data.containsKey("changedTasks"));
+  }
+
+  @Test
+  public void merge_otherChannelOrEvent_notMerged() {
+    Event taskEvent = taskEvent("team-1", 5L, List.of(task(1L, "")));
+
+    assertNull(PusherEventMerger.merge(taskEvent, taskEvent("team-2", 6L, null)));
+    assertNull(PusherEventMerger.merge(
+        taskEvent, new Event("team-1", "comment-update", Map.of("comments", "updated"))));
+  }
+}
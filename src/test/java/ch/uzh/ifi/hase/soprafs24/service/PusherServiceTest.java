@@ -1,158 +1,282 @@
 package ch.uzh.ifi.hase.soprafs24.service;
 
-import com.pusher.rest.Pusher;
-import java.util.Collections;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Comment;
+import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pusher.rest.data.Event;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 public class PusherServiceTest {
-  @Mock private Pusher pusher;
+  @Mock private PusherEventDispatcher dispatcher;
 
   private PusherService pusherService;
 
   private String channel;
-  private String event;
+  private Team team;
 
   @BeforeEach
   public void setup() {
     MockitoAnnotations.openMocks(this);
-    pusherService = new PusherService(pusher);
+    pusherService = new PusherService(dispatcher, Jackson2ObjectMapperBuilder.json().build());
 
     // given
-    channel = "team-teamId";
-    event = "session-update";
+    channel = "team-1";
+    team = new Team();
+    team.setTeamId(1L);
+    team.setName("productiviTeam");
   }
 
-  @Test
-  public void testStartSession_success() {
-    Mockito.doReturn(new Mockito())
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+  private Comment createTestComment() {
+    Task task = new Task();
+    task.setTaskId(2L);
+    task.setTeam(team);
 
-    pusherService.startSession("teamId");
+    Comment comment = new Comment();
+    comment.setCommentId(3L);
+    comment.setText("comment");
+    comment.setTask(task);
+    return comment;
+  }
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq(event),
-            Mockito.eq(Collections.singletonMap("status", "on")));
+  /**
+   * Verifies that exactly one event was dispatched and returns it
+   */
+  private Event verifyDispatchedEvent() {
+    ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+    Mockito.verify(dispatcher, Mockito.times(1)).dispatch(event.capture());
+    return event.getValue();
   }
 
   @Test
-  public void testStartSession_pusherException() {
-    Mockito.doThrow(new RuntimeException("Test exception"))
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.startSession("teamId");
+  public void testStartSession_success() {
+    pusherService.startSession(1L, 2L);
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq(event),
-            Mockito.eq(Collections.singletonMap("status", "on")));
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("session-update", event.getName());
+    assertEquals(Map.of("status", "on", "revision", 2L), event.getData());
   }
 
   @Test
   public void testEndSession_success() {
-    Mockito.doReturn(new Mockito())
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.stopSession("teamId");
+    pusherService.stopSession(1L, 3L);
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq(event),
-            Mockito.eq(Collections.singletonMap("status", "off")));
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("session-update", event.getName());
+    assertEquals(Map.of("status", "off", "revision", 3L), event.getData());
   }
 
   @Test
-  public void testEndSession_pusherException() {
-    Mockito.doThrow(new RuntimeException("Test exception"))
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.stopSession("teamId");
+  public void testTaskModification_sendsTaskAndRevision() {
+    Task task = new Task();
+    task.setTaskId(2L);
+    task.setTitle("task");
+    task.setStatus(TaskStatus.TODO);
+    task.setTeam(team);
+
+    pusherService.taskModification(task, 5L);
+
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("task-update", event.getName());
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals("updated", data.get("tasks"));
+    assertEquals(5L, data.get("revision"));
+    Map<?, ?> sentTask = (Map<?, ?>) data.get("task");
+    assertEquals(2, ((Number) sentTask.get("taskId")).intValue());
+    assertEquals("task", sentTask.get("title"));
+    assertEquals("TODO", sentTask.get("status"));
+  }
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq(event),
-            Mockito.eq(Collections.singletonMap("status", "off")));
+  private List<Task> createTestTasks(int count) {
+    List<Task> tasks = new ArrayList<>();
+    for (long i = 1; i <= count; i++) {
+      Task task = new Task();
+      task.setTaskId(i);
+      task.setTitle("task " + i);
+      task.setStatus(TaskStatus.DONE);
+      task.setTeam(team);
+      tasks.add(task);
+    }
+    return tasks;
   }
 
   @Test
-  public void testTaskModification_success() {
-    Mockito.doReturn(new Mockito())
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.taskModification("teamId");
-
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("task-update"),
-            Mockito.eq(Collections.singletonMap("tasks", "updated")));
+  public void testTasksModification_fewTasks_singleEventWithTasks() {
+    pusherService.tasksModification(1L, createTestTasks(2), 6L);
+
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("task-update", event.getName());
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals("updated", data.get("tasks"));
+    assertEquals(6L, data.get("revision"));
+    List<?> changedTasks = (List<?>) data.get("changedTasks");
+    assertEquals(2, changedTasks.size());
+    assertEquals("task 2", ((Map<?, ?>) changedTasks.get(1)).get("title"));
   }
 
   @Test
-  public void testTaskModification_pusherException() {
-    Mockito.doThrow(new RuntimeException("Test exception"))
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.taskModification("teamId");
+  public void testTasksModification_manyTasks_singleEventWithRevisionOnly() {
+    pusherService.tasksModification(1L, createTestTasks(100), 6L);
+
+    Event event = verifyDispatchedEvent();
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals("updated", data.get("tasks"));
+    assertEquals(6L, data.get("revision"));
+    assertFalse(data.containsKey("changedTasks"));
+  }
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("task-update"),
-            Mockito.eq(Collections.singletonMap("tasks", "updated")));
+  /**
+   * Tasks with the longest title and description of multi-byte characters (3 bytes each in UTF-8)
+   */
+  private List<Task> createMaxLengthTasks(int count) {
+    List<Task> tasks = createTestTasks(count);
+    for (Task task : tasks) {
+      task.setTitle("\u20ac".repeat(100));
+      task.setDescription("\u20ac".repeat(1000));
+    }
+    return tasks;
   }
 
   @Test
-  public void testUpdateTeam_success() {
-    Mockito.doReturn(new Mockito())
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+  public void testTasksModification_maxLengthTasks_eventWithinPusherLimit() throws Exception {
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    // two tasks fit into the event, five tasks with the same count of characters do not
+    pusherService.tasksModification(1L, createMaxLengthTasks(2), 6L);
+    pusherService.tasksModification(1L, createMaxLengthTasks(5), 7L);
+
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    Mockito.verify(dispatcher, Mockito.times(2)).dispatch(events.capture());
+    Map<?, ?> fitting = (Map<?, ?>) events.getAllValues().get(0).getData();
+    assertEquals(2, ((List<?>) fitting.get("changedTasks")).size());
+    assertTrue(objectMapper.writeValueAsBytes(fitting).length <= 10 * 1024);
+    Map<?, ?> tooLarge = (Map<?, ?>) events.getAllValues().get(1).getData();
+    assertEquals(7L, tooLarge.get("revision"));
+    assertFalse(tooLarge.containsKey("changedTasks"));
+  }
 
-    pusherService.updateTeam("teamId");
+  @Test
+  public void testUpdateTeam_sendsDetailsAndRevision() {
+    pusherService.updateTeam(team, 3L);
+
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("team-update", event.getName());
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals("updated", data.get("team"));
+    assertEquals(3L, data.get("revision"));
+    assertEquals("productiviTeam", ((Map<?, ?>) data.get("details")).get("name"));
+  }
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("team-update"),
-            Mockito.eq(Collections.singletonMap("team", "updated")));
+  @Test
+  public void testUpdateTeamMembers_joinedAndLeftUser() {
+    User user = new User();
+    user.setUserId(4L);
+    user.setUsername("batman");
+
+    pusherService.updateTeamMembers(1L, user, true, 1L);
+    pusherService.updateTeamMembers(1L, user, false, 2L);
+
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    Mockito.verify(dispatcher, Mockito.times(2)).dispatch(events.capture());
+    Map<?, ?> joined = (Map<?, ?>) events.getAllValues().get(0).getData();
+    Map<?, ?> left = (Map<?, ?>) events.getAllValues().get(1).getData();
+    assertEquals("batman", ((Map<?, ?>) joined.get("joinedUser")).get("username"));
+    assertNull(joined.get("leftUser"));
+    assertEquals("batman", ((Map<?, ?>) left.get("leftUser")).get("username"));
+    assertEquals(2L, left.get("revision"));
   }
 
   @Test
-  public void testUpdateTeam_pusherException() {
-    Mockito.doThrow(new RuntimeException("Test exception"))
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+  public void testCreateComment_sendsCommentAndRevision() {
+    pusherService.createComment(1L, createTestComment(), 6L);
+
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("comment-update", event.getName());
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals("updated", data.get("comments"));
+    assertEquals(6L, data.get("revision"));
+    assertEquals(2L, data.get("taskId"));
+    assertEquals("comment", ((Map<?, ?>) data.get("comment")).get("text"));
+  }
 
-    pusherService.updateTeam("teamId");
+  @Test
+  public void testDeleteComment_sendsCommentIdAndRevision() {
+    pusherService.deleteComment(1L, createTestComment(), 7L);
+
+    Event event = verifyDispatchedEvent();
+    assertEquals("comment-update", event.getName());
+    Map<?, ?> data = (Map<?, ?>) event.getData();
+    assertEquals(7L, data.get("revision"));
+    assertEquals(2L, data.get("taskId"));
+    assertEquals(3L, data.get("deletedCommentId"));
+  }
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("team-update"),
-            Mockito.eq(Collections.singletonMap("team", "updated")));
+  @Test
+  public void testStopSessions_oneEventPerTeam() {
+    pusherService.stopSessions(new TreeMap<>(Map.of(1L, 3L, 2L, 4L)));
+
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    Mockito.verify(dispatcher, Mockito.times(2)).dispatch(events.capture());
+    assertEquals("team-1", events.getAllValues().get(0).getChannel());
+    assertEquals("team-2", events.getAllValues().get(1).getChannel());
+    assertEquals(
+        Map.of("status", "off", "revision", 4L), events.getAllValues().get(1).getData());
   }
 
   @Test
-  public void testUpdateComments_success() {
-    Mockito.doReturn(new Mockito())
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
+  public void testLeaveTeams_oneEventPerTeam() {
+    User user = new User();
+    user.setUserId(4L);
+    user.setUsername("batman");
+
+    pusherService.leaveTeams(user, new TreeMap<>(Map.of(1L, 3L, 2L, 4L)));
+
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    Mockito.verify(dispatcher, Mockito.times(2)).dispatch(events.capture());
+    assertEquals("team-2", events.getAllValues().get(1).getChannel());
+    assertEquals("team-update", events.getAllValues().get(1).getName());
+    Map<?, ?> data = (Map<?, ?>) events.getAllValues().get(1).getData();
+    assertEquals("batman", ((Map<?, ?>) data.get("leftUser")).get("username"));
+    assertEquals(4L, data.get("revision"));
+  }
 
-    pusherService.updateComments("teamId");
+  @Test
+  public void testReloadComments_deltaWithoutComment() {
+    pusherService.reloadComments(Map.of(1L, 5L));
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("comment-update"),
-            Mockito.eq(Collections.singletonMap("comments", "updated")));
+    Event event = verifyDispatchedEvent();
+    assertEquals(channel, event.getChannel());
+    assertEquals("comment-update", event.getName());
+    assertEquals(Map.of("comments", "updated", "revision", 5L), event.getData());
   }
 
   @Test
-  public void testUpdateComments_pusherException() {
-    Mockito.doThrow(new RuntimeException("Test exception"))
-        .when(pusher)
-        .trigger(Mockito.anyString(), Mockito.anyString(), Mockito.any());
-
-    pusherService.updateComments("teamId");
+  public void testStopSessions_noTeams_noEvent() {
+    pusherService.stopSessions(Map.of());
 
-    Mockito.verify(pusher, Mockito.times(1))
-        .trigger(Mockito.eq(channel), Mockito.eq("comment-update"),
-            Mockito.eq(Collections.singletonMap("comments", "updated")));
+    Mockito.verifyNoInteractions(dispatcher);
   }
 }
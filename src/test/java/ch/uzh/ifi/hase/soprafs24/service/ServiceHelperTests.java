@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.server.ResponseStatusException;
 
 public class ServiceHelperTests {
@@ -37,4 +39,45 @@ public class ServiceHelperTests {
     // This test will pass if no exception is thrown
     ServiceHelpers.checkValidString("Productiviteam", "Field");
   }
+
+  @Test
+  public void testRunAfterCommit_NoTransaction_RunsNow() {
+    Runnable action = Mockito.mock(Runnable.class);
+
+    ServiceHelpers.runAfterCommit(action);
+
+    Mockito.verify(action, Mockito.times(1)).run();
+  }
+
+  @Test
+  public void testRunAfterCommit_Transaction_RunsAfterCommitOnly() {
+    Runnable committed = Mockito.mock(Runnable.class);
+    Runnable rolledBack = Mockito.mock(Runnable.class);
+    try {
+      TransactionSynchronizationManager.initSynchronization();
+      ServiceHelpers.runAfterCommit(committed);
+      Mockito.verify(committed, Mockito.never()).run();
+
+      // commit
+      for (TransactionSynchronization synchronization :
+          TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCommit();
+      }
+      Mockito.verify(committed, Mockito.times(1)).run();
+      TransactionSynchronizationManager.clearSynchronization();
+
+      TransactionSynchronizationManager.initSynchronization();
+      ServiceHelpers.runAfterCommit(rolledBack);
+      // rollback
+      for (TransactionSynchronization synchronization :
+          TransactionSynchronizationManager.getSynchronizations()) {
+        synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+      }
+      Mockito.verify(rolledBack, Mockito.never()).run();
+    } finally {
+      if (TransactionSynchronizationManager.isSynchronizationActive()) {
+        TransactionSynchronizationManager.clearSynchronization();
+      }
+    }
+  }
 }
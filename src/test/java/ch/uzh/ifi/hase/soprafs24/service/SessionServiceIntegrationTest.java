@@ -15,6 +15,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -26,6 +27,7 @@ public class SessionServiceIntegrationTest {
 
   @Autowired private SessionService sessionService;
   @Autowired private TeamService teamService;
+  @MockBean private PusherService pusherService;
 
   private Long mockGoalMinutes;
 
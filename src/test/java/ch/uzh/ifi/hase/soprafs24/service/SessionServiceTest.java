@@ -5,21 +5,29 @@ import static org.junit.jupiter.api.Assertions.*;
 import ch.uzh.ifi.hase.soprafs24.entity.Session;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.repository.SessionRepository;
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.server.ResponseStatusException;
 
 public class SessionServiceTest {
   @Mock private SessionRepository sessionRepository;
   @Mock private TeamService teamService;
+  @Mock private PusherService pusherService;
 
   @InjectMocks private SessionService sessionService;
 
@@ -51,6 +59,9 @@ public class SessionServiceTest {
 
     // when -> any object is being saved in the sessionRepository -> return the dummy testSession
     Mockito.when(sessionRepository.save(Mockito.any())).thenReturn(testSession);
+
+    // when -> the team is changed -> return the next revision
+    Mockito.when(teamService.nextRevision(Mockito.anyLong())).thenReturn(2L);
   }
 
   // region createSession tests
@@ -68,6 +79,9 @@ public class SessionServiceTest {
     assertEquals(testSession.getTeam(), createdSession.getTeam());
     assertEquals(testStartDateTime, createdSession.getStartDateTime());
     assertEquals(mockGoalMinutes, createdSession.getGoalMinutes());
+
+    // the team is notified with the new revision
+    Mockito.verify(pusherService, Mockito.times(1)).startSession(testTeam.getTeamId(), 2L);
   }
 
   @Test
@@ -78,14 +92,14 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return ended session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> only ended sessions, no active session
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.empty());
 
     // then -> the session is saved successfully
-    Session createdSession = spySessionService.createSession(testTeam.getTeamId(), mockGoalMinutes);
+    Session createdSession = sessionService.createSession(testTeam.getTeamId(), mockGoalMinutes);
 
     // check if the session is returned
     assertEquals(testSession.getSessionId(), createdSession.getSessionId());
@@ -116,16 +130,21 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return active session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> mock return active session
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.of(testSession));
 
     // then -> an exception is thrown
-    assertThrows(ResponseStatusException.class,
-        () -> spySessionService.createSession(testTeam.getTeamId(), mockGoalMinutes)); // active
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> sessionService.createSession(testTeam.getTeamId(), mockGoalMinutes)); // active
     // session
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+
+    // the session history is not loaded
+    Mockito.verify(sessionRepository, Mockito.never())
+        .findByTeamOrderByStartDateTimeDesc(Mockito.any());
   }
   // endregion
 
@@ -175,6 +194,66 @@ public class SessionServiceTest {
     assertThrows(ResponseStatusException.class,
         () -> sessionService.getSessionsByTeamId(99L)); // team not found
   }
+
+  @Test
+  public void getSessionsByTeamIdPage_firstPage_success() {
+    // when -> call task service to get the team -> return the dummy testTeam
+    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
+
+    // when -> get first page -> return the dummy testSession
+    Mockito
+        .when(sessionRepository.findByTeamOrderByStartDateTimeDescSessionIdDesc(
+            Mockito.any(), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(testSession), PageRequest.of(0, 1), true));
+
+    // then
+    Slice<Session> sessions = sessionService.getSessionsByTeamId(testTeam.getTeamId(), 1, null);
+    assertEquals(1, sessions.getNumberOfElements());
+    assertTrue(sessions.hasNext());
+    Mockito.verify(sessionRepository, Mockito.never())
+        .findByTeamAfterCursor(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void getSessionsByTeamIdPage_withCursor_seeksAfterCursor() {
+    // when -> call task service to get the team -> return the dummy testTeam
+    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
+
+    // when -> get next page -> return the dummy testSession
+    Mockito
+        .when(sessionRepository.findByTeamAfterCursor(
+            Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(testSession), PageRequest.of(0, 10), false));
+
+    // then -> the position of the cursor is passed to the repository
+    LocalDateTime cursorDateTime = testStartDateTime.plusHours(1);
+    String cursor = new KeysetCursor(cursorDateTime, 5L).encode();
+    Slice<Session> sessions = sessionService.getSessionsByTeamId(testTeam.getTeamId(), 10, cursor);
+
+    assertFalse(sessions.hasNext());
+    Mockito.verify(sessionRepository)
+        .findByTeamAfterCursor(testTeam, cursorDateTime, 5L, PageRequest.of(0, 10));
+  }
+
+  @Test
+  public void getSessionsByTeamIdPage_invalidLimit_throwsException() {
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> sessionService.getSessionsByTeamId(testTeam.getTeamId(), 0, null));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+
+    exception = assertThrows(ResponseStatusException.class,
+        ()
+            -> sessionService.getSessionsByTeamId(
+                testTeam.getTeamId(), SessionService.MAX_PAGE_SIZE + 1, null));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+
+  @Test
+  public void getSessionsByTeamIdPage_invalidCursor_throwsException() {
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> sessionService.getSessionsByTeamId(testTeam.getTeamId(), 10, "not a cursor"));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
   // endregion
 
   // region endSession tests
@@ -186,18 +265,21 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return dummy session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> mock return dummy session
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.of(testSession));
 
     // then -> the session is saved successfully
-    Session endedSession = spySessionService.endSession(testTeam.getTeamId());
+    Session endedSession = sessionService.endSession(testTeam.getTeamId());
 
     // check if the session is returned
     assertEquals(testSession, endedSession);
     assertNotNull(endedSession.getEndDateTime());
+
+    // the team is notified with the new revision
+    Mockito.verify(pusherService, Mockito.times(1)).stopSession(testTeam.getTeamId(), 2L);
   }
 
   /* test if no active session, only ended sessions */
@@ -209,15 +291,15 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return ended session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> ended session is not active
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.empty());
 
     // then -> an exception is thrown
     assertThrows(ResponseStatusException.class,
-        () -> spySessionService.endSession(testTeam.getTeamId())); // no active session
+        () -> sessionService.endSession(testTeam.getTeamId())); // no active session
   }
 
   /* test if no sessions for team */
@@ -226,15 +308,15 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return empty list
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of())
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> no session
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.empty());
 
     // then -> an exception is thrown
     assertThrows(ResponseStatusException.class,
-        () -> spySessionService.endSession(testTeam.getTeamId())); // no active session
+        () -> sessionService.endSession(testTeam.getTeamId())); // no active session
   }
 
   /* test if no sessions for team */
@@ -261,90 +343,58 @@ public class SessionServiceTest {
     // when -> call task service to get the team -> return the dummy testTeam
     Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
 
-    // when call to getSessionsByTeamId -> mock return dummy session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> get active session of the team -> mock return dummy session
+    Mockito.when(
+               sessionRepository.findFirstByTeamAndEndDateTimeIsNullOrderByStartDateTimeDesc(
+                   Mockito.any()))
+        .thenReturn(Optional.of(testSession));
 
     // then -> an exception is thrown
     assertThrows(ResponseStatusException.class,
-        () -> spySessionService.endSession(testTeam.getTeamId())); // session expired
+        () -> sessionService.endSession(testTeam.getTeamId())); // session expired
+    Mockito.verify(pusherService, Mockito.never())
+        .stopSession(Mockito.anyLong(), Mockito.anyLong());
   }
 
   @Test
   public void endExpiredSessions_noExpiredSessions_success() {
-    // given test session with no end date and start date 23 hours ago
-    testSession.setEndDateTime(null);
-    testSession.setStartDateTime(LocalDateTime.now().minusHours(23));
-    // when call to getSessionsByTeamId -> mock return dummy session
-    SessionService spySessionService = Mockito.spy(sessionService);
-    Mockito.doReturn(java.util.List.of(testSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(Mockito.anyLong());
+    // when -> bulk update ends no session
+    Mockito.when(sessionRepository.endSessionsStartedBefore(Mockito.any())).thenReturn(List.of());
+    Mockito.when(teamService.nextRevisions(List.of())).thenReturn(Map.of());
+
     // call endExpiredSessions method
-    spySessionService.endExpiredSessions();
-    // verify that the session is not ended
-    assertNull(testSession.getEndDateTime());
-  }
+    List<Long> teamIds = sessionService.endExpiredSessions();
 
-  @Test
-  public void endExpiredSessions_expiredSession_endsSession() {
-    // given two sessions, one that expired and one that did not
-    Session expiredSession = new Session();
-    expiredSession.setSessionId(1L);
-    expiredSession.setStartDateTime(
-        LocalDateTime.now().minusDays(1).minusHours(1)); // add an extra hour to ensure it's expired
-    expiredSession.setTeam(testTeam);
-
-    Session activeSession = new Session();
-    activeSession.setSessionId(2L);
-    activeSession.setStartDateTime(LocalDateTime.now());
-    activeSession.setTeam(testTeam);
-
-    // when sessionRepository.findByEndDateTimeIsNull() is called, return the list of sessions
-    Mockito.when(sessionRepository.findByEndDateTimeIsNull())
-        .thenReturn(List.of(expiredSession, activeSession));
-
-    // create a spy of sessionService
-    SessionService spySessionService = Mockito.spy(sessionService);
-
-    // when getSessionsByTeamId is called on the spy, return the appropriate session for the team
-    Mockito.doReturn(List.of(expiredSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(expiredSession.getTeam().getTeamId());
-    Mockito.doReturn(List.of(activeSession))
-        .when(spySessionService)
-        .getSessionsByTeamId(activeSession.getTeam().getTeamId());
-
-    // call the method to test on the spy
-    spySessionService.endExpiredSessions();
-
-    // verify that the save was called only once for the expired session
-    Mockito.verify(sessionRepository, Mockito.times(1)).save(Mockito.any(Session.class));
+    // verify that no team is returned and no session was loaded or saved one by one
+    assertTrue(teamIds.isEmpty());
+    Mockito.verify(sessionRepository, Mockito.never()).findByEndDateTimeIsNull();
+    Mockito.verify(sessionRepository, Mockito.never()).save(Mockito.any());
+    Mockito.verify(pusherService, Mockito.times(1)).stopSessions(Map.of());
   }
 
   @Test
-  public void endExpiredSessions_failedToSaveSession_logsWarning() {
-    // given two sessions, one that expired and one that did not
-    Session expiredSession = new Session();
-    expiredSession.setSessionId(1L);
-    expiredSession.setStartDateTime(
-        LocalDateTime.now().minusDays(1).minusHours(1)); // add an extra hour to ensure it's expired
-    expiredSession.setTeam(testTeam);
-
-    // when sessionRepository.findByEndDateTimeIsNull() is called, return the list of sessions
-    Mockito.when(sessionRepository.findByEndDateTimeIsNull()).thenReturn(List.of(expiredSession));
-
-    Mockito.when(sessionRepository.save(Mockito.any()))
-        .thenThrow(new DataIntegrityViolationException(""));
-
-    // call the method to test on the spy
-    sessionService.endExpiredSessions();
-
-    // verify that the save was called only once for the expired session
-    Mockito.verify(sessionRepository, Mockito.times(1)).save(Mockito.any(Session.class));
-    Mockito.verify(sessionRepository, Mockito.never()).flush();
+  public void endExpiredSessions_expiredSessions_returnsTeamIds() {
+    // when -> bulk update ends sessions of two teams (ids as returned by the native query)
+    Mockito.when(sessionRepository.endSessionsStartedBefore(Mockito.any()))
+        .thenReturn(List.of(BigInteger.ONE, BigInteger.TWO, BigInteger.ONE));
+    Mockito.when(teamService.nextRevisions(List.of(1L, 2L))).thenReturn(Map.of(1L, 4L, 2L, 7L));
+
+    // call the method to test
+    LocalDateTime before = LocalDateTime.now();
+    List<Long> teamIds = sessionService.endExpiredSessions();
+
+    // verify that each team is returned once
+    assertEquals(List.of(1L, 2L), teamIds);
+
+    // verify that the teams are notified with their new revisions
+    Mockito.verify(pusherService, Mockito.times(1)).stopSessions(Map.of(1L, 4L, 2L, 7L));
+
+    // verify that only sessions started more than 24 hours ago are ended
+    ArgumentCaptor<LocalDateTime> startedBefore = ArgumentCaptor.forClass(LocalDateTime.class);
+    Mockito.verify(sessionRepository, Mockito.times(1))
+        .endSessionsStartedBefore(startedBefore.capture());
+    assertFalse(startedBefore.getValue().isBefore(before.minusHours(24)));
+    assertTrue(startedBefore.getValue().isBefore(before.minusHours(23)));
   }
   // endregion
 }
@@ -0,0 +1,156 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Comment;
+import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.entity.User;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedCommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedTaskRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Test class for the TaskArchiveService, every deleted task is old enough to be archived.
+ *
+ * @see TaskArchiveService
+ */
+@WebAppConfiguration
+@SpringBootTest(properties = "task.archive.min-age-days=0")
+public class TaskArchiveServiceIntegrationTest {
+  @Qualifier("commentRepository") @Autowired private CommentRepository commentRepository;
+  @Qualifier("taskRepository") @Autowired private TaskRepository taskRepository;
+  @Qualifier("teamRepository") @Autowired private TeamRepository teamRepository;
+  @Qualifier("userRepository") @Autowired private UserRepository userRepository;
+  @Qualifier("archivedTaskRepository")
+  @Autowired
+  private ArchivedTaskRepository archivedTaskRepository;
+  @Qualifier("archivedCommentRepository")
+  @Autowired
+  private ArchivedCommentRepository archivedCommentRepository;
+
+  @Autowired private TaskArchiveService taskArchiveService;
+  @MockBean private PusherService pusherService;
+
+  private Team team;
+  private User user;
+
+  @BeforeEach
+  @AfterEach
+  public void setup() {
+    archivedCommentRepository.deleteAll();
+    archivedTaskRepository.deleteAll();
+    commentRepository.deleteAll();
+    taskRepository.deleteAll();
+    teamRepository.deleteAll();
+    userRepository.deleteAll();
+  }
+
+  private Task createTaskWithComment(String title, TaskStatus status) {
+    // the team and the user are created with the first task
+    if (team == null) {
+      team = new Team();
+      team.setName("Team A");
+      team.setDescription("Lorem");
+      team.setTeamUUID("team-uuid");
+      team = teamRepository.saveAndFlush(team);
+
+      user = new User();
+      user.setUsername("testUser");
+      user.setName("Test User");
+      user.setPassword("password123");
+      user.setToken("1");
+      user = userRepository.saveAndFlush(user);
+    }
+
+    Task task = new Task();
+    task.setTitle(title);
+    task.setDescription("This is " + title);
+    task.setStatus(status);
+    task.setTeam(team);
+    task = taskRepository.saveAndFlush(task);
+
+    Comment comment = new Comment();
+    comment.setText("Comment of " + title);
+    comment.setCreationDate(LocalDateTime.now());
+    comment.setTask(task);
+    comment.setUser(user);
+    commentRepository.saveAndFlush(comment);
+    return task;
+  }
+
+  @Test
+  public void archiveDeletedTasks_movesDeletedTasksWithComments() {
+    // given
+    Task liveTask = createTaskWithComment("Task A", TaskStatus.TODO);
+    Task deletedTask = createTaskWithComment("Task B", TaskStatus.DELETED);
+    Long revision = teamRepository.findRevisionByTeamId(team.getTeamId());
+
+    // when
+    int archived = taskArchiveService.archiveDeletedTasks();
+
+    // then -> only the deleted task and its comment left the hot tables
+    assertEquals(1, archived);
+    assertTrue(taskRepository.findById(deletedTask.getTaskId()).isEmpty());
+    assertTrue(taskRepository.findById(liveTask.getTaskId()).isPresent());
+    assertEquals(1, commentRepository.count());
+    assertEquals(1, archivedCommentRepository.findByTaskId(deletedTask.getTaskId()).size());
+
+    List<TaskGetDTO> archivedTasks = taskArchiveService.getArchivedTasks(team.getTeamId());
+    assertEquals(1, archivedTasks.size());
+    assertEquals(deletedTask.getTaskId(), archivedTasks.get(0).getTaskId());
+    assertEquals(TaskStatus.DELETED, archivedTasks.get(0).getStatus());
+
+    // the ETags of the task listings of the team changed
+    assertEquals(revision + 1, teamRepository.findRevisionByTeamId(team.getTeamId()));
+
+    // nothing left to archive
+    assertEquals(0, taskArchiveService.archiveDeletedTasks());
+  }
+
+  @Test
+  public void restoreTask_archivedTask_restoredWithComments() {
+    // given an archived task
+    Task deletedTask = createTaskWithComment("Task B", TaskStatus.DELETED);
+    taskArchiveService.archiveDeletedTasks();
+
+    // when
+    Task restoredTask = taskArchiveService.restoreTask(team.getTeamId(), deletedTask.getTaskId());
+
+    // then -> same id, live again, with its comment
+    assertEquals(deletedTask.getTaskId(), restoredTask.getTaskId());
+    assertEquals(deletedTask.getTitle(), restoredTask.getTitle());
+    assertEquals(TaskStatus.TODO, restoredTask.getStatus());
+    assertEquals(1, commentRepository.count());
+    assertEquals(0, archivedTaskRepository.count());
+    assertEquals(0, archivedCommentRepository.count());
+  }
+
+  @Test
+  public void restoreTask_notArchived_throwsNotFound() {
+    // given a live task
+    Task liveTask = createTaskWithComment("Task A", TaskStatus.TODO);
+
+    // when/then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskArchiveService.restoreTask(team.getTeamId(), liveTask.getTaskId()));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+}
@@ -0,0 +1,124 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.entity.Task;
+import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedCommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.ArchivedTaskRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
+import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class TaskArchiveServiceTest {
+  @Mock private TaskRepository taskRepository;
+  @Mock private CommentRepository commentRepository;
+  @Mock private ArchivedTaskRepository archivedTaskRepository;
+  @Mock private ArchivedCommentRepository archivedCommentRepository;
+  @Mock private TeamService teamService;
+  @Mock private PusherService pusherService;
+
+  private TaskArchiveService taskArchiveService;
+
+  @BeforeEach
+  public void setup() {
+    MockitoAnnotations.openMocks(this);
+
+    // deleted tasks are archived after 30 days, at most 100 per call
+    taskArchiveService = new TaskArchiveService(taskRepository, commentRepository,
+        archivedTaskRepository, archivedCommentRepository, teamService, pusherService, 30, 100);
+  }
+
+  @Test
+  public void archiveDeletedTasks_noDeletedTasks_nothingMoved() {
+    // given
+    Mockito
+        .when(taskRepository.findIdsByStatusModifiedBefore(
+            Mockito.eq(TaskStatus.DELETED), Mockito.any(), Mockito.any()))
+        .thenReturn(List.of());
+
+    // when
+    int archived = taskArchiveService.archiveDeletedTasks();
+
+    // then
+    assertEquals(0, archived);
+    Mockito.verifyNoInteractions(archivedTaskRepository, archivedCommentRepository, teamService);
+  }
+
+  @Test
+  public void archiveDeletedTasks_deletedTasks_movedInOrder() {
+    // given
+    List<Long> taskIds = List.of(1L, 2L, 3L);
+    Mockito
+        .when(taskRepository.findIdsByStatusModifiedBefore(
+            Mockito.eq(TaskStatus.DELETED), Mockito.any(), Mockito.eq(PageRequest.of(0, 100))))
+        .thenReturn(taskIds);
+    Mockito.when(archivedTaskRepository.archiveTasks(Mockito.eq(taskIds), Mockito.any()))
+        .thenReturn(List.<Number>of(7L, 7L, 8L));
+
+    // when
+    int archived = taskArchiveService.archiveDeletedTasks();
+
+    // then -> copied first, comments deleted before their tasks, one revision per team
+    assertEquals(3, archived);
+    InOrder inOrder = Mockito.inOrder(
+        archivedCommentRepository, archivedTaskRepository, commentRepository, taskRepository);
+    inOrder.verify(archivedCommentRepository).archiveComments(taskIds);
+    inOrder.verify(archivedTaskRepository).archiveTasks(Mockito.eq(taskIds), Mockito.any());
+    inOrder.verify(commentRepository).deleteByTaskIds(taskIds);
+    inOrder.verify(taskRepository).deleteByTaskIds(taskIds);
+    Mockito.verify(teamService).nextRevisions(Set.of(7L, 8L));
+  }
+
+  @Test
+  public void restoreTask_archivedTask_restoredAndNotified() {
+    // given
+    Team team = new Team();
+    team.setTeamId(7L);
+    Task task = new Task();
+    task.setTaskId(1L);
+    task.setStatus(TaskStatus.TODO);
+    task.setTeam(team);
+
+    Mockito.when(archivedTaskRepository.existsByTaskIdAndTeamId(1L, 7L)).thenReturn(true);
+    Mockito.when(taskRepository.findById(1L)).thenReturn(Optional.of(task));
+    Mockito.when(teamService.nextRevision(7L)).thenReturn(5L);
+
+    // when
+    Task restoredTask = taskArchiveService.restoreTask(7L, 1L);
+
+    // then
+    assertEquals(task, restoredTask);
+    Mockito.verify(archivedTaskRepository)
+        .restoreTask(Mockito.eq(1L), Mockito.eq(TaskStatus.TODO.ordinal()), Mockito.any());
+    Mockito.verify(archivedCommentRepository).restoreComments(1L);
+    Mockito.verify(archivedCommentRepository).deleteByTaskId(1L);
+    Mockito.verify(archivedTaskRepository).deleteByTaskId(1L);
+    Mockito.verify(pusherService).taskModification(task, 5L);
+  }
+
+  @Test
+  public void restoreTask_notArchived_throwsNotFound() {
+    // given
+    Mockito.when(archivedTaskRepository.existsByTaskIdAndTeamId(1L, 7L)).thenReturn(false);
+
+    // when/then
+    ResponseStatusException exception =
+        assertThrows(ResponseStatusException.class, () -> taskArchiveService.restoreTask(7L, 1L));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+    Mockito.verify(archivedTaskRepository, Mockito.never())
+        .restoreTask(Mockito.any(), Mockito.anyInt(), Mockito.any());
+  }
+}
@@ -0,0 +1,56 @@
+package ch.uzh.ifi.hase.soprafs24.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+public class TaskCursorTest {
+  @Test
+  public void encodeDecode_samePosition() {
+    LocalDateTime creationDate = LocalDateTime.of(2024, 4, 1, 12, 30, 15, 123456000);
+
+    TaskCursor decoded = TaskCursor.decode(
+        new TaskCursor(creationDate, TaskStatus.IN_SESSION, 42L, "Fix | the Bug").encode());
+
+    assertEquals(creationDate, decoded.getCreationDate());
+    assertEquals(TaskStatus.IN_SESSION, decoded.getStatus());
+    assertEquals(42L, decoded.getTaskId());
+    assertEquals("Fix | the Bug", decoded.getTitle());
+  }
+
+  @Test
+  public void of_listingTask_keepsExactCreationDate() {
+    // microseconds are lost in the Date of the response, but not in the cursor
+    LocalDateTime creationDate = LocalDateTime.of(2024, 4, 1, 12, 30, 15, 123456000);
+    TaskGetDTO task = new TaskGetDTO(42L, "Title", "", creationDate, TaskStatus.TODO, 0L);
+
+    TaskCursor decoded = TaskCursor.decode(TaskCursor.of(task).encode());
+
+    assertEquals(creationDate, decoded.getCreationDate());
+    assertEquals(42L, decoded.getTaskId());
+  }
+
+  @Test
+  public void decode_invalidBase64_throwsBadRequest() {
+    ResponseStatusException exception =
+        assertThrows(ResponseStatusException.class, () -> TaskCursor.decode("not a cursor!"));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+
+  @Test
+  public void decode_invalidContent_throwsBadRequest() {
+    // valid base64, but no sort keys
+    assertThrows(ResponseStatusException.class, () -> TaskCursor.decode("aGVsbG8"));
+    // unknown status
+    String cursor = Base64.getUrlEncoder().encodeToString(
+        "2024-04-01T12:30:15|OPEN|42|Title".getBytes(StandardCharsets.UTF_8));
+    assertThrows(ResponseStatusException.class, () -> TaskCursor.decode(cursor));
+  }
+}
@@ -7,6 +7,7 @@ import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
@@ -44,7 +45,7 @@ public class TaskServiceIntegrationTest {
     teamRepository.deleteAll();
 
     // mock pusher service taskModification method
-    Mockito.doNothing().when(pusherService).taskModification(Mockito.anyString());
+    Mockito.doNothing().when(pusherService).taskModification(Mockito.any(), Mockito.anyLong());
   }
 
   // region create task
@@ -220,7 +221,7 @@ public class TaskServiceIntegrationTest {
     taskRepository.saveAndFlush(testTask2);
 
     // when
-    List<Task> tasks = taskService.getTasksByTeamId(team.getTeamId());
+    List<TaskGetDTO> tasks = taskService.getTasksByTeamId(team.getTeamId());
 
     // then
     assertEquals(2, tasks.size());
@@ -253,7 +254,7 @@ public class TaskServiceIntegrationTest {
     taskRepository.saveAndFlush(testTask2);
 
     // when
-    List<Task> tasks = taskService.getTasksByTeamId(team.getTeamId());
+    List<TaskGetDTO> tasks = taskService.getTasksByTeamId(team.getTeamId());
 
     // then
     assertEquals(1, tasks.size());
@@ -261,7 +262,7 @@ public class TaskServiceIntegrationTest {
     assertEquals(tasks.get(0).getTitle(), testTask1.getTitle());
     assertEquals(tasks.get(0).getDescription(), testTask1.getDescription());
     assertEquals(tasks.get(0).getStatus(), testTask1.getStatus());
-    assertEquals(tasks.get(0).getTeam().getTeamId(), testTask1.getTeam().getTeamId());
+    assertNotNull(tasks.get(0).getCreationDate());
   }
 
   @Test
@@ -313,7 +314,7 @@ public class TaskServiceIntegrationTest {
     statusList.add(TaskStatus.TODO);
 
     // when
-    List<Task> tasks = taskService.getTasksByTeamIdAndStatus(team.getTeamId(), statusList);
+    List<TaskGetDTO> tasks = taskService.getTasksByTeamIdAndStatus(team.getTeamId(), statusList);
 
     // then
     assertEquals(1, tasks.size());
@@ -434,6 +435,54 @@ public class TaskServiceIntegrationTest {
         () -> taskService.updateTask(nonExistingTask, savedTeam.getTeamId()));
   }
 
+  /**
+   * Test for two users updating the same version of a task: the second update fails with 409
+   */
+  @Test
+  public void updateTask_sameVersionTwice_secondThrowsConflict() {
+    // given a team
+    Team team = new Team();
+    team.setName("Team A");
+    team.setDescription("Lorem");
+    team.setTeamUUID("team-uuid");
+    Team savedTeam = teamRepository.saveAndFlush(team);
+
+    // given an existing task, loaded by two users
+    Task existingTask = new Task();
+    existingTask.setTitle("Task A");
+    existingTask.setDescription("This is task A");
+    existingTask.setTeam(savedTeam);
+    existingTask.setStatus(TaskStatus.TODO);
+    Task savedTask = taskRepository.saveAndFlush(existingTask);
+    assertEquals(0L, savedTask.getVersion());
+
+    Task firstUpdate = new Task();
+    firstUpdate.setTaskId(savedTask.getTaskId());
+    firstUpdate.setTitle("Task A by user 1");
+    firstUpdate.setDescription("This is task A");
+    firstUpdate.setStatus(TaskStatus.DONE);
+    firstUpdate.setVersion(savedTask.getVersion());
+
+    Task secondUpdate = new Task();
+    secondUpdate.setTaskId(savedTask.getTaskId());
+    secondUpdate.setTitle("Task A by user 2");
+    secondUpdate.setDescription("This is task A");
+    secondUpdate.setStatus(TaskStatus.IN_SESSION);
+    secondUpdate.setVersion(savedTask.getVersion());
+
+    // when
+    Task updatedTask = taskService.updateTask(firstUpdate, savedTeam.getTeamId());
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTask(secondUpdate, savedTeam.getTeamId()));
+
+    // then -> the first update is kept with the next version
+    assertEquals(1L, updatedTask.getVersion());
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    Task storedTask = taskRepository.findById(savedTask.getTaskId()).orElseThrow();
+    assertEquals("Task A by user 1", storedTask.getTitle());
+    assertEquals(1L, storedTask.getVersion());
+  }
+
   @ParameterizedTest
   @MethodSource("updateTaskLengthTests")
   void updateTask_testInputLength(String title, String description, boolean shouldThrow) {
@@ -2,11 +2,16 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import ch.uzh.ifi.hase.soprafs24.constant.TaskSort;
 import ch.uzh.ifi.hase.soprafs24.constant.TaskStatus;
 import ch.uzh.ifi.hase.soprafs24.entity.Task;
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
+import ch.uzh.ifi.hase.soprafs24.repository.CommentRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.TaskRepository;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.dto.TaskPageGetDTO;
+import ch.uzh.ifi.hase.soprafs24.rest.mapper.DTOMapper;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
@@ -17,11 +22,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.server.ResponseStatusException;
 
 public class TaskServiceTest {
   @Mock private TaskRepository taskRepository;
+  @Mock private CommentRepository commentRepository;
   @Mock private TeamService teamService;
 
   @InjectMocks private TaskService taskService;
@@ -29,7 +38,6 @@ public class TaskServiceTest {
 
   private Task testTask;
   private Team testTeam;
-  private List<Task> tasks;
 
   @BeforeEach
   public void setup() {
@@ -42,6 +50,7 @@ public class TaskServiceTest {
     testTask.setDescription("This is task 1");
     testTask.setCreationDate(LocalDateTime.now());
     testTask.setStatus(TaskStatus.TODO);
+    testTask.setVersion(3L);
 
     testTeam = new Team();
     testTeam.setTeamId(1L);
@@ -50,14 +59,11 @@ public class TaskServiceTest {
 
     testTask.setTeam(testTeam);
 
-    tasks = new ArrayList<>();
-    tasks.add(testTask);
-
     // when -> any object is being save in the taskRepository -> return the dummy testTask
     Mockito.when(taskRepository.save(Mockito.any())).thenReturn(testTask);
 
     // when pusher call -> mock
-    Mockito.doNothing().when(pusherService).taskModification(Mockito.anyString());
+    Mockito.doNothing().when(pusherService).taskModification(Mockito.any(), Mockito.anyLong());
   }
 
   // POST
@@ -138,20 +144,46 @@ public class TaskServiceTest {
    */
   @Test
   public void getTasksByTeamId_validInputs_success() {
-    // when -> try to find teamId in the teamService -> return dummy team
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
-
-    // when -> try to find tasks by team in the taskRepository -> return list with dummy task
+    // when -> try to find tasks of the team in the taskRepository -> return list with dummy task
+    TaskGetDTO testTaskGetDTO = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(testTask);
     Mockito
-        .when(taskRepository.findByTeamAndStatusNot(Mockito.any(), Mockito.eq(TaskStatus.DELETED)))
-        .thenReturn(tasks);
+        .when(taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(
+            testTeam.getTeamId(), TaskStatus.DELETED))
+        .thenReturn(List.of(testTaskGetDTO));
 
     // call the method under test
-    List<Task> foundTasks = taskService.getTasksByTeamId(testTeam.getTeamId());
+    List<TaskGetDTO> foundTasks = taskService.getTasksByTeamId(testTeam.getTeamId());
 
-    // assert found list with one task
+    // assert found list with one task, the team is only checked and not loaded
     assertEquals(1, foundTasks.size());
-    assertEquals(testTask, foundTasks.get(0));
+    assertEquals(testTaskGetDTO, foundTasks.get(0));
+    Mockito.verify(teamService, Mockito.times(1)).checkTeamExists(testTeam.getTeamId());
+    Mockito.verify(teamService, Mockito.never()).getTeamByTeamId(Mockito.any());
+  }
+
+  /**
+   * Test for the comment counts of the listed tasks, read with one grouped query for all tasks
+   */
+  @Test
+  public void getTasksByTeamId_commentCounts_oneQuery() {
+    // given two tasks, only the first one has comments
+    TaskGetDTO taskWithComments = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(testTask);
+    TaskGetDTO taskWithoutComments = new TaskGetDTO();
+    taskWithoutComments.setTaskId(2L);
+    Mockito
+        .when(taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(
+            testTeam.getTeamId(), TaskStatus.DELETED))
+        .thenReturn(List.of(taskWithComments, taskWithoutComments));
+    Mockito.when(commentRepository.countByTaskIds(List.of(1L, 2L)))
+        .thenReturn(List.<Object[]>of(new Object[] {1L, 3L}));
+
+    // call the method under test
+    List<TaskGetDTO> foundTasks = taskService.getTasksByTeamId(testTeam.getTeamId());
+
+    // assert counts of both tasks
+    assertEquals(3L, foundTasks.get(0).getCommentCount());
+    assertEquals(0L, foundTasks.get(1).getCommentCount());
+    Mockito.verify(commentRepository, Mockito.times(1)).countByTaskIds(Mockito.any());
   }
 
   /**
@@ -159,19 +191,18 @@ public class TaskServiceTest {
    */
   @Test
   public void getTasksByTeamId_validInputs_noTasks() {
-    // when -> try to find teamId in the teamService -> return dummy team
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
-
-    // when -> try to find tasks by team in the taskRepository -> return empty list
+    // when -> try to find tasks of the team in the taskRepository -> return empty list
     Mockito
-        .when(taskRepository.findByTeamAndStatusNot(Mockito.any(), Mockito.eq(TaskStatus.DELETED)))
+        .when(taskRepository.findTaskGetDTOsByTeamIdAndStatusNot(
+            Mockito.any(), Mockito.eq(TaskStatus.DELETED)))
         .thenReturn(new ArrayList<>());
 
     // call the method under test
-    List<Task> foundTasks = taskService.getTasksByTeamId(testTeam.getTeamId());
+    List<TaskGetDTO> foundTasks = taskService.getTasksByTeamId(testTeam.getTeamId());
 
-    // assert found empty list
+    // assert found empty list, no comments are counted
     assertEquals(0, foundTasks.size());
+    Mockito.verify(commentRepository, Mockito.never()).countByTaskIds(Mockito.any());
   }
 
   /**
@@ -179,10 +210,12 @@ public class TaskServiceTest {
    */
   @Test
   public void getTasksByTeamId_invalidInputs_teamDoesNotExist_throwsException() {
-    // when -> try to find teamId in the teamService -> return null
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any()))
-        .thenThrow(new ResponseStatusException(
-            HttpStatus.NOT_FOUND, "Team not found with id " + testTeam.getTeamId()));
+    // when -> check that the team exists in the teamService -> not found
+    Mockito
+        .doThrow(new ResponseStatusException(
+            HttpStatus.NOT_FOUND, "Team not found with id " + testTeam.getTeamId()))
+        .when(teamService)
+        .checkTeamExists(Mockito.any());
 
     // call the method under test and assert an exception is thrown
     assertThrows(
@@ -201,22 +234,21 @@ public class TaskServiceTest {
     status.add(TaskStatus.TODO);
     status.add(TaskStatus.IN_SESSION);
 
-    // when -> try to find teamId in the teamService -> return dummy team
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
-
     // when -> try to find tasks by team and status in the taskRepository -> return list with dummy
     // task
+    TaskGetDTO testTaskGetDTO = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(testTask);
     Mockito
-        .when(
-            taskRepository.findByTeamAndStatusInOrderByTitleAsc(Mockito.any(), Mockito.eq(status)))
-        .thenReturn(tasks);
+        .when(taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+            Mockito.any(), Mockito.eq(status)))
+        .thenReturn(List.of(testTaskGetDTO));
 
     // call the method under test
-    List<Task> foundTasks = taskService.getTasksByTeamIdAndStatus(testTeam.getTeamId(), status);
+    List<TaskGetDTO> foundTasks =
+        taskService.getTasksByTeamIdAndStatus(testTeam.getTeamId(), status);
 
     // assert found list with one task
     assertEquals(1, foundTasks.size());
-    assertEquals(testTask, foundTasks.get(0));
+    assertEquals(testTaskGetDTO, foundTasks.get(0));
   }
 
   /*
@@ -229,17 +261,15 @@ public class TaskServiceTest {
     status.add(TaskStatus.TODO);
     status.add(TaskStatus.IN_SESSION);
 
-    // when -> try to find teamId in the teamService -> return dummy team
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any())).thenReturn(testTeam);
-
     // when -> try to find tasks by team and status in the taskRepository -> return empty list
     Mockito
-        .when(
-            taskRepository.findByTeamAndStatusInOrderByTitleAsc(Mockito.any(), Mockito.eq(status)))
+        .when(taskRepository.findTaskGetDTOsByTeamIdAndStatusInOrderByTitleAsc(
+            Mockito.any(), Mockito.eq(status)))
         .thenReturn(new ArrayList<>());
 
     // call the method under test
-    List<Task> foundTasks = taskService.getTasksByTeamIdAndStatus(testTeam.getTeamId(), status);
+    List<TaskGetDTO> foundTasks =
+        taskService.getTasksByTeamIdAndStatus(testTeam.getTeamId(), status);
 
     // assert found empty list
     assertEquals(0, foundTasks.size());
@@ -255,10 +285,12 @@ public class TaskServiceTest {
     status.add(TaskStatus.TODO);
     status.add(TaskStatus.IN_SESSION);
 
-    // when -> try to find teamId in the teamService -> return null
-    Mockito.when(teamService.getTeamByTeamId(Mockito.any()))
-        .thenThrow(new ResponseStatusException(
-            HttpStatus.NOT_FOUND, "Team not found with id " + testTeam.getTeamId()));
+    // when -> check that the team exists in the teamService -> not found
+    Mockito
+        .doThrow(new ResponseStatusException(
+            HttpStatus.NOT_FOUND, "Team not found with id " + testTeam.getTeamId()))
+        .when(teamService)
+        .checkTeamExists(Mockito.any());
 
     // call the method under test and assert an exception is thrown
     assertThrows(ResponseStatusException.class,
@@ -267,6 +299,102 @@ public class TaskServiceTest {
 
   // endregion
 
+  // region getTaskPage
+
+  /**
+   * Test for the first page of tasks, the cursor of the next page is the last task of the page
+   */
+  @Test
+  public void getTaskPage_firstPage_hasNext_returnsCursor() {
+    // given
+    TaskGetDTO testTaskGetDTO = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(testTask);
+    Mockito
+        .when(taskRepository.findPageOrderByTitle(
+            Mockito.eq(testTeam.getTeamId()), Mockito.anyList(), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(testTaskGetDTO), PageRequest.of(0, 1), true));
+
+    // call the method under test
+    TaskPageGetDTO page =
+        taskService.getTaskPage(testTeam.getTeamId(), null, TaskSort.TITLE, 1, null);
+
+    // assert one task and the cursor of the last task
+    assertEquals(List.of(testTaskGetDTO), page.getTasks());
+    assertEquals(TaskCursor.of(testTaskGetDTO).encode(), page.getNextCursor());
+
+    // no status -> all tasks except the deleted ones
+    Mockito.verify(taskRepository)
+        .findPageOrderByTitle(Mockito.any(),
+            Mockito.eq(List.of(TaskStatus.TODO, TaskStatus.IN_SESSION,
+                TaskStatus.IN_SESSION_DONE, TaskStatus.DONE)),
+            Mockito.any());
+  }
+
+  /**
+   * Test for the next page of tasks, the sort keys are taken from the cursor
+   */
+  @Test
+  public void getTaskPage_withCursor_lastPage_noCursor() {
+    // given
+    LocalDateTime creationDate = testTask.getCreationDate();
+    List<TaskStatus> status = List.of(TaskStatus.TODO);
+    String cursor = new TaskCursor(creationDate, TaskStatus.TODO, 7L, "task7").encode();
+    Mockito
+        .when(taskRepository.findPageOrderByCreationDateAfter(Mockito.eq(testTeam.getTeamId()),
+            Mockito.eq(status), Mockito.eq(creationDate), Mockito.eq(7L), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(), PageRequest.of(0, 10), false));
+
+    // call the method under test
+    TaskPageGetDTO page = taskService.getTaskPage(
+        testTeam.getTeamId(), status, TaskSort.CREATION_DATE, 10, cursor);
+
+    // assert empty last page
+    assertTrue(page.getTasks().isEmpty());
+    assertNull(page.getNextCursor());
+  }
+
+  /**
+   * Test for a cursor whose task does not exist anymore, the next page still starts after it
+   */
+  @Test
+  public void getTaskPage_deletedCursorTask_nextPage() {
+    // given
+    TaskGetDTO testTaskGetDTO = DTOMapper.INSTANCE.convertEntityToTaskGetDTO(testTask);
+    String cursor =
+        new TaskCursor(LocalDateTime.now(), TaskStatus.TODO, 7L, "Deleted | task").encode();
+    Mockito
+        .when(taskRepository.findPageOrderByStatusAfter(Mockito.eq(testTeam.getTeamId()),
+            Mockito.anyList(), Mockito.eq(TaskStatus.TODO), Mockito.eq("Deleted | task"),
+            Mockito.eq(7L), Mockito.any()))
+        .thenReturn(new SliceImpl<>(List.of(testTaskGetDTO), PageRequest.of(0, 10), false));
+
+    // call the method under test
+    TaskPageGetDTO page =
+        taskService.getTaskPage(testTeam.getTeamId(), null, TaskSort.STATUS, 10, cursor);
+
+    // assert the page after the cursor, only the team is checked
+    assertEquals(List.of(testTaskGetDTO), page.getTasks());
+    assertNull(page.getNextCursor());
+  }
+
+  /**
+   * Test for an invalid limit or cursor, nothing is queried
+   */
+  @Test
+  public void getTaskPage_invalidLimitOrCursor_throwsBadRequest() {
+    assertThrows(ResponseStatusException.class,
+        () -> taskService.getTaskPage(testTeam.getTeamId(), null, TaskSort.TITLE, 0, null));
+    assertThrows(ResponseStatusException.class,
+        ()
+            -> taskService.getTaskPage(testTeam.getTeamId(), null, TaskSort.TITLE,
+                TaskService.MAX_PAGE_SIZE + 1, null));
+    assertThrows(ResponseStatusException.class,
+        () -> taskService.getTaskPage(testTeam.getTeamId(), null, TaskSort.TITLE, 10, "invalid"));
+
+    Mockito.verifyNoInteractions(taskRepository);
+  }
+
+  // endregion
+
   // PUT
 
   /**
@@ -281,6 +409,7 @@ public class TaskServiceTest {
     updatedTask.setDescription("Updated Task Description");
     updatedTask.setStatus(TaskStatus.DONE);
     updatedTask.setTeam(testTeam);
+    updatedTask.setVersion(testTask.getVersion());
 
     // when
     Mockito.when(taskRepository.findById(testTask.getTaskId())).thenReturn(Optional.of(testTask));
@@ -348,4 +477,185 @@ public class TaskServiceTest {
         () -> taskService.updateTask(updatedTask, differentTeam.getTeamId()));
     Mockito.verify(taskRepository, Mockito.times(0)).save(Mockito.any());
   }
+
+  /**
+   * Test for updating a task with the version of an older state -> 409, nothing saved
+   */
+  @Test
+  public void updateTask_outdatedVersion_throwsConflict() {
+    // given -> the client edited version 2, the task is at version 3
+    Task updatedTask = new Task();
+    updatedTask.setTaskId(testTask.getTaskId());
+    updatedTask.setTitle("Updated Task Title");
+    updatedTask.setDescription("Updated Task Description");
+    updatedTask.setStatus(TaskStatus.DONE);
+    updatedTask.setVersion(2L);
+    Mockito.when(taskRepository.findById(testTask.getTaskId())).thenReturn(Optional.of(testTask));
+
+    // then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTask(updatedTask, testTeam.getTeamId()));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals("task1", testTask.getTitle());
+    Mockito.verify(taskRepository, Mockito.never()).save(Mockito.any());
+    Mockito.verifyNoInteractions(pusherService);
+  }
+
+  /**
+   * Test for updating a task without version -> 400
+   */
+  @Test
+  public void updateTask_missingVersion_throwsBadRequest() {
+    // given
+    Task updatedTask = new Task();
+    updatedTask.setTaskId(testTask.getTaskId());
+    updatedTask.setTitle("Updated Task Title");
+    Mockito.when(taskRepository.findById(testTask.getTaskId())).thenReturn(Optional.of(testTask));
+
+    // then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTask(updatedTask, testTeam.getTeamId()));
+    assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+  }
+
+  /**
+   * Test for a concurrent update between loading and writing the task -> 409
+   */
+  @Test
+  public void updateTask_concurrentUpdate_throwsConflict() {
+    // given -> the update statement does not match the version anymore
+    Task updatedTask = new Task();
+    updatedTask.setTaskId(testTask.getTaskId());
+    updatedTask.setTitle("Updated Task Title");
+    updatedTask.setDescription("Updated Task Description");
+    updatedTask.setStatus(TaskStatus.DONE);
+    updatedTask.setVersion(testTask.getVersion());
+    Mockito.when(taskRepository.findById(testTask.getTaskId())).thenReturn(Optional.of(testTask));
+    Mockito.doThrow(new ObjectOptimisticLockingFailureException(Task.class, testTask.getTaskId()))
+        .when(taskRepository)
+        .flush();
+
+    // then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTask(updatedTask, testTeam.getTeamId()));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    Mockito.verifyNoInteractions(pusherService);
+  }
+
+  // region updateTasks
+
+  private Task createTaskUpdate(Long taskId, TaskStatus status) {
+    Task update = new Task();
+    update.setTaskId(taskId);
+    update.setTitle("Updated Task " + taskId);
+    update.setDescription("Updated Description");
+    update.setStatus(status);
+    update.setVersion(3L);
+    return update;
+  }
+
+  /**
+   * Test for updating several tasks at once: one query, one flush, one revision and one event
+   */
+  @Test
+  public void updateTasks_validInputs_success() {
+    // given
+    Task testTask2 = new Task();
+    testTask2.setTaskId(2L);
+    testTask2.setTitle("task2");
+    testTask2.setStatus(TaskStatus.TODO);
+    testTask2.setVersion(3L);
+    testTask2.setTeam(testTeam);
+
+    List<Task> updates =
+        List.of(createTaskUpdate(2L, TaskStatus.DONE), createTaskUpdate(1L, TaskStatus.DONE));
+    Mockito.when(taskRepository.findByTeamIdAndTaskIdIn(Mockito.eq(1L), Mockito.any()))
+        .thenReturn(List.of(testTask, testTask2));
+    Mockito.when(teamService.nextRevision(1L)).thenReturn(9L);
+
+    // call the method under test
+    List<Task> updatedTasks = taskService.updateTasks(updates, testTeam.getTeamId());
+
+    // assert updated in the order of the input
+    assertEquals(List.of(testTask2, testTask), updatedTasks);
+    assertEquals("Updated Task 2", testTask2.getTitle());
+    assertEquals(TaskStatus.DONE, testTask.getStatus());
+    Mockito.verify(taskRepository, Mockito.times(1)).findByTeamIdAndTaskIdIn(Mockito.any(),
+        Mockito.any());
+    Mockito.verify(taskRepository, Mockito.times(1)).flush();
+    Mockito.verify(taskRepository, Mockito.never()).save(Mockito.any());
+    Mockito.verify(pusherService, Mockito.times(1)).tasksModification(1L, updatedTasks, 9L);
+    Mockito.verify(pusherService, Mockito.never()).taskModification(Mockito.any(),
+        Mockito.anyLong());
+  }
+
+  /**
+   * Test for updating several tasks where one does not belong to the team
+   */
+  @Test
+  public void updateTasks_taskOfOtherTeam_throwsNotFound() {
+    // given -> only task 1 is a task of the team
+    List<Task> updates =
+        List.of(createTaskUpdate(1L, TaskStatus.DONE), createTaskUpdate(3L, TaskStatus.DONE));
+    Mockito.when(taskRepository.findByTeamIdAndTaskIdIn(Mockito.eq(1L), Mockito.any()))
+        .thenReturn(List.of(testTask));
+
+    // call the method under test and assert an exception is thrown
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTasks(updates, testTeam.getTeamId()));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+    assertEquals("task1", testTask.getTitle());
+    Mockito.verifyNoInteractions(pusherService);
+  }
+
+  /**
+   * Test for updating several tasks where one was changed in the meantime -> 409, nothing changed
+   */
+  @Test
+  public void updateTasks_outdatedVersion_throwsConflict() {
+    // given -> task 1 is at version 3, the client edited version 2
+    Task outdatedUpdate = createTaskUpdate(1L, TaskStatus.DONE);
+    outdatedUpdate.setVersion(2L);
+    Task testTask2 = new Task();
+    testTask2.setTaskId(2L);
+    testTask2.setTitle("task2");
+    testTask2.setVersion(3L);
+    testTask2.setTeam(testTeam);
+
+    List<Task> updates = List.of(createTaskUpdate(2L, TaskStatus.DONE), outdatedUpdate);
+    Mockito.when(taskRepository.findByTeamIdAndTaskIdIn(Mockito.eq(1L), Mockito.any()))
+        .thenReturn(List.of(testTask, testTask2));
+
+    // call the method under test and assert an exception is thrown
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> taskService.updateTasks(updates, testTeam.getTeamId()));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    assertEquals("task2", testTask2.getTitle());
+    Mockito.verify(taskRepository, Mockito.never()).flush();
+    Mockito.verifyNoInteractions(pusherService);
+  }
+
+  /**
+   * Test for invalid batches: empty, too large, duplicate task, missing id
+   */
+  @Test
+  public void updateTasks_invalidInputs_throwsBadRequest() {
+    List<Task> tooManyUpdates = new ArrayList<>();
+    for (long i = 0; i <= TaskService.MAX_BATCH_SIZE; i++) {
+      tooManyUpdates.add(createTaskUpdate(i, TaskStatus.DONE));
+    }
+    List<Task> duplicateUpdates =
+        List.of(createTaskUpdate(1L, TaskStatus.DONE), createTaskUpdate(1L, TaskStatus.TODO));
+    List<Task> missingId = List.of(createTaskUpdate(null, TaskStatus.DONE));
+
+    assertThrows(ResponseStatusException.class, () -> taskService.updateTasks(List.of(), 1L));
+    assertThrows(ResponseStatusException.class, () -> taskService.updateTasks(tooManyUpdates, 1L));
+    assertThrows(
+        ResponseStatusException.class, () -> taskService.updateTasks(duplicateUpdates, 1L));
+    assertThrows(ResponseStatusException.class, () -> taskService.updateTasks(missingId, 1L));
+    Mockito.verify(taskRepository, Mockito.never()).findByTeamIdAndTaskIdIn(Mockito.any(),
+        Mockito.any());
+  }
+
+  // endregion
 }
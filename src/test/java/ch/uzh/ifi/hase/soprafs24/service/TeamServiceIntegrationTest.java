@@ -57,7 +57,7 @@ public class TeamServiceIntegrationTest {
     assertEquals(team.getDescription(), foundTeam.getDescription());
 
     // mock pusher service
-    Mockito.doNothing().when(pusherService).updateTeam(Mockito.anyString());
+    Mockito.doNothing().when(pusherService).updateTeam(Mockito.any(), Mockito.anyLong());
   }
 
   @Test
@@ -4,6 +4,9 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.repository.TeamRepository;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -34,6 +37,7 @@ public class TeamServiceTest {
 
     // when -> any object is being save in the teamRepository -> return the dummy testTeam
     Mockito.when(teamRepository.save(Mockito.any())).thenReturn(testTeam);
+    Mockito.when(teamRepository.incrementRevision(Mockito.anyLong())).thenReturn(1L);
   }
 
   // region findByTeamId tests
@@ -59,7 +63,7 @@ public class TeamServiceTest {
     assertEquals(team.getTeamUUID(), foundTeam.getTeamUUID());
 
     // when pusher call -> mock
-    Mockito.doNothing().when(pusherService).updateTeam(Mockito.anyString());
+    Mockito.doNothing().when(pusherService).updateTeam(Mockito.any(), Mockito.anyLong());
   }
 
   @Test
@@ -171,7 +175,7 @@ public class TeamServiceTest {
     assertEquals(testTeam.getTeamId(), savedUpdatedTeam.getTeamId());
     assertEquals(updatedTeam.getName(), savedUpdatedTeam.getName());
     assertEquals(updatedTeam.getDescription(), savedUpdatedTeam.getDescription());
-    Mockito.verify(pusherService, Mockito.times(1)).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.times(1)).updateTeam(Mockito.any(), Mockito.anyLong());
   }
 
   @Test
@@ -190,7 +194,7 @@ public class TeamServiceTest {
     // then -> attempt to update team with empty name -> check that an error is thrown
     assertThrows(ResponseStatusException.class, () -> tempTeamService.updateTeam(updatedTeam));
     Mockito.verify(teamRepository, Mockito.never()).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.any(), Mockito.anyLong());
   }
 
   @Test
@@ -211,7 +215,59 @@ public class TeamServiceTest {
     // then -> attempt to update team with invalid id -> check that an error is thrown
     assertThrows(ResponseStatusException.class, () -> tempTeamService.updateTeam(updatedTeam));
     Mockito.verify(teamRepository, Mockito.never()).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.any(), Mockito.anyLong());
+  }
+  // endregion
+
+  // region revision tests
+
+  @Test
+  public void nextRevision_success() {
+    Mockito.when(teamRepository.incrementRevision(1L)).thenReturn(7L);
+
+    assertEquals(7L, teamService.nextRevision(1L));
+  }
+
+  @Test
+  public void nextRevision_teamNotFound_throwsException() {
+    Mockito.when(teamRepository.incrementRevision(99L)).thenReturn(null);
+
+    ResponseStatusException exception =
+        assertThrows(ResponseStatusException.class, () -> teamService.nextRevision(99L));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+  // endregion
+
+  // region ETag tests
+
+  @Test
+  public void getTeamETag_success() {
+    Mockito.when(teamRepository.findRevisionByTeamId(1L)).thenReturn(4L);
+
+    assertEquals("team-1-r4", teamService.getTeamETag(1L));
+    Mockito.verify(teamRepository, Mockito.never()).findById(Mockito.any());
+  }
+
+  @Test
+  public void getTeamETag_teamNotFound_throwsException() {
+    Mockito.when(teamRepository.findRevisionByTeamId(99L)).thenReturn(null);
+
+    assertThrows(ResponseStatusException.class, () -> teamService.getTeamETag(99L));
+  }
+
+  @Test
+  public void nextRevisions_returnsRevisionByTeam() {
+    Mockito.when(teamRepository.incrementRevisions(List.of(1L, 2L)))
+        .thenReturn(List.of(new Object[] {BigInteger.ONE, BigInteger.valueOf(3)},
+            new Object[] {BigInteger.TWO, 8L}));
+
+    assertEquals(Map.of(1L, 3L, 2L, 8L), teamService.nextRevisions(List.of(1L, 2L)));
+  }
+
+  @Test
+  public void nextRevisions_noTeams_noUpdate() {
+    assertEquals(Map.of(), teamService.nextRevisions(List.of()));
+    Mockito.verify(teamRepository, Mockito.never()).incrementRevisions(Mockito.any());
   }
   // endregion
 }
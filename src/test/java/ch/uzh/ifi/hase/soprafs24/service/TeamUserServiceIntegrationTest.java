@@ -44,7 +44,10 @@ public class TeamUserServiceIntegrationTest {
     userRepository.deleteAll();
 
     // mock pusher service
-    Mockito.doNothing().when(pusherService).updateTeam(Mockito.anyString());
+    Mockito.doNothing()
+        .when(pusherService)
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   @Test
@@ -11,7 +11,6 @@ import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -24,10 +23,10 @@ public class TeamUserServiceTest {
   @Mock private UserRepository userRepository;
 
   @Mock private TeamService teamService;
-  @InjectMocks private TeamUserService teamUserService;
-
   @Mock private PusherService pusherService;
 
+  private TeamUserService teamUserService;
+
   private Team testTeam;
   private User testUser;
   private TeamUser testTeamUser;
@@ -35,6 +34,8 @@ public class TeamUserServiceTest {
   @BeforeEach
   public void setup() {
     MockitoAnnotations.openMocks(this);
+    teamUserService = new TeamUserService(
+        userRepository, teamRepository, teamUserRepository, teamService, pusherService, 100, 60);
 
     // given
     testTeam = new Team();
@@ -55,7 +56,10 @@ public class TeamUserServiceTest {
     Mockito.when(teamUserRepository.save(Mockito.any())).thenReturn(testTeamUser);
 
     // when pusher call -> mock
-    Mockito.doNothing().when(pusherService).updateTeam(Mockito.anyString());
+    Mockito.doNothing()
+        .when(pusherService)
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   // region createTeamUser with teamId tests
@@ -75,7 +79,9 @@ public class TeamUserServiceTest {
 
     // then
     Mockito.verify(teamUserRepository, Mockito.times(1)).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.times(1)).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.times(1))
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
 
     // check that team/user objects are expected
     assertEquals(testTeamUser.getUser(), createdTeamUser.getUser());
@@ -99,7 +105,9 @@ public class TeamUserServiceTest {
         () -> teamUserService.createTeamUser(testTeam.getTeamId(), testUser.getUserId()));
 
     Mockito.verify(teamUserRepository, Mockito.never()).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   /**
@@ -118,7 +126,9 @@ public class TeamUserServiceTest {
         () -> teamUserService.createTeamUser(testTeam.getTeamId(), testUser.getUserId()));
 
     Mockito.verify(teamUserRepository, Mockito.never()).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
   // endregion
 
@@ -171,7 +181,9 @@ public class TeamUserServiceTest {
     assertEquals(0, foundTeams.size());
 
     Mockito.verify(teamUserRepository, Mockito.never()).save(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   /**
@@ -354,7 +366,9 @@ public class TeamUserServiceTest {
     assertEquals(testTeamUser.getTeam().getTeamId(), deletedTeamUser.getTeam().getTeamId());
     // then -> verify delete not called
     Mockito.verify(teamUserRepository, Mockito.times(1)).deleteById(Mockito.any());
-    Mockito.verify(pusherService, Mockito.times(1)).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.times(1))
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   /* delete unsuccessful: team user does not exist (should be caught from controller) */
@@ -374,7 +388,9 @@ public class TeamUserServiceTest {
         () -> teamUserService.deleteUserOfTeam(testTeam.getTeamId(), testUser.getUserId()));
     // then -> verify delete not called
     Mockito.verify(teamUserRepository, Mockito.never()).deleteById(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   /* delete unsuccessful: team does not exist */
@@ -394,7 +410,9 @@ public class TeamUserServiceTest {
         () -> teamUserService.deleteUserOfTeam(testTeam.getTeamId(), testUser.getUserId()));
     // then -> verify delete not called
     Mockito.verify(teamUserRepository, Mockito.never()).deleteById(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   /* delete unsuccessful: user does not exist */
@@ -413,7 +431,163 @@ public class TeamUserServiceTest {
         () -> teamUserService.deleteUserOfTeam(testTeam.getTeamId(), testUser.getUserId()));
     // then -> verify delete not called
     Mockito.verify(teamUserRepository, Mockito.never()).deleteById(Mockito.any());
-    Mockito.verify(pusherService, Mockito.never()).updateTeam(Mockito.anyString());
+    Mockito.verify(pusherService, Mockito.never())
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
+  }
+
+  @Test
+  public void deleteUserOfAllTeams_setBasedDelete() {
+    // given -> user is in two teams
+    Mockito.when(teamUserRepository.findTeamIdsByUserId(testUser.getUserId()))
+        .thenReturn(List.of(1L, 2L));
+
+    // when
+    List<Long> teamIds = teamUserService.deleteUserOfAllTeams(testUser.getUserId());
+
+    // then -> one statement, no notification (done by the caller)
+    assertEquals(List.of(1L, 2L), teamIds);
+    Mockito.verify(teamUserRepository, Mockito.times(1)).deleteByUserId(testUser.getUserId());
+    Mockito.verify(teamUserRepository, Mockito.never()).deleteById(Mockito.any());
+    Mockito.verifyNoInteractions(pusherService);
+  }
+
+  @Test
+  public void deleteUserOfAllTeams_noTeams_nothingDeleted() {
+    // given -> user is in no team
+    Mockito.when(teamUserRepository.findTeamIdsByUserId(testUser.getUserId()))
+        .thenReturn(List.of());
+
+    // when
+    List<Long> teamIds = teamUserService.deleteUserOfAllTeams(testUser.getUserId());
+
+    // then
+    assertTrue(teamIds.isEmpty());
+    Mockito.verify(teamUserRepository, Mockito.never()).deleteByUserId(Mockito.any());
+  }
+  // endregion
+
+  // region isUserInTeam
+  @Test
+  public void isUserInTeam_isMember_true() {
+    // when -> link exists
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(true);
+
+    // then
+    assertTrue(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+    Mockito.verify(teamRepository, Mockito.never()).existsById(Mockito.any());
+  }
+
+  @Test
+  public void isUserInTeam_isMember_cached() {
+    // when -> link exists
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(true);
+
+    // then -> second check is served from the cache
+    assertTrue(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+    assertTrue(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+    Mockito.verify(teamUserRepository, Mockito.times(1)).existsByTeamUserId(Mockito.any());
+  }
+
+  @Test
+  public void isUserInTeam_notMember_false() {
+    // when -> link does not exist, but team exists
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(false);
+    Mockito.when(teamRepository.existsById(Mockito.any())).thenReturn(true);
+
+    // then
+    assertFalse(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+  }
+
+  @Test
+  public void isUserInTeam_teamDoesNotExist_throwsNotFound() {
+    // when -> link and team do not exist
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(false);
+    Mockito.when(teamRepository.existsById(Mockito.any())).thenReturn(false);
+
+    // then
+    ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+        () -> teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+    assertEquals(HttpStatus.NOT_FOUND, exception.getStatus());
+  }
+
+  @Test
+  public void isUserInTeam_afterCreateTeamUser_cached() {
+    // given -> link is created
+    Mockito.when(teamService.getTeamByTeamId(Mockito.anyLong())).thenReturn(testTeam);
+    Mockito.when(userRepository.findById(Mockito.any()))
+        .thenReturn(java.util.Optional.of(testUser));
+    teamUserService.createTeamUser(testTeam.getTeamId(), testUser.getUserId());
+
+    // then -> no lookup needed
+    assertTrue(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+    Mockito.verify(teamUserRepository, Mockito.never()).existsByTeamUserId(Mockito.any());
+  }
+
+  @Test
+  public void isUserInTeam_afterDeleteUserOfTeam_notCached() {
+    // given -> membership is cached
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(true);
+    teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId());
+
+    // when -> user is removed from the team
+    Mockito.when(teamService.getTeamByTeamId(Mockito.anyLong())).thenReturn(testTeam);
+    Mockito.when(userRepository.findById(Mockito.any()))
+        .thenReturn(java.util.Optional.of(testUser));
+    Mockito.when(teamUserRepository.findByTeamAndUser(Mockito.any(), Mockito.any()))
+        .thenReturn(testTeamUser);
+    teamUserService.deleteUserOfTeam(testTeam.getTeamId(), testUser.getUserId());
+
+    // then -> membership is checked in the repository again
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(false);
+    Mockito.when(teamRepository.existsById(Mockito.any())).thenReturn(true);
+    assertFalse(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+  }
+
+  @Test
+  public void isUserInTeam_afterDeleteUserOfAllTeams_notCached() {
+    // given -> membership is cached
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(true);
+    teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId());
+
+    // when -> user is removed from all teams
+    Mockito.when(teamUserRepository.findTeamIdsByUserId(testUser.getUserId()))
+        .thenReturn(List.of(testTeam.getTeamId()));
+    teamUserService.deleteUserOfAllTeams(testUser.getUserId());
+
+    // then -> membership is checked in the repository again
+    Mockito.when(teamUserRepository.existsByTeamUserId(Mockito.any())).thenReturn(false);
+    Mockito.when(teamRepository.existsById(Mockito.any())).thenReturn(true);
+    assertFalse(teamUserService.isUserInTeam(testTeam.getTeamId(), testUser.getUserId()));
+  }
+  // endregion
+
+  // region ETag tests
+  @Test
+  public void getTeamsOfUserETag_changesWithRevision() {
+    Mockito.when(teamUserRepository.findTeamRevisionsByUserId(1L))
+        .thenReturn(List.<Object[]>of(new Object[] {1L, 3L}));
+    String etag = teamUserService.getTeamsOfUserETag(1L);
+
+    // same teams -> same ETag
+    assertEquals(etag, teamUserService.getTeamsOfUserETag(1L));
+    assertTrue(etag.startsWith("user-1-teams-"));
+
+    // team changed -> new ETag
+    Mockito.when(teamUserRepository.findTeamRevisionsByUserId(1L))
+        .thenReturn(List.<Object[]>of(new Object[] {1L, 4L}));
+    assertNotEquals(etag, teamUserService.getTeamsOfUserETag(1L));
+
+    // user left the team -> new ETag
+    Mockito.when(teamUserRepository.findTeamRevisionsByUserId(1L)).thenReturn(List.of());
+    assertNotEquals(etag, teamUserService.getTeamsOfUserETag(1L));
+  }
+
+  @Test
+  public void updateRevisionsOfTeamsOfUser_incrementsRevisions() {
+    teamUserService.updateRevisionsOfTeamsOfUser(1L);
+
+    Mockito.verify(teamRepository, Mockito.times(1)).incrementRevisionsOfUser(1L);
   }
   // endregion
 }
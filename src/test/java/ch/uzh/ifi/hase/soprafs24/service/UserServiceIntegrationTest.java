@@ -55,7 +55,10 @@ public class UserServiceIntegrationTest {
     userRepository.deleteAll();
 
     // mock pusher service
-    Mockito.doNothing().when(pusherService).updateTeam(Mockito.anyString());
+    Mockito.doNothing()
+        .when(pusherService)
+        .updateTeamMembers(
+            Mockito.anyLong(), Mockito.any(), Mockito.anyBoolean(), Mockito.anyLong());
   }
 
   // region create user
@@ -367,12 +370,15 @@ public class UserServiceIntegrationTest {
     // given user is in the team
     TeamUser testTeamUser = new TeamUser(testTeam, testUser);
     teamUserRepository.saveAndFlush(testTeamUser);
+    Long revision = teamRepository.findRevisionByTeamId(createdTeam.getTeamId());
 
     // execute delete action
     userService.deleteUser(createdUser.getUserId());
 
-    // check if user really does not exist anymore
+    // check if user really does not exist anymore, the link is removed and the team changed
     assertTrue(userRepository.findById(createdUser.getUserId()).isEmpty());
+    assertTrue(teamUserRepository.findAll().isEmpty());
+    assertEquals(revision + 1, teamRepository.findRevisionByTeamId(createdTeam.getTeamId()));
   }
 
   /* delete user successfully, which also has comments */
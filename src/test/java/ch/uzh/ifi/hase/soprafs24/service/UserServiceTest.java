@@ -2,11 +2,12 @@ package ch.uzh.ifi.hase.soprafs24.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-import ch.uzh.ifi.hase.soprafs24.entity.Team;
 import ch.uzh.ifi.hase.soprafs24.entity.User;
 import ch.uzh.ifi.hase.soprafs24.repository.UserRepository;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -21,6 +22,10 @@ public class UserServiceTest {
 
   @InjectMocks private UserService userService;
   @Mock private TeamUserService teamUserService;
+  @Mock private CommentService commentService;
+  @Mock private TeamService teamService;
+  @Mock private PusherService pusherService;
+  @Mock private UserTokenCache userTokenCache;
 
   private User testUser;
 
@@ -34,6 +39,7 @@ public class UserServiceTest {
     testUser.setName("testName");
     testUser.setUsername("testUsername");
     testUser.setPassword("1234");
+    testUser.setToken("testToken");
 
     // when -> any object is being save in the userRepository -> return the dummy
     // testUser
@@ -160,6 +166,13 @@ public class UserServiceTest {
     assertEquals(updatedUser.getName(), returnedUser.getName());
     assertEquals(updatedUser.getUsername(), returnedUser.getUsername());
     assertEquals(updatedUser.getPassword(), returnedUser.getPassword());
+
+    // cached user of the token is invalidated
+    Mockito.verify(userTokenCache, Mockito.times(1)).invalidate(testUser.getToken());
+
+    // member lists of the teams of the user changed
+    Mockito.verify(teamUserService, Mockito.times(1))
+        .updateRevisionsOfTeamsOfUser(testUser.getUserId());
   }
 
   @Test
@@ -202,33 +215,42 @@ public class UserServiceTest {
     // given
     Mockito.when(userRepository.findById(Mockito.any())).thenReturn(Optional.of(testUser));
 
-    // when -> get all teams of user and delete all teams of user
-    Mockito.when(teamUserService.getTeamsOfUser(Mockito.anyLong())).thenReturn(List.of());
+    // when -> user has no teams and no comments
+    Mockito.when(teamUserService.deleteUserOfAllTeams(Mockito.anyLong())).thenReturn(List.of());
+    Mockito.when(commentService.deleteCommentsOfUser(Mockito.anyLong())).thenReturn(List.of());
 
     // when
     userService.deleteUser(testUser.getUserId());
 
     // then
     Mockito.verify(userRepository, Mockito.times(1)).delete(Mockito.any());
+    Mockito.verify(userTokenCache, Mockito.times(1)).invalidate(testUser.getToken());
   }
 
-  /* if user has teams */
+  /* if user has teams and comments: set-based deletes, one revision per changed team */
   @Test
   public void deleteUser_existingUserWithTeams_success() {
     // given
     Mockito.when(userRepository.findById(Mockito.any())).thenReturn(Optional.of(testUser));
 
-    // when -> get all teams of user and delete all teams of user
-    Mockito.when(teamUserService.getTeamsOfUser(Mockito.any())).thenReturn(List.of(new Team()));
-    Mockito.when(teamUserService.deleteUserOfTeam(Mockito.any(), Mockito.any())).thenReturn(null);
+    // when -> user is in teams 1 and 2 and commented in the teams 2 and 3
+    Mockito.when(teamUserService.deleteUserOfAllTeams(testUser.getUserId()))
+        .thenReturn(List.of(1L, 2L));
+    Mockito.when(commentService.deleteCommentsOfUser(testUser.getUserId()))
+        .thenReturn(List.of(2L, 3L));
+    Mockito.when(teamService.nextRevisions(Set.of(1L, 2L, 3L)))
+        .thenReturn(Map.of(1L, 11L, 2L, 12L, 3L, 13L));
 
     // when
     userService.deleteUser(testUser.getUserId());
 
     // then
     Mockito.verify(userRepository, Mockito.times(1)).delete(Mockito.any());
-    Mockito.verify(teamUserService, Mockito.times(1))
+    Mockito.verify(teamUserService, Mockito.never())
         .deleteUserOfTeam(Mockito.any(), Mockito.any());
+    Mockito.verify(teamService, Mockito.times(1)).nextRevisions(Mockito.any());
+    Mockito.verify(pusherService).leaveTeams(testUser, Map.of(1L, 11L, 2L, 12L));
+    Mockito.verify(pusherService).reloadComments(Map.of(2L, 12L, 3L, 13L));
   }
 
   @Test